@@ -0,0 +1,72 @@
+package com.example.transactional.bench;
+
+import com.example.transactional.TransactionalSpringBootPocApplication;
+import com.example.transactional.money.Money;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Boots the application against its own embedded H2 database, without a web server unless asked for
+ * one, with SQL logging off so the benchmarks measure transactions rather than log formatting (unless a
+ * benchmark overrides those properties).
+ */
+final class BenchmarkApp {
+
+    private BenchmarkApp() {}
+
+    static ConfigurableApplicationContext start(String... extraProperties) {
+        return start(WebApplicationType.NONE, extraProperties);
+    }
+
+    /** Like {@link #start}, with Tomcat on a random port ({@code local.server.port}). */
+    static ConfigurableApplicationContext startServer(String... extraProperties) {
+        String[] props = new String[extraProperties.length + 1];
+        props[0] = "server.port=0";
+        System.arraycopy(extraProperties, 0, props, 1, extraProperties.length);
+        return start(WebApplicationType.SERVLET, props);
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType web, String... extraProperties) {
+        Map<String, String> props = new LinkedHashMap<>();
+        props.put("spring.datasource.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;QUERY_CACHE_SIZE=64");
+        props.put("spring.datasource.hikari.maximum-pool-size", "64");
+        props.put("spring.jpa.properties.hibernate.show_sql", "false");
+        props.put("spring.jpa.properties.hibernate.format_sql", "false");
+        props.put("spring.main.banner-mode", "off");
+        props.put("logging.level.root", "WARN");
+        props.put("logging.level.org.springframework.jdbc.core", "WARN");
+        props.put("logging.level.org.hibernate.SQL", "WARN");
+        props.put("logging.level.org.hibernate.orm.jdbc.bind", "WARN");
+        // Extra properties replace the defaults above; a repeated command-line arg would be joined instead
+        for (String p : extraProperties) {
+            int eq = p.indexOf('=');
+            props.put(p.substring(0, eq), p.substring(eq + 1));
+        }
+        // Passed as command-line args so they override application.yml
+        List<String> args = new ArrayList<>();
+        props.forEach((k, v) -> args.add("--" + k + "=" + v));
+        return new SpringApplicationBuilder(TransactionalSpringBootPocApplication.class)
+                .web(web)
+                .run(args.toArray(new String[0]));
+    }
+
+    /** Inserts accounts acct-0 .. acct-(n-1) and returns their owner names. */
+    static String[] seedAccounts(ConfigurableApplicationContext context, int n, Money balance) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        String[] owners = new String[n];
+        List<Object[]> rows = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            owners[i] = "acct-" + i;
+            rows.add(new Object[]{owners[i], balance.minor()});
+        }
+        jdbc.batchUpdate("INSERT INTO accounts(owner, balance) VALUES (?, ?)", rows);
+        return owners;
+    }
+}
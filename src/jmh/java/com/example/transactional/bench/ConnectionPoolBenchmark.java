@@ -0,0 +1,92 @@
+package com.example.transactional.bench;
+
+import com.example.transactional.money.Money;
+import com.example.transactional.service.JdbcTransferService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manual-connection transfers with 1x, 2x and 4x as many callers as the pool has connections. Beyond
+ * the pool size callers queue for a connection, so throughput should stay roughly flat rather than
+ * collapse; SampleTime shows how much of that queueing lands in the latency tail. Failed transfers
+ * (row lock timeouts between opposite transfers on one pair) are reported as the {@code failed} counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ConnectionPoolBenchmark {
+
+    static final int POOL_SIZE = 16;
+    private static final Money AMOUNT = Money.parse("0.01");
+
+    @Param({"256"})
+    public int accounts;
+
+    /** Transfers that threw during measurement, all threads and iterations added up. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            failed = 0;
+        }
+    }
+
+    private ConfigurableApplicationContext context;
+    private JdbcTransferService jdbc;
+    private String[] owners;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkApp.start(
+                "spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "spring.datasource.hikari.minimum-idle=" + POOL_SIZE);
+        jdbc = context.getBean(JdbcTransferService.class);
+        owners = BenchmarkApp.seedAccounts(context, accounts, Money.parse("1000000000.00"));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(POOL_SIZE)
+    public void atPoolSize(Counters counters) {
+        if (!transfer()) counters.failed++;
+    }
+
+    @Benchmark
+    @Threads(2 * POOL_SIZE)
+    public void atTwicePoolSize(Counters counters) {
+        if (!transfer()) counters.failed++;
+    }
+
+    @Benchmark
+    @Threads(4 * POOL_SIZE)
+    public void atFourTimesPoolSize(Counters counters) {
+        if (!transfer()) counters.failed++;
+    }
+
+    private boolean transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts);
+        int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+        try {
+            jdbc.transferManualConnection(owners[from], owners[to], AMOUNT, false);
+            return true;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
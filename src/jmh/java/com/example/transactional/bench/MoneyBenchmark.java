@@ -0,0 +1,58 @@
+package com.example.transactional.bench;
+
+import com.example.transactional.money.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The arithmetic of one transfer in each representation: parse the amount from the request string,
+ * validate it, check funds, debit and credit. Run with {@code -prof gc} for bytes allocated per
+ * transfer (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    @Param({"12.34", "0.01", "99999.99"})
+    public String amount;
+
+    private BigDecimal fromDecimal;
+    private BigDecimal toDecimal;
+    private long fromMinor;
+    private long toMinor;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        fromDecimal = new BigDecimal("1000000000.00");
+        toDecimal = BigDecimal.ZERO.setScale(2);
+        fromMinor = Money.parse("1000000000.00").minor();
+        toMinor = 0;
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal value = new BigDecimal(amount);
+        if (value.signum() <= 0) throw new IllegalArgumentException("Amount must be positive");
+        if (value.scale() > 2) value = value.setScale(2);
+        if (fromDecimal.compareTo(value) < 0) reset();
+        fromDecimal = fromDecimal.subtract(value);
+        toDecimal = toDecimal.add(value);
+        return toDecimal;
+    }
+
+    @Benchmark
+    public long scaledLong() {
+        long value = Money.parseMinor(amount);
+        if (value <= 0) throw new IllegalArgumentException("Amount must be positive");
+        if (fromMinor < value) reset();
+        fromMinor -= value;
+        toMinor = Money.addExact(toMinor, value);
+        return toMinor;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.transactional.bench;
+
+import com.example.transactional.account.AccountIdCache;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of resolving an owner to an account id as {@code accounts} grows from 10k to 10M rows:
+ * <ul>
+ *   <li>{@code scan}: {@code WHERE LOWER(owner) = ?}, which cannot use the index, i.e. the lookup
+ *   before owner was unique;</li>
+ *   <li>{@code index}: {@code WHERE owner = ?} through {@code uk_accounts_owner};</li>
+ *   <li>{@code cache}: {@link AccountIdCache} on a hot set of 10k owners, which stays resident.</li>
+ * </ul>
+ * The 10M trial needs several GB of heap for the in-memory database; {@code -p rows=10000,100000}
+ * skips the large ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class OwnerLookupBenchmark {
+
+    private static final int HOT_SET = 10_000;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbc;
+    private AccountIdCache accountIds;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkApp.start();
+        jdbc = context.getBean(JdbcTemplate.class);
+        accountIds = context.getBean(AccountIdCache.class);
+        // Generated in the database: 10M rows through JDBC batches would take most of the trial
+        jdbc.update("INSERT INTO accounts(owner, balance) SELECT 'acct-' || X, 0 FROM SYSTEM_RANGE(0, ?)", rows - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long scan() {
+        return jdbc.queryForObject("SELECT id FROM accounts WHERE LOWER(owner) = ?", Long.class, anyOwner());
+    }
+
+    @Benchmark
+    public Long index() {
+        return jdbc.queryForObject("SELECT id FROM accounts WHERE owner = ?", Long.class, anyOwner());
+    }
+
+    @Benchmark
+    public Long cache() {
+        return accountIds.findId("acct-" + ThreadLocalRandom.current().nextInt(Math.min(rows, HOT_SET)));
+    }
+
+    private String anyOwner() {
+        return "acct-" + ThreadLocalRandom.current().nextInt(rows);
+    }
+}
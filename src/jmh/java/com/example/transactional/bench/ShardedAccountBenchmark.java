@@ -0,0 +1,86 @@
+package com.example.transactional.bench;
+
+import com.example.transactional.money.Money;
+import com.example.transactional.service.ShardedTransferService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Credit throughput into one hot account as its bucket count grows. Every transfer goes from a random
+ * source account to {@code acct-0}; {@code buckets=0} leaves it unsharded, so all credits queue on its
+ * account row. The sources are never sharded. Failed transfers (exhausted lock retries) are reported
+ * as the {@code failed} counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ShardedAccountBenchmark {
+
+    private static final Money AMOUNT = Money.parse("0.01");
+
+    @Param({"0", "1", "4", "16", "64"})
+    public int buckets;
+
+    @Param({"1000"})
+    public int accounts;
+
+    private ConfigurableApplicationContext context;
+    private ShardedTransferService sharded;
+    private String[] owners;
+
+    /** Transfers that threw during measurement, all threads and iterations added up. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            failed = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void start() {
+        // Background rebalancing stays off (the default): credits only, so buckets never run low
+        context = BenchmarkApp.start();
+        sharded = context.getBean(ShardedTransferService.class);
+        owners = BenchmarkApp.seedAccounts(context, accounts, Money.parse("1000000000.00"));
+        if (buckets > 0) sharded.shard(owners[0], buckets);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void threads08(Counters counters) {
+        if (!credit()) counters.failed++;
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void threads64(Counters counters) {
+        if (!credit()) counters.failed++;
+    }
+
+    private boolean credit() {
+        String from = owners[1 + ThreadLocalRandom.current().nextInt(owners.length - 1)];
+        try {
+            sharded.transfer(from, owners[0], AMOUNT, false);
+            return true;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.transactional.bench;
+
+import com.example.transactional.money.Money;
+import com.example.transactional.service.JdbcTransferService;
+import com.example.transactional.service.JpaTransferService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer throughput under each SQL logging setup:
+ * <ul>
+ *   <li>{@code verbose}: the default application.yml (show_sql, format_sql, JdbcTemplate and Hibernate
+ *   SQL at DEBUG, bind parameters at TRACE);</li>
+ *   <li>{@code sampled}: the prod profile, with 1 in 1000 statements plus slow ones traced off-thread;</li>
+ *   <li>{@code off}: no SQL logging at all, the floor.</li>
+ * </ul>
+ * The verbose trials write every statement to the console, so redirect the run's output. Failed
+ * transfers are reported as the {@code failed} counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class SqlLoggingBenchmark {
+
+    private static final Money AMOUNT = Money.parse("0.01");
+
+    @Param({"verbose", "sampled", "off"})
+    public String logging;
+
+    @Param({"jpa", "jdbc-txmgr"})
+    public String strategy;
+
+    @Param({"1000"})
+    public int accounts;
+
+    private ConfigurableApplicationContext context;
+    private JpaTransferService jpa;
+    private JdbcTransferService jdbc;
+    private String[] owners;
+
+    /** Transfers that threw during measurement, all threads and iterations added up. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            failed = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = switch (logging) {
+            case "verbose" -> BenchmarkApp.start(
+                    "spring.jpa.properties.hibernate.show_sql=true",
+                    "spring.jpa.properties.hibernate.format_sql=true",
+                    "logging.level.org.springframework.jdbc.core=DEBUG",
+                    "logging.level.org.hibernate.SQL=DEBUG",
+                    "logging.level.org.hibernate.orm.jdbc.bind=TRACE");
+            case "sampled" -> BenchmarkApp.start(
+                    "spring.profiles.active=prod",
+                    "logging.level.sql.trace=INFO");
+            case "off" -> BenchmarkApp.start();
+            default -> throw new IllegalArgumentException("Unknown logging mode: " + logging);
+        };
+        jpa = context.getBean(JpaTransferService.class);
+        jdbc = context.getBean(JdbcTransferService.class);
+        owners = BenchmarkApp.seedAccounts(context, accounts, Money.parse("1000000000.00"));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void threads01(Counters counters) {
+        if (!transfer()) counters.failed++;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void threads08(Counters counters) {
+        if (!transfer()) counters.failed++;
+    }
+
+    private boolean transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(owners.length);
+        int to = (from + 1 + random.nextInt(owners.length - 1)) % owners.length;
+        try {
+            if (strategy.equals("jpa")) {
+                jpa.transfer(owners[from], owners[to], AMOUNT, false);
+            } else {
+                jdbc.transferWithTxManager(owners[from], owners[to], AMOUNT, false);
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.transactional.bench;
+
+import com.example.transactional.money.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Platform vs virtual request threads in Tomcat at 1k, 5k and 10k concurrent transfers. The app runs
+ * with Tomcat on a random port, on its default {@code platform} thread pool or with
+ * {@code spring.threads.virtual.enabled} (what the {@code virtual} profile sets). During each iteration
+ * {@code concurrency - PROBES} clients on virtual threads keep a {@code POST /api/transfer/jdbc-conditional}
+ * in flight each. The benchmark threads send the rest, so their SampleTime distribution is the latency
+ * of a transfer at that concurrency. The {@code transfers} and {@code failed} counters in Throughput mode
+ * are the rate of all completed and failed requests, per ms. The adaptive concurrency limit is off: the
+ * comparison is of request threads, not of load shedding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 5)
+@Threads(ThreadModelBenchmark.PROBES)
+@Fork(1)
+public class ThreadModelBenchmark {
+
+    static final int PROBES = 8;
+    private static final int ACCOUNTS = 100;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"1000", "5000", "10000"})
+    public int concurrency;
+
+    /**
+     * Completed and failed requests, all clients included; read by JMH at the end of each iteration.
+     * JMH adds up the benchmark threads' counters, so only the first one reports.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long transfers;
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            transfers = 0;
+            failed = 0;
+        }
+    }
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private ExecutorService clientThreads;
+    private String baseUrl;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile boolean running;
+    private List<Thread> load;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkApp.startServer(
+                "spring.threads.virtual.enabled=" + "virtual".equals(threads),
+                "server.tomcat.max-connections=" + (2 * concurrency),
+                "transfer.concurrency-limit.enabled=false");
+        BenchmarkApp.seedAccounts(context, ACCOUNTS, Money.parse("1000000000.00"));
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/transfer/jdbc-conditional";
+        clientThreads = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clientThreads).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        client.close();
+        clientThreads.shutdownNow();
+        context.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void startLoad() {
+        completed.reset();
+        failures.reset();
+        running = true;
+        load = new ArrayList<>(concurrency - PROBES);
+        for (int i = PROBES; i < concurrency; i++) {
+            load.add(Thread.ofVirtual().start(() -> {
+                while (running) send();
+            }));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopLoad() throws InterruptedException {
+        running = false;
+        for (Thread t : load) t.join();
+    }
+
+    @Benchmark
+    public void transfer(Counters counters, ThreadParams thread) {
+        send();
+        if (thread.getThreadIndex() == 0) {
+            counters.transfers = completed.sum();
+            counters.failed = failures.sum();
+        }
+    }
+
+    private void send() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ACCOUNTS);
+        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "?from=acct-" + from + "&to=acct-" + to + "&amount=0.01"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 200) completed.increment();
+            else failures.increment();
+        } catch (Exception e) {
+            failures.increment();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.transactional.bench;
+
+import com.example.transactional.money.Money;
+import com.example.transactional.service.JdbcTransferService;
+import com.example.transactional.service.JpaTransferService;
+import com.example.transactional.service.OptimisticTransferService;
+import com.example.transactional.service.OrderedLockingTransferService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one transfer per strategy, by thread count and workload shape. Throughput gives
+ * transfers/ms; SampleTime gives the latency distribution (p50 .. p99.99) in the JSON report.
+ * Failed transfers (exhausted retries, lock timeouts) are reported as the {@code failed} counter
+ * rather than aborting the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class TransferStrategyBenchmark {
+
+    private static final Money AMOUNT = Money.parse("0.01");
+
+    @Param({"jpa", "jdbc-txmgr", "jdbc-manual", "jdbc-no-tx", "jdbc-conditional", "jdbc-locking", "jdbc-optimistic", "jdbc-striped"})
+    public String strategy;
+
+    @Param({"uniform", "hot", "zipf"})
+    public String workload;
+
+    @Param({"1000"})
+    public int accounts;
+
+    /** Transfers that threw during measurement, all threads and iterations added up. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            failed = 0;
+        }
+    }
+
+    private ConfigurableApplicationContext context;
+    private JpaTransferService jpa;
+    private JdbcTransferService jdbc;
+    private OrderedLockingTransferService locking;
+    private OptimisticTransferService optimistic;
+    private String[] owners;
+    private Workload picker;
+
+    @Setup(Level.Trial)
+    public void start() {
+        // The striped locks wrap every jdbc and jpa transfer once enabled, so only the jdbc-striped trial turns them on
+        context = BenchmarkApp.start("transfer.striped-locks.enabled=" + "jdbc-striped".equals(strategy));
+        jpa = context.getBean(JpaTransferService.class);
+        jdbc = context.getBean(JdbcTransferService.class);
+        locking = context.getBean(OrderedLockingTransferService.class);
+        optimistic = context.getBean(OptimisticTransferService.class);
+        owners = BenchmarkApp.seedAccounts(context, accounts, Money.parse("1000000000.00"));
+        picker = new Workload(workload, accounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void threads01(Counters counters) {
+        if (!transfer()) counters.failed++;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void threads08(Counters counters) {
+        if (!transfer()) counters.failed++;
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void threads64(Counters counters) {
+        if (!transfer()) counters.failed++;
+    }
+
+    private boolean transfer() {
+        int[] pair = picker.next();
+        String from = owners[pair[0]];
+        String to = owners[pair[1]];
+        try {
+            switch (strategy) {
+                case "jpa" -> jpa.transfer(from, to, AMOUNT, false);
+                case "jdbc-txmgr" -> jdbc.transferWithTxManager(from, to, AMOUNT, false);
+                case "jdbc-manual" -> jdbc.transferManualConnection(from, to, AMOUNT, false);
+                case "jdbc-no-tx" -> jdbc.transferWithoutTransaction(from, to, AMOUNT, false);
+                case "jdbc-conditional" -> jdbc.transferConditional(from, to, AMOUNT, false);
+                case "jdbc-locking" -> locking.transfer(from, to, AMOUNT, false);
+                case "jdbc-optimistic" -> optimistic.transfer(from, to, AMOUNT, false);
+                case "jdbc-striped" -> jdbc.transferConditional(from, to, AMOUNT, false);
+                default -> throw new IllegalArgumentException("Unknown strategy: " + strategy);
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
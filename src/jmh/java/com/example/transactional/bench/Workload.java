@@ -0,0 +1,68 @@
+package com.example.transactional.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks (from, to) account indexes. uniform: any two distinct accounts. hot: every transfer pays
+ * account 0, like a merchant receiving payments. zipf: both ends follow a Zipf(s=1.1) popularity.
+ */
+final class Workload {
+
+    private final String kind;
+    private final int accounts;
+    private final double[] zipfCdf;
+
+    Workload(String kind, int accounts) {
+        if (accounts < 2) throw new IllegalArgumentException("Need at least two accounts");
+        this.kind = kind;
+        this.accounts = accounts;
+        this.zipfCdf = "zipf".equals(kind) ? zipfCdf(accounts, 1.1) : null;
+    }
+
+    /** Returns {from, to}, always distinct. */
+    int[] next() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int from;
+        int to;
+        switch (kind) {
+            case "uniform" -> {
+                from = rnd.nextInt(accounts);
+                to = rnd.nextInt(accounts - 1);
+                if (to >= from) to++;
+            }
+            case "hot" -> {
+                from = 1 + rnd.nextInt(accounts - 1);
+                to = 0;
+            }
+            case "zipf" -> {
+                from = zipf(rnd);
+                do { to = zipf(rnd); } while (to == from);
+            }
+            default -> throw new IllegalArgumentException("Unknown workload: " + kind);
+        }
+        return new int[]{from, to};
+    }
+
+    private int zipf(ThreadLocalRandom rnd) {
+        double u = rnd.nextDouble();
+        int lo = 0;
+        int hi = zipfCdf.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (zipfCdf[mid] < u) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static double[] zipfCdf(int n, double s) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, s);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) cdf[i] /= sum;
+        return cdf;
+    }
+}
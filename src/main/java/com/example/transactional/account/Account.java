@@ -1,24 +1,44 @@
 package com.example.transactional.account;
 
+import com.example.transactional.money.Money;
+import com.example.transactional.money.MoneyConverter;
 import jakarta.persistence.*;
-import java.math.BigDecimal;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
-@Table(name = "accounts")
+@Table(name = "accounts", uniqueConstraints = @UniqueConstraint(name = "uk_accounts_owner", columnNames = "owner"))
+@EntityListeners(AccountIdCacheInvalidator.class)
 public class Account {
+
+    /** Ids per {@code accounts_seq} call; the sequence increments by this much and callers use the block. */
+    public static final int ID_ALLOCATION_SIZE = 100;
+
+    // Sequence instead of IDENTITY so inserts can be batched: Hibernate (pooled-lo) and AccountImporter
+    // reserve a block per nextval. The column default keeps plain JDBC inserts without an id working;
+    // each such row consumes a whole block, so it never collides with a reserved one.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SequenceGenerator(name = "accounts_seq", sequenceName = "accounts_seq", allocationSize = ID_ALLOCATION_SIZE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accounts_seq")
+    @ColumnDefault("nextval('accounts_seq')")
     private Long id;
 
     @Column(nullable = false)
     private String owner;
 
-    @Column(nullable = false, precision = 19, scale = 2)
-    private BigDecimal balance = BigDecimal.ZERO;
+    // BIGINT minor units (cents); the JDBC paths read and bind it as a long
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false)
+    private Money balance = Money.ZERO;
+
+    // Bumped by every writer, including the plain JDBC paths, so conditional updates can detect conflicts
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
 
     public Account() {}
 
-    public Account(String owner, BigDecimal balance) {
+    public Account(String owner, Money balance) {
         this.owner = owner;
         this.balance = balance;
     }
@@ -29,10 +49,12 @@ public class Account {
 
     public void setOwner(String owner) { this.owner = owner; }
 
-    public BigDecimal getBalance() { return balance; }
+    public Money getBalance() { return balance; }
 
-    public void setBalance(BigDecimal balance) { this.balance = balance; }
+    public void setBalance(Money balance) { this.balance = balance; }
 
     public void setId(Long id) { this.id = id; }
+
+    public long getVersion() { return version; }
 }
 
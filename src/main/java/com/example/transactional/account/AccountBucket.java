@@ -0,0 +1,36 @@
+package com.example.transactional.account;
+
+import jakarta.persistence.*;
+
+/**
+ * One sub-balance of a sharded account. A sharded account's balance is its {@code accounts.balance}
+ * plus the sum of its bucket rows; see {@link ShardedAccounts}. Rows are written with JDBC; the entity
+ * only defines the table.
+ */
+@Entity
+@Table(name = "account_buckets", uniqueConstraints = @UniqueConstraint(name = "uk_account_buckets", columnNames = {"account_id", "bucket"}))
+public class AccountBucket {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private int bucket;
+
+    // BIGINT minor units, like accounts.balance
+    @Column(nullable = false)
+    private long balance;
+
+    public AccountBucket() {}
+
+    public Long getId() { return id; }
+
+    public Long getAccountId() { return accountId; }
+
+    public int getBucket() { return bucket; }
+
+    public long getBalance() { return balance; }
+}
@@ -0,0 +1,170 @@
+package com.example.transactional.account;
+
+import com.example.transactional.metrics.StatsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Bounded LRU cache of owner -> account id, so hot paths can address rows by primary key instead of
+ * looking up {@code owner} on every statement. Only existing accounts are cached. Entries are dropped
+ * when JPA creates or removes an account (see {@link AccountIdCacheInvalidator}), explicitly via
+ * {@link #invalidate(String)}, and whenever an update through a cached id finds no row.
+ */
+@Component
+public class AccountIdCache implements StatsSource {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Long> ids;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public AccountIdCache(JdbcTemplate jdbcTemplate,
+                          @Value("${accounts.id-cache.max-size:100000}") int maxSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxSize = maxSize;
+        this.ids = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > AccountIdCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Returns the id of the account owned by {@code owner}, or null if there is none. */
+    public Long findId(String owner) {
+        Long id = cached(owner);
+        if (id != null) return id;
+        List<Long> found = jdbcTemplate.queryForList("SELECT id FROM accounts WHERE owner = ?", Long.class, owner);
+        return found.isEmpty() ? null : put(owner, found.get(0));
+    }
+
+    /**
+     * Like {@link #findId(String)}, but a miss is looked up on {@code conn}. For callers that already hold
+     * a connection of their own: a lookup through the pool would need a second one, and enough such callers
+     * at once can hold every connection while each waits for another.
+     */
+    public Long findId(Connection conn, String owner) throws SQLException {
+        Long id = cached(owner);
+        if (id != null) return id;
+        try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM accounts WHERE owner = ?")) {
+            ps.setString(1, owner);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? put(owner, rs.getLong(1)) : null;
+            }
+        }
+    }
+
+    private Long cached(String owner) {
+        Long id;
+        lock.lock();
+        try {
+            id = ids.get(owner);
+        } finally {
+            lock.unlock();
+        }
+        if (id != null) hits.increment();
+        else misses.increment();
+        return id;
+    }
+
+    private Long put(String owner, Long id) {
+        lock.lock();
+        try {
+            ids.put(owner, id);
+        } finally {
+            lock.unlock();
+        }
+        return id;
+    }
+
+    /**
+     * Runs a primary-key update for {@code owner}'s account and returns its update count. If the cached
+     * id no longer matches a row the entry is dropped and the update is retried once with a fresh id.
+     */
+    public int update(String owner, LongToIntFunction updateById) {
+        Long id = findId(owner);
+        if (id == null) return 0;
+        int updated = updateById.applyAsInt(id);
+        if (updated != 0) return updated;
+        invalidate(owner);
+        Long fresh = findId(owner);
+        if (fresh == null || fresh.equals(id)) return 0;
+        return updateById.applyAsInt(fresh);
+    }
+
+    /** {@link #update(String, LongToIntFunction)} for callers holding their own connection; lookups run on {@code conn}. */
+    public int update(Connection conn, String owner, LongToIntFunction updateById) throws SQLException {
+        Long id = findId(conn, owner);
+        if (id == null) return 0;
+        int updated = updateById.applyAsInt(id);
+        if (updated != 0) return updated;
+        invalidate(owner);
+        Long fresh = findId(conn, owner);
+        if (fresh == null || fresh.equals(id)) return 0;
+        return updateById.applyAsInt(fresh);
+    }
+
+    public void invalidate(String owner) {
+        lock.lock();
+        try {
+            if (ids.remove(owner) != null) invalidations.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            invalidations.add(ids.size());
+            ids.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "accountIdCache";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        int size;
+        lock.lock();
+        try {
+            size = ids.size();
+        } finally {
+            lock.unlock();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxSize", maxSize);
+        stats.put("size", size);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+}
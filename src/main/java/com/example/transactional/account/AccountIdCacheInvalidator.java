@@ -0,0 +1,23 @@
+package com.example.transactional.account;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+
+/**
+ * JPA entity listener keeping {@link AccountIdCache} in step with accounts created or removed through
+ * Hibernate. Instantiated by Spring's bean container, hence the constructor injection.
+ */
+public class AccountIdCacheInvalidator {
+
+    private final AccountIdCache accountIdCache;
+
+    public AccountIdCacheInvalidator(AccountIdCache accountIdCache) {
+        this.accountIdCache = accountIdCache;
+    }
+
+    @PostPersist
+    @PostRemove
+    void invalidate(Account account) {
+        accountIdCache.invalidate(account.getOwner());
+    }
+}
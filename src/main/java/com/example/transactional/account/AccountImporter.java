@@ -0,0 +1,230 @@
+package com.example.transactional.account;
+
+import com.example.transactional.metrics.InstrumentedTransactionManager;
+import com.example.transactional.metrics.StatsSource;
+import com.example.transactional.money.Money;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams {@code owner,balance} CSV into {@code accounts}. Lines are parsed one at a time into fixed
+ * chunk buffers; each full chunk gets its ids from {@code accounts_seq} (one call per
+ * {@link Account#ID_ALLOCATION_SIZE} rows) and goes out as one JDBC batch in its own transaction, so
+ * memory stays at one chunk whatever the input size. Owners that already exist, or repeat within a
+ * chunk, are skipped; malformed lines are rejected and counted without stopping the import. A failed
+ * chunk stops the import; the chunks before it stay committed.
+ */
+@Component
+public class AccountImporter implements StatsSource {
+
+    private static final String INSERT_SQL = "INSERT INTO accounts(id, owner, balance, version) VALUES (?, ?, ?, 0)";
+    private static final int MAX_ERRORS = 10;
+    private static final int IN_BATCH = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager txManager;
+    private final int chunkSize;
+
+    private final LongAdder imports = new LongAdder();
+    private final LongAdder rowsInserted = new LongAdder();
+    private final LongAdder rowsSkipped = new LongAdder();
+    private final LongAdder rowsRejected = new LongAdder();
+    private volatile double lastRowsPerSecond;
+
+    public AccountImporter(JdbcTemplate jdbcTemplate,
+                           @Qualifier("jdbcTxManager") PlatformTransactionManager txManager,
+                           @Value("${accounts.import.chunk-size:5000}") int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("accounts.import.chunk-size must be at least 1");
+        this.jdbcTemplate = jdbcTemplate;
+        this.txManager = txManager;
+        this.chunkSize = chunkSize;
+    }
+
+    public static class Result {
+        public long linesRead;
+        public long inserted;
+        public long skipped;
+        public long rejected;
+        public int chunks;
+        public long durationMillis;
+        public double rowsPerSecond;
+        public final List<String> errors = new ArrayList<>();
+    }
+
+    public Result importCsv(InputStream in) {
+        long start = System.nanoTime();
+        Result result = new Result();
+        String[] owners = new String[chunkSize];
+        long[] balances = new long[chunkSize];
+        int buffered = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result.linesRead++;
+                if (line.isBlank()) continue;
+                List<String> fields = parseLine(line);
+                if (result.linesRead == 1 && fields.get(0).trim().equalsIgnoreCase("owner")) continue;
+                try {
+                    if (fields.size() != 2) throw new IllegalArgumentException("expected owner,balance");
+                    String owner = fields.get(0).trim();
+                    if (owner.isEmpty() || owner.length() > 255) throw new IllegalArgumentException("owner must be 1 to 255 characters");
+                    long balance = Money.parseMinor(fields.get(1).trim());
+                    if (balance < 0) throw new IllegalArgumentException("balance must not be negative");
+                    owners[buffered] = owner;
+                    balances[buffered] = balance;
+                    buffered++;
+                } catch (IllegalArgumentException e) {
+                    result.rejected++;
+                    if (result.errors.size() < MAX_ERRORS) result.errors.add("line " + result.linesRead + ": " + e.getMessage());
+                    continue;
+                }
+                if (buffered == chunkSize) {
+                    flush(owners, balances, buffered, result);
+                    buffered = 0;
+                }
+            }
+            if (buffered > 0) flush(owners, balances, buffered, result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            result.durationMillis = nanos / 1_000_000;
+            result.rowsPerSecond = nanos == 0 ? 0 : result.inserted * 1e9 / nanos;
+            imports.increment();
+            rowsInserted.add(result.inserted);
+            rowsSkipped.add(result.skipped);
+            rowsRejected.add(result.rejected);
+            lastRowsPerSecond = result.rowsPerSecond;
+        }
+        return result;
+    }
+
+    private void flush(String[] owners, long[] balances, int n, Result result) {
+        DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+        def.setName("accountImportChunk");
+        def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        TransactionStatus status = txManager.getTransaction(def);
+        try {
+            Set<String> existing = existingOwners(owners, n);
+            List<Integer> rows = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                // add() also drops repeats within the chunk
+                if (existing.add(owners[i])) rows.add(i);
+            }
+            long[] ids = allocateIds(rows.size());
+            jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    int row = rows.get(i);
+                    ps.setLong(1, ids[i]);
+                    ps.setString(2, owners[row]);
+                    ps.setLong(3, balances[row]);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return rows.size();
+                }
+            });
+            txManager.commit(status);
+            result.inserted += rows.size();
+            result.skipped += n - rows.size();
+            result.chunks++;
+        } catch (RuntimeException ex) {
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
+            throw ex;
+        }
+    }
+
+    private Set<String> existingOwners(String[] owners, int n) {
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < n; from += IN_BATCH) {
+            int to = Math.min(n, from + IN_BATCH);
+            Object[] args = new Object[to - from];
+            System.arraycopy(owners, from, args, 0, args.length);
+            String placeholders = String.join(",", Collections.nCopies(args.length, "?"));
+            existing.addAll(jdbcTemplate.queryForList("SELECT owner FROM accounts WHERE owner IN (" + placeholders + ")", String.class, args));
+        }
+        return existing;
+    }
+
+    // Same blocks as Hibernate's pooled-lo optimizer: each nextval reserves [value, value + allocation size)
+    private long[] allocateIds(int n) {
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i += Account.ID_ALLOCATION_SIZE) {
+            long low = jdbcTemplate.queryForObject("SELECT nextval('accounts_seq')", Long.class);
+            for (int j = i; j < Math.min(n, i + Account.ID_ALLOCATION_SIZE); j++) ids[j] = low + (j - i);
+        }
+        return ids;
+    }
+
+    /** Splits one CSV line on commas; fields may be double-quoted, with "" for a literal quote. */
+    static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>(2);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @Override
+    public String statsName() {
+        return "accountImport";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("chunkSize", chunkSize);
+        stats.put("imports", imports.sum());
+        stats.put("rowsInserted", rowsInserted.sum());
+        stats.put("rowsSkipped", rowsSkipped.sum());
+        stats.put("rowsRejected", rowsRejected.sum());
+        stats.put("lastRowsPerSecond", lastRowsPerSecond);
+        return stats;
+    }
+}
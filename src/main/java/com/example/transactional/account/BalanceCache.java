@@ -0,0 +1,117 @@
+package com.example.transactional.account;
+
+import com.example.transactional.metrics.StatsSource;
+import com.example.transactional.replica.ReadYourWrites;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of committed balances by owner. Writers never put values in; they only evict,
+ * and only once their transaction has committed ({@link #evictAfterCommit}), so a rolled-back transfer
+ * can never leave its balance behind. A load racing with an eviction is discarded instead of cached.
+ * Evictions are also reported to {@link ReadYourWrites}, so a load that runs on a replica never caches
+ * a balance from before the owner's last write.
+ */
+@Component
+public class BalanceCache implements StatsSource {
+
+    private final ConcurrentHashMap<String, BigDecimal> balances = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final ReadYourWrites readYourWrites;
+    // Bumped by every eviction; a load that saw it change may have read a pre-commit value
+    private final AtomicLong epoch = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public BalanceCache(@Value("${accounts.balance-cache.max-size:10000}") int maxSize, ReadYourWrites readYourWrites) {
+        this.maxSize = maxSize;
+        this.readYourWrites = readYourWrites;
+    }
+
+    public BigDecimal get(String owner, Function<String, BigDecimal> loader) {
+        BigDecimal cached = balances.get(owner);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        long seen = epoch.get();
+        BigDecimal loaded = readYourWrites.readFor(owner, () -> loader.apply(owner));
+        balances.put(owner, loaded);
+        if (epoch.get() != seen) {
+            balances.remove(owner, loaded);
+        } else if (balances.size() > maxSize) {
+            evictOne(owner);
+        }
+        return loaded;
+    }
+
+    /**
+     * Evicts {@code owners} when the current transaction commits, or right away if no transaction
+     * synchronization is active (autocommit and manual-connection paths, called after their commit).
+     */
+    public void evictAfterCommit(String... owners) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(owners);
+                }
+            });
+        } else {
+            evict(owners);
+        }
+    }
+
+    public void evict(String... owners) {
+        epoch.incrementAndGet();
+        readYourWrites.written(owners);
+        for (String owner : owners) {
+            if (balances.remove(owner) != null) invalidations.increment();
+        }
+    }
+
+    // Size bound is approximate: drop whichever entry the iterator yields first, except the one just loaded
+    private void evictOne(String keep) {
+        Iterator<String> it = balances.keySet().iterator();
+        while (it.hasNext()) {
+            String candidate = it.next();
+            if (!candidate.equals(keep)) {
+                it.remove();
+                evictions.increment();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "balanceCache";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxSize", maxSize);
+        stats.put("size", balances.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.transactional.account;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which accounts are sharded into {@code account_buckets} rows, and how many buckets each has. The set
+ * is small, so it is loaded once at startup and kept whole in memory; accounts that are not sharded
+ * cost a map lookup and no query. A sharded account's balance is {@code accounts.balance} plus its buckets.
+ */
+@Component
+// The schema is created with the entity manager factory, so account_buckets exists before load()
+@DependsOn("entityManagerFactory")
+public class ShardedAccounts {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, Integer> bucketsById = new ConcurrentHashMap<>();
+
+    public ShardedAccounts(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Loaded before any request can arrive, rather than on first use: a lazy load would run a query
+     * under a lock on the transfer path (pinning virtual threads) and, on the manual-connection path,
+     * borrow a second pooled connection while the caller holds one.
+     */
+    @PostConstruct
+    void load() {
+        jdbcTemplate.query("SELECT account_id, COUNT(*) FROM account_buckets GROUP BY account_id",
+                rs -> { bucketsById.put(rs.getLong(1), rs.getInt(2)); });
+    }
+
+    /** Number of buckets of {@code accountId}, or 0 if it is not sharded. */
+    public int bucketsOf(long accountId) {
+        return all().getOrDefault(accountId, 0);
+    }
+
+    /**
+     * Throws if {@code accountId} is sharded. Its money is in the bucket rows, so a path that debits only
+     * the account row would drive it negative; only {@code ShardedTransferService} may debit it.
+     */
+    public void requireUnsharded(long accountId, String owner) {
+        if (bucketsOf(accountId) > 0) throw shardedDebit(owner);
+    }
+
+    /** The failure {@link #requireUnsharded} throws, for paths that report it per item instead. */
+    public static IllegalArgumentException shardedDebit(String owner) {
+        return new IllegalArgumentException("Account is sharded, debit it through jdbc-sharded: " + owner);
+    }
+
+    /**
+     * Full balance of a sharded account: the account row plus its buckets, summed in one statement so a
+     * concurrent rebalance is seen either entirely or not at all.
+     */
+    public long balanceOf(long accountId) {
+        List<Long> total = jdbcTemplate.queryForList(
+                "SELECT a.balance + COALESCE((SELECT SUM(b.balance) FROM account_buckets b WHERE b.account_id = a.id), 0) "
+                        + "FROM accounts a WHERE a.id = ?", Long.class, accountId);
+        if (total.isEmpty()) throw new IllegalArgumentException("Account not found: " + accountId);
+        return total.get(0);
+    }
+
+    /** Sharded account ids and their bucket counts. */
+    public Map<Long, Integer> all() {
+        return bucketsById;
+    }
+
+    /** Called once the bucket rows of {@code accountId} have committed. */
+    public void register(long accountId, int buckets) {
+        bucketsById.put(accountId, buckets);
+    }
+}
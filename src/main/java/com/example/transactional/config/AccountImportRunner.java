@@ -0,0 +1,53 @@
+package com.example.transactional.config;
+
+import com.example.transactional.account.AccountImporter;
+import com.example.transactional.account.AccountImporter.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Command-line import: {@code --accounts.import.file=accounts.csv} streams the file through
+ * {@link AccountImporter}, logs the report and exits (status 1 if any line was rejected).
+ */
+@Component
+@ConditionalOnProperty("accounts.import.file")
+public class AccountImportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountImportRunner.class);
+
+    private final AccountImporter importer;
+    private final ConfigurableApplicationContext context;
+    private final Path file;
+
+    public AccountImportRunner(AccountImporter importer, ConfigurableApplicationContext context,
+                               @Value("${accounts.import.file}") Path file) {
+        this.importer = importer;
+        this.context = context;
+        this.file = file;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Result result;
+        try (InputStream in = Files.newInputStream(file)) {
+            result = importer.importCsv(in);
+        }
+        log.info("Imported {}: {} lines, {} inserted, {} skipped, {} rejected in {} chunks, {} ms ({} rows/s)",
+                file, result.linesRead, result.inserted, result.skipped, result.rejected, result.chunks,
+                result.durationMillis, Math.round(result.rowsPerSecond));
+        result.errors.forEach(error -> log.warn("Rejected {}", error));
+        int status = result.rejected == 0 ? 0 : 1;
+        System.exit(SpringApplication.exit(context, () -> status));
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.transactional.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.SimpleAsyncTaskExecutor;
@@ -11,8 +12,9 @@ import org.springframework.core.task.AsyncTaskExecutor;
 public class AsyncConfig {
 
     @Bean(name = "demoExecutor")
-    public AsyncTaskExecutor demoExecutor() {
+    public AsyncTaskExecutor demoExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
         SimpleAsyncTaskExecutor exec = new SimpleAsyncTaskExecutor("demo-");
+        exec.setVirtualThreads(virtualThreads);
         exec.setConcurrencyLimit(10);
         return exec;
     }
@@ -2,20 +2,19 @@ package com.example.transactional.config;
 
 import com.example.transactional.account.Account;
 import com.example.transactional.account.AccountRepository;
+import com.example.transactional.money.Money;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.math.BigDecimal;
-
 @Configuration
 public class DataInitializer {
 
     @Bean
     ApplicationRunner initData(AccountRepository repo) {
         return args -> {
-            repo.findByOwner("alice").orElseGet(() -> repo.save(new Account("alice", new BigDecimal("100.00"))));
-            repo.findByOwner("bob").orElseGet(() -> repo.save(new Account("bob", new BigDecimal("50.00"))));
+            repo.findByOwner("alice").orElseGet(() -> repo.save(new Account("alice", Money.parse("100.00"))));
+            repo.findByOwner("bob").orElseGet(() -> repo.save(new Account("bob", Money.parse("50.00"))));
         };
     }
 }
@@ -0,0 +1,73 @@
+package com.example.transactional.config;
+
+import com.example.transactional.metrics.ConnectionPoolStats;
+import com.example.transactional.replica.H2ReplicaSync;
+import com.example.transactional.replica.ReadYourWrites;
+import com.example.transactional.replica.ReplicaRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces Boot's single pool when {@code datasource.replicas.enabled} is set. The application's
+ * DataSource becomes a {@link LazyConnectionDataSourceProxy} over the primary pool: it defers fetching
+ * a connection to the first statement, by which time both transaction managers have marked a read-only
+ * transaction's connection read-only, and then takes it from {@link ReplicaRouter} instead. The pools
+ * are owned by the router rather than being beans, so the instrumentation post-processor wraps only the
+ * proxy and every statement is timed and traced once, whichever database serves it.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    public ReplicaRouter replicaRouter(DataSourceProperties properties, Environment environment,
+                                       ConnectionPoolStats poolStats, ReadYourWrites readYourWrites,
+                                       @Value("${datasource.replicas.urls}") List<String> urls,
+                                       @Value("${datasource.replicas.pool-size:8}") int poolSize,
+                                       @Value("${datasource.replicas.max-lag-ms:1000}") long maxLagMillis,
+                                       @Value("${datasource.replicas.heartbeat-interval-ms:200}") long heartbeatIntervalMillis) {
+        // Same settings Boot would have applied, spring.datasource.hikari.* included
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setMetricsTrackerFactory(poolStats);
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (i + 1));
+            replica.setJdbcUrl(urls.get(i).trim());
+            replica.setUsername(properties.determineUsername());
+            replica.setPassword(properties.determinePassword());
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        return new ReplicaRouter(primary, replicas, readYourWrites, maxLagMillis, heartbeatIntervalMillis);
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaRouter router) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(router.primary());
+        proxy.setReadOnlyDataSource(router.readOnlyDataSource());
+        return proxy;
+    }
+
+    // Local H2 replicas only: copies the primary into them, standing in for database replication
+    @Bean
+    @ConditionalOnProperty(name = "datasource.replicas.h2-sync.enabled", havingValue = "true")
+    public H2ReplicaSync h2ReplicaSync(ReplicaRouter router) {
+        return new H2ReplicaSync(router.primary(), router.replicaPools());
+    }
+}
@@ -1,17 +1,80 @@
 package com.example.transactional.config;
 
+import com.example.transactional.metrics.ConnectionPoolStats;
+import com.example.transactional.metrics.InstrumentedTransactionManager;
+import com.example.transactional.metrics.SqlTracer;
+import com.example.transactional.metrics.StatementTimingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import jakarta.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
 
+// Boot's defaults apart from the order: one step ahead of RollbackCauseAdvice, which must see the
+// exception inside the transaction. The retry aspect (order 0) stays outside both
 @Configuration
+@EnableTransactionManagement(proxyTargetClass = true, order = Ordered.LOWEST_PRECEDENCE - 1)
 public class TransactionConfig {
 
+    // Declared explicitly: Boot backs off its own JPA transaction manager as soon as jdbcTxManager exists.
+    // Both managers are wrapped for latency/rollback stats, see /api/stats/tx.transactionManager
+    @Bean(name = "transactionManager")
+    @Primary
+    public InstrumentedTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new InstrumentedTransactionManager("transactionManager", new JpaTransactionManager(entityManagerFactory));
+    }
+
     @Bean(name = "jdbcTxManager")
-    public DataSourceTransactionManager jdbcTxManager(DataSource dataSource) {
-        return new DataSourceTransactionManager(dataSource);
+    public InstrumentedTransactionManager jdbcTxManager(DataSource dataSource) {
+        return new InstrumentedTransactionManager("jdbcTxManager", new DataSourceTransactionManager(dataSource));
+    }
+
+    @Bean
+    public ConnectionPoolStats connectionPoolStats() {
+        return new ConnectionPoolStats();
     }
-}
 
+    // Off by default; the prod profile turns it on in place of statement logging
+    @Bean
+    public SqlTracer sqlTracer(@Value("${sql.trace.enabled:false}") boolean enabled,
+                               @Value("${sql.trace.sample-rate:1000}") int sampleRate,
+                               @Value("${sql.trace.slow-threshold-ms:50}") long slowThresholdMillis,
+                               @Value("${sql.trace.buffer-capacity:8192}") int bufferCapacity,
+                               @Value("${sql.trace.flush-interval-ms:1000}") long flushIntervalMillis) {
+        return new SqlTracer(enabled, sampleRate, slowThresholdMillis, bufferCapacity, flushIntervalMillis);
+    }
+
+    // Installs the pool metrics tracker before Hikari starts, then wraps the pool so the transaction
+    // managers see the first statement of each transaction (time-to-first-statement) and, when enabled,
+    // the SQL tracer sees every statement
+    @Bean
+    public static BeanPostProcessor dataSourceInstrumentationPostProcessor(ObjectProvider<ConnectionPoolStats> poolStats,
+                                                                           ObjectProvider<SqlTracer> sqlTracer) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource hikari && hikari.getMetricsTrackerFactory() == null) {
+                    hikari.setMetricsTrackerFactory(poolStats.getObject());
+                }
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource ds && !(bean instanceof StatementTimingDataSource)) {
+                    return new StatementTimingDataSource(ds, sqlTracer.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.transactional.idempotency;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * A client-supplied {@code Idempotency-Key} that has been applied. The primary key is what stops a
+ * retried request from debiting twice: the row is inserted in the same transaction as the transfer.
+ * Rows are written with JDBC by {@link IdempotencyStore}; the entity only defines the table.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "ix_idempotency_keys_created", columnList = "created_at"))
+public class IdempotencyKey {
+    @Id
+    @Column(name = "idempotency_key", length = IdempotencyStore.MAX_KEY_LENGTH)
+    private String key;
+
+    // SHA-256 of the request, so a key reused for a different request is refused instead of replayed
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "transfer_id", nullable = false, length = 36)
+    private String transferId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public IdempotencyKey() {}
+
+    public String getKey() { return key; }
+
+    public String getRequestHash() { return requestHash; }
+
+    public String getTransferId() { return transferId; }
+
+    public Instant getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,363 @@
+package com.example.transactional.idempotency;
+
+import com.example.transactional.metrics.StatsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * {@code Idempotency-Key} bookkeeping for the transfer endpoints. The key row is inserted by
+ * {@link com.example.transactional.ledger.LedgerWriter} in the transfer's own transaction, so a key is
+ * applied exactly when its transfer commits and a concurrent duplicate fails on the primary key and
+ * rolls back. Lookups go through an LRU of recently applied keys and then a bloom filter: a key the
+ * filter has never seen is new without asking the database. The filter is only an optimization; a key
+ * it misses (another node, a restart) still hits the primary key and is then replayed.
+ *
+ * <p>Two filter generations are kept and rotated once per TTL, so keys age out of memory at about the
+ * same rate {@link #sweep()} deletes their rows.
+ */
+@Component
+public class IdempotencyStore implements StatsSource {
+
+    public static final int MAX_KEY_LENGTH = 128;
+
+    static final String INSERT_SQL =
+            "INSERT INTO idempotency_keys(idempotency_key, request_hash, transfer_id, created_at) VALUES (?, ?, ?, ?)";
+    static final String SWEEP_SQL = "DELETE FROM idempotency_keys WHERE idempotency_key IN ("
+            + "SELECT idempotency_key FROM idempotency_keys WHERE created_at < ? ORDER BY created_at LIMIT ?)";
+
+    private static final ThreadLocal<Entry> CURRENT = new ThreadLocal<>();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlMillis;
+    private final int sweepBatchSize;
+    private final long bloomBits;
+    private final int bloomHashes;
+    private final int maxCacheSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> recent;
+
+    private volatile BloomFilter currentFilter;
+    private volatile BloomFilter previousFilter;
+    private volatile long rotatedAt = System.currentTimeMillis();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder bloomNegatives = new LongAdder();
+    private final LongAdder dbLookups = new LongAdder();
+    private final LongAdder bloomFalsePositives = new LongAdder();
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder swept = new LongAdder();
+    private final LongAdder sweepBatches = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+
+    public IdempotencyStore(JdbcTemplate jdbcTemplate,
+                            @Value("${transfer.idempotency.ttl-ms:86400000}") long ttlMillis,
+                            @Value("${transfer.idempotency.sweep-batch-size:1000}") int sweepBatchSize,
+                            @Value("${transfer.idempotency.cache.max-size:10000}") int maxCacheSize,
+                            @Value("${transfer.idempotency.bloom.bits:8388608}") long bloomBits,
+                            @Value("${transfer.idempotency.bloom.hashes:5}") int bloomHashes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMillis = ttlMillis;
+        this.sweepBatchSize = sweepBatchSize;
+        this.bloomBits = bloomBits;
+        this.bloomHashes = bloomHashes;
+        this.maxCacheSize = maxCacheSize;
+        this.currentFilter = new BloomFilter(bloomBits, bloomHashes);
+        this.previousFilter = new BloomFilter(bloomBits, bloomHashes);
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > IdempotencyStore.this.maxCacheSize;
+            }
+        };
+    }
+
+    /** A key and the request it was sent with. {@link #getTransferId()} is set once the transfer is recorded. */
+    public static final class Entry {
+        public final String key;
+        public final String requestHash;
+        private volatile String transferId;
+        private volatile Instant createdAt;
+
+        Entry(String key, String requestHash, String transferId, Instant createdAt) {
+            this.key = key;
+            this.requestHash = requestHash;
+            this.transferId = transferId;
+            this.createdAt = createdAt;
+        }
+
+        public String getTransferId() { return transferId; }
+
+        public Instant getCreatedAt() { return createdAt; }
+    }
+
+    /**
+     * Starts a claim on {@code key} for a request described by {@code request}, a canonical string of
+     * the endpoint and its parameters. Nothing is written until the transfer records it.
+     */
+    public Entry claim(String key, String request) {
+        if (key == null || key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1-" + MAX_KEY_LENGTH + " characters");
+        }
+        return new Entry(key, sha256(request), null, null);
+    }
+
+    /**
+     * Returns the applied entry for the claim's key, or null if the key is new. Throws
+     * {@link IllegalArgumentException} if the key was applied to a different request.
+     */
+    public Entry find(Entry claim) {
+        lookups.increment();
+        Entry found;
+        lock.lock();
+        try {
+            found = recent.get(claim.key);
+        } finally {
+            lock.unlock();
+        }
+        if (found == null) {
+            if (!currentFilter.mightContain(claim.key) && !previousFilter.mightContain(claim.key)) {
+                bloomNegatives.increment();
+                return null;
+            }
+            Entry loaded = load(claim);
+            if (loaded == null) bloomFalsePositives.increment();
+            return loaded;
+        }
+        cacheHits.increment();
+        return replay(claim, found);
+    }
+
+    /**
+     * Like {@link #find} but always reads the table. Used after a transfer failed on the key's primary
+     * key, when the winning request may not be in this node's memory yet.
+     */
+    public Entry load(Entry claim) {
+        dbLookups.increment();
+        List<Entry> rows = jdbcTemplate.query(
+                "SELECT request_hash, transfer_id, created_at FROM idempotency_keys WHERE idempotency_key = ?",
+                (rs, i) -> new Entry(claim.key, rs.getString(1), rs.getString(2), rs.getTimestamp(3).toInstant()),
+                claim.key);
+        if (rows.isEmpty()) return null;
+        Entry found = rows.get(0);
+        cache(found);
+        return replay(claim, found);
+    }
+
+    private Entry replay(Entry claim, Entry found) {
+        if (!found.requestHash.equals(claim.requestHash)) {
+            mismatches.increment();
+            throw new IllegalArgumentException("Idempotency-Key was already used for a different request");
+        }
+        replays.increment();
+        return found;
+    }
+
+    /** Runs {@code transfer} with {@code claim} bound to this thread, for the ledger writer to record. */
+    public void run(Entry claim, Runnable transfer) {
+        call(claim, () -> {
+            transfer.run();
+            return null;
+        });
+    }
+
+    public <T> T call(Entry claim, Supplier<T> transfer) {
+        Entry outer = CURRENT.get();
+        CURRENT.set(claim);
+        try {
+            return transfer.get();
+        } finally {
+            if (outer == null) CURRENT.remove();
+            else CURRENT.set(outer);
+        }
+    }
+
+    /** The claim bound by {@link #run}, or null. Paths that hand work to another thread capture it here. */
+    public static Entry current() {
+        return CURRENT.get();
+    }
+
+    /** Inserts the bound claim, if any, on the caller's transaction. A duplicate key throws {@link DuplicateKeyException}. */
+    public void record(String transferId) {
+        Entry claim = CURRENT.get();
+        if (claim == null) return;
+        Instant now = Instant.now();
+        jdbcTemplate.update(INSERT_SQL, claim.key, claim.requestHash, transferId, Timestamp.from(now));
+        claim.transferId = transferId;
+        claim.createdAt = now;
+    }
+
+    /** For callers managing their own {@link Connection}: the row joins that connection's transaction. */
+    public void record(Connection conn, String transferId) throws SQLException {
+        Entry claim = CURRENT.get();
+        if (claim == null) return;
+        Instant now = Instant.now();
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            ps.setString(1, claim.key);
+            ps.setString(2, claim.requestHash);
+            ps.setString(3, transferId);
+            ps.setTimestamp(4, Timestamp.from(now));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            if ("23505".equals(e.getSQLState())) {
+                throw new DuplicateKeyException("Idempotency-Key already applied: " + claim.key, e);
+            }
+            throw e;
+        }
+        claim.transferId = transferId;
+        claim.createdAt = now;
+    }
+
+    /** Inserts several claims, each already paired with its transfer id, on the caller's transaction. */
+    public void recordAll(List<Entry> claims, List<String> transferIds) {
+        if (claims.isEmpty()) return;
+        Instant now = Instant.now();
+        Timestamp ts = Timestamp.from(now);
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, claims.get(i).key);
+                ps.setString(2, claims.get(i).requestHash);
+                ps.setString(3, transferIds.get(i));
+                ps.setTimestamp(4, ts);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return claims.size();
+            }
+        });
+        for (int i = 0; i < claims.size(); i++) {
+            claims.get(i).transferId = transferIds.get(i);
+            claims.get(i).createdAt = now;
+        }
+    }
+
+    /** Which of {@code keys} are already applied, read on the caller's transaction. */
+    public Set<String> existing(Collection<String> keys) {
+        if (keys.isEmpty()) return Collections.emptySet();
+        String placeholders = String.join(",", Collections.nCopies(keys.size(), "?"));
+        Set<String> found = new HashSet<>();
+        jdbcTemplate.query("SELECT idempotency_key FROM idempotency_keys WHERE idempotency_key IN (" + placeholders + ")",
+                rs -> { found.add(rs.getString(1)); }, keys.toArray());
+        return found;
+    }
+
+    /** Call once the claim's transaction has committed, so replays are answered from memory. */
+    public void remember(Entry claim) {
+        if (claim.transferId == null) return;
+        applied.increment();
+        currentFilter.put(claim.key);
+        cache(claim);
+    }
+
+    private void cache(Entry entry) {
+        lock.lock();
+        try {
+            recent.put(entry.key, entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Deletes keys older than the TTL, {@code sweep-batch-size} rows per autocommitted statement. */
+    @Scheduled(initialDelayString = "${transfer.idempotency.sweep-interval-ms:60000}",
+               fixedDelayString = "${transfer.idempotency.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        sweep(Instant.ofEpochMilli(now - ttlMillis));
+        if (now - rotatedAt >= ttlMillis) {
+            previousFilter = currentFilter;
+            currentFilter = new BloomFilter(bloomBits, bloomHashes);
+            rotatedAt = now;
+            rotations.increment();
+        }
+    }
+
+    int sweep(Instant cutoff) {
+        Timestamp ts = Timestamp.from(cutoff);
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(SWEEP_SQL, ts, sweepBatchSize);
+            total += deleted;
+            sweepBatches.increment();
+        } while (deleted == sweepBatchSize);
+        swept.add(total);
+        lock.lock();
+        try {
+            recent.values().removeIf(e -> e.createdAt.isBefore(cutoff));
+        } finally {
+            lock.unlock();
+        }
+        return total;
+    }
+
+    private static String sha256(String request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "idempotency";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        int size;
+        lock.lock();
+        try {
+            size = recent.size();
+        } finally {
+            lock.unlock();
+        }
+        stats.put("lookups", lookups.sum());
+        stats.put("cacheHits", cacheHits.sum());
+        stats.put("bloomNegatives", bloomNegatives.sum());
+        stats.put("dbLookups", dbLookups.sum());
+        // Only lookups the filter sent to the database; load() after a duplicate-key failure is not one
+        stats.put("bloomFalsePositives", bloomFalsePositives.sum());
+        stats.put("replays", replays.sum());
+        stats.put("mismatches", mismatches.sum());
+        stats.put("applied", applied.sum());
+        stats.put("cacheSize", size);
+        stats.put("maxCacheSize", maxCacheSize);
+        stats.put("bloomBits", currentFilter.bitCount());
+        stats.put("bloomRotations", rotations.sum());
+        stats.put("swept", swept.sum());
+        stats.put("sweepBatches", sweepBatches.sum());
+        return stats;
+    }
+}
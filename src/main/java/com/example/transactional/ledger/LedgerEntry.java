@@ -0,0 +1,42 @@
+package com.example.transactional.ledger;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * One leg of a transfer in the append-only {@code transfers} ledger: a debit is a negative amount on
+ * the sender, a credit a positive amount on the recipient, both sharing the same {@code transferId}.
+ * Rows are written with JDBC by {@link LedgerWriter}; the entity only defines the table.
+ */
+@Entity
+@Table(name = "transfers", indexes = @Index(name = "ix_transfers_account_created", columnList = "account_id, created_at, id"))
+public class LedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "transfer_id", nullable = false, length = 36)
+    private String transferId;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    // Signed BIGINT minor units, like accounts.balance
+    @Column(nullable = false)
+    private long amount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public LedgerEntry() {}
+
+    public Long getId() { return id; }
+
+    public String getTransferId() { return transferId; }
+
+    public Long getAccountId() { return accountId; }
+
+    public long getAmount() { return amount; }
+
+    public Instant getCreatedAt() { return createdAt; }
+}
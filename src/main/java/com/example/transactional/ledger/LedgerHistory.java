@@ -0,0 +1,93 @@
+package com.example.transactional.ledger;
+
+import com.example.transactional.money.Money;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * Reads an account's ledger entries oldest first using keyset pagination over
+ * (account_id, created_at, id), which is exactly the {@code ix_transfers_account_created} index.
+ * Each page is its own short query with a bounded fetch size, so memory use and lock footprint do
+ * not grow with the length of the history.
+ */
+@Component
+public class LedgerHistory {
+
+    private static final String FIRST_PAGE_SQL =
+            "SELECT id, transfer_id, amount, created_at FROM transfers WHERE account_id = ? " +
+            "ORDER BY created_at, id LIMIT ?";
+    private static final String NEXT_PAGE_SQL =
+            "SELECT id, transfer_id, amount, created_at FROM transfers WHERE account_id = ? " +
+            "AND (created_at > ? OR (created_at = ? AND id > ?)) ORDER BY created_at, id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int pageSize;
+    private final int fetchSize;
+
+    public LedgerHistory(JdbcTemplate jdbcTemplate,
+                         @Value("${ledger.history.page-size:1000}") int pageSize,
+                         @Value("${ledger.history.fetch-size:200}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pageSize = pageSize;
+        this.fetchSize = fetchSize;
+    }
+
+    public static class Entry {
+        public final long id;
+        public final String transferId;
+        public final Money amount;
+        public final Instant createdAt;
+        public Entry(long id, String transferId, Money amount, Instant createdAt) {
+            this.id = id;
+            this.transferId = transferId;
+            this.amount = amount;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /** Feeds up to {@code limit} entries (all when limit <= 0) to {@code sink}; returns how many were sent. */
+    public long stream(long accountId, long limit, Consumer<Entry> sink) {
+        long sent = 0;
+        Timestamp lastCreatedAt = null;
+        long lastId = 0;
+        while (limit <= 0 || sent < limit) {
+            int page = (int) (limit <= 0 ? pageSize : Math.min(pageSize, limit - sent));
+            Timestamp afterCreatedAt = lastCreatedAt;
+            long afterId = lastId;
+            long[] rows = new long[1];
+            Timestamp[] last = new Timestamp[1];
+            long[] lastIds = new long[1];
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(afterCreatedAt == null ? FIRST_PAGE_SQL : NEXT_PAGE_SQL);
+                ps.setFetchSize(fetchSize);
+                int i = 1;
+                ps.setLong(i++, accountId);
+                if (afterCreatedAt != null) {
+                    ps.setTimestamp(i++, afterCreatedAt);
+                    ps.setTimestamp(i++, afterCreatedAt);
+                    ps.setLong(i++, afterId);
+                }
+                ps.setInt(i, page);
+                return ps;
+            }, rs -> {
+                long id = rs.getLong(1);
+                Timestamp createdAt = rs.getTimestamp(4);
+                sink.accept(new Entry(id, rs.getString(2), Money.ofMinor(rs.getLong(3)), createdAt.toInstant()));
+                rows[0]++;
+                last[0] = createdAt;
+                lastIds[0] = id;
+            });
+            sent += rows[0];
+            if (rows[0] < page) break;
+            lastCreatedAt = last[0];
+            lastId = lastIds[0];
+        }
+        return sent;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.transactional.ledger;
+
+import com.example.transactional.idempotency.IdempotencyStore;
+import com.example.transactional.money.Money;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Appends transfers to the {@code transfers} ledger with a single JDBC batch. Runs on whatever
+ * transaction is bound to the caller's thread, so the ledger commits or rolls back with the balances.
+ * Single transfers also record the caller's {@code Idempotency-Key}, if one is bound, on that transaction.
+ */
+@Component
+public class LedgerWriter {
+
+    static final String INSERT_SQL = "INSERT INTO transfers(transfer_id, account_id, amount, created_at) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IdempotencyStore idempotency;
+
+    public LedgerWriter(JdbcTemplate jdbcTemplate, IdempotencyStore idempotency) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idempotency = idempotency;
+    }
+
+    public static class Transfer {
+        public final long fromId;
+        public final long toId;
+        /** Minor units, positive. */
+        public final long amount;
+        public Transfer(long fromId, long toId, long amount) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.amount = amount;
+        }
+    }
+
+    public void append(long fromId, long toId, Money amount) {
+        List<String> ids = append(List.of(new Transfer(fromId, toId, amount.minor())));
+        idempotency.record(ids.get(0));
+    }
+
+    /** For callers managing their own {@link Connection}: the rows join that connection's transaction. */
+    public void append(Connection conn, long fromId, long toId, Money amount) throws SQLException {
+        Timestamp now = Timestamp.from(Instant.now());
+        String transferId = UUID.randomUUID().toString();
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            ps.setString(1, transferId);
+            ps.setLong(2, fromId);
+            ps.setLong(3, -amount.minor());
+            ps.setTimestamp(4, now);
+            ps.addBatch();
+            ps.setString(1, transferId);
+            ps.setLong(2, toId);
+            ps.setLong(3, amount.minor());
+            ps.setTimestamp(4, now);
+            ps.addBatch();
+            ps.executeBatch();
+        }
+        idempotency.record(conn, transferId);
+    }
+
+    /**
+     * Appends one multi-leg transfer: a row per leg, all sharing one transfer id. Amounts are signed
+     * minor units (debits negative) and must net to zero; returns the transfer id.
+     */
+    public String appendLegs(long[] accountIds, long[] amounts) {
+        Timestamp now = Timestamp.from(Instant.now());
+        String transferId = UUID.randomUUID().toString();
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, transferId);
+                ps.setLong(2, accountIds[i]);
+                ps.setLong(3, amounts[i]);
+                ps.setTimestamp(4, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return accountIds.length;
+            }
+        });
+        idempotency.record(transferId);
+        return transferId;
+    }
+
+    /**
+     * Appends a single row for a balance change that is not a transfer between two accounts (the isolation
+     * demo's writer), so the ledger still explains the balance. Records no idempotency key.
+     */
+    public void appendAdjustment(long accountId, long amount) {
+        jdbcTemplate.update(INSERT_SQL, UUID.randomUUID().toString(), accountId, amount, Timestamp.from(Instant.now()));
+    }
+
+    /** Appends each transfer under a fresh transfer id and returns the ids in order. Records no idempotency key. */
+    public List<String> append(List<Transfer> transfers) {
+        if (transfers.isEmpty()) return List.of();
+        Timestamp now = Timestamp.from(Instant.now());
+        String[] ids = new String[transfers.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = UUID.randomUUID().toString();
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Transfer t = transfers.get(i / 2);
+                boolean debit = i % 2 == 0;
+                ps.setString(1, ids[i / 2]);
+                ps.setLong(2, debit ? t.fromId : t.toId);
+                ps.setLong(3, debit ? -t.amount : t.amount);
+                ps.setTimestamp(4, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return transfers.size() * 2;
+            }
+        });
+        return List.of(ids);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.transactional.limit;
+
+import com.example.transactional.metrics.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-flight limit for one transfer strategy, adjusted TCP Vegas style from observed latency. Latency is
+ * averaged over windows of {@code windowSize} calls and compared with the no-load latency: with the
+ * current limit {@code L} and window average {@code rtt}, about {@code L * (1 - noLoad / rtt)} calls
+ * are queuing rather than working. The limit grows while that estimate is below {@code 3 * log10(L)}
+ * and shrinks while it is above {@code 6 * log10(L)}, so it settles a few calls above what the database
+ * serves without queuing. A window with an overload failure (lock or pool timeout) shrinks the limit
+ * regardless of latency, and a window that never used half the limit cannot grow it.
+ *
+ * <p>Under sustained overload every call queues, so the no-load latency cannot be read off ordinary
+ * traffic. It is probed instead: at start and then every few hundred windows, the limit is pinned to
+ * {@code minLimit} for one window and the average latency of calls that started at that concurrency
+ * becomes the new no-load latency. {@code minLimit} should therefore be below what the database serves
+ * in parallel.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int windowSize;
+    private final double smoothing;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // Guarded by this
+    private double estimatedLimit;
+    private double noLoadNanos;
+    private boolean probing = true;
+    private int windowsUntilProbe;
+    private int windowSamples;
+    private long windowNanos;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, int windowSize, double smoothing) {
+        if (minLimit < 1 || minLimit > maxLimit) throw new IllegalArgumentException("Need 1 <= min-limit <= max-limit");
+        if (windowSize < 1) throw new IllegalArgumentException("window-size must be at least 1");
+        if (smoothing <= 0 || smoothing > 1) throw new IllegalArgumentException("smoothing must be in (0, 1]");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowSize = windowSize;
+        this.smoothing = smoothing;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = minLimit;
+    }
+
+    /** Takes a slot, or returns -1 at once when the limit is reached; otherwise the in-flight count including this call. */
+    int tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return current + 1;
+            }
+        }
+    }
+
+    /** Gives the slot back and feeds the call's latency into the limit; {@code overload} marks a timeout-like failure. */
+    void release(long nanos, int inFlightAtStart, boolean overload) {
+        inFlight.decrementAndGet();
+        latency.record(nanos);
+        if (overload) dropped.increment();
+        sample(nanos, inFlightAtStart, overload);
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    private synchronized void sample(long nanos, int inFlightAtStart, boolean overload) {
+        if (probing) {
+            // Calls admitted before the probe started may have queued
+            if (inFlightAtStart > minLimit) return;
+            windowSamples++;
+            windowNanos += nanos;
+            if (windowSamples < windowSize) return;
+            noLoadNanos = (double) windowNanos / windowSamples;
+            resetWindow();
+            probing = false;
+            probes.increment();
+            windowsUntilProbe = 300 + ThreadLocalRandom.current().nextInt(300);
+            limit = (int) estimatedLimit;
+            return;
+        }
+
+        windowSamples++;
+        windowNanos += nanos;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtStart);
+        windowDropped |= overload;
+        if (windowSamples < windowSize) return;
+
+        double rtt = (double) windowNanos / windowSamples;
+        int maxInFlight = windowMaxInFlight;
+        boolean drop = windowDropped;
+        resetWindow();
+        noLoadNanos = Math.min(noLoadNanos, rtt);
+
+        double log = Math.max(1, Math.log10(estimatedLimit));
+        double target = estimatedLimit;
+        if (drop) {
+            target = estimatedLimit - log;
+        } else {
+            double queue = Math.ceil(estimatedLimit * (1 - noLoadNanos / rtt));
+            if (queue <= log) {
+                target = estimatedLimit + 6 * log;
+            } else if (queue < 3 * log) {
+                target = estimatedLimit + log;
+            } else if (queue > 6 * log) {
+                target = estimatedLimit - log;
+            }
+            // Calls were not limited by us in this window, so it says nothing about a higher limit
+            if (target > estimatedLimit && maxInFlight * 2 < estimatedLimit) target = estimatedLimit;
+        }
+        target = Math.max(minLimit, Math.min(maxLimit, target));
+        estimatedLimit = (1 - smoothing) * estimatedLimit + smoothing * target;
+
+        // Jittered so strategies do not all probe at once
+        if (--windowsUntilProbe <= 0) {
+            probing = true;
+            limit = minLimit;
+        } else {
+            limit = (int) estimatedLimit;
+        }
+    }
+
+    private void resetWindow() {
+        windowSamples = 0;
+        windowNanos = 0;
+        windowMaxInFlight = 0;
+        windowDropped = false;
+    }
+
+    Map<String, Object> stats() {
+        long acceptedCount = accepted.sum();
+        long rejectedCount = rejected.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("limit", limit);
+        stats.put("inFlight", inFlight.get());
+        stats.put("accepted", acceptedCount);
+        stats.put("rejected", rejectedCount);
+        stats.put("rejectionRate", acceptedCount + rejectedCount == 0 ? 0.0 : (double) rejectedCount / (acceptedCount + rejectedCount));
+        stats.put("overloadFailures", dropped.sum());
+        stats.put("probes", probes.sum());
+        synchronized (this) {
+            stats.put("probing", probing);
+            stats.put("noLoadLatencyMicros", TimeUnit.NANOSECONDS.toMicros((long) noLoadNanos));
+        }
+        stats.put("latency", latency.snapshot());
+        return stats;
+    }
+}
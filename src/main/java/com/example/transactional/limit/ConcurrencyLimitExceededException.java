@@ -0,0 +1,15 @@
+package com.example.transactional.limit;
+
+import java.io.Serial;
+import java.util.concurrent.RejectedExecutionException;
+
+/** A transfer turned away because its strategy is at its concurrency limit; the web layer answers 503. */
+public class ConcurrencyLimitExceededException extends RejectedExecutionException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public ConcurrencyLimitExceededException(String strategy, int limit) {
+        super("Too many concurrent " + strategy + " transfers (limit " + limit + ")");
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.transactional.limit;
+
+import com.example.transactional.metrics.StatsSource;
+import com.example.transactional.retry.RetryableSqlFailures;
+import com.example.transactional.service.StripeLockTimeoutException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive concurrency limits in front of the transfer endpoints, one {@link AdaptiveConcurrencyLimit}
+ * per strategy, so a slow strategy (say {@code jdbc-locking} on a hot account) is throttled without
+ * taking slots from the others. A call over its strategy's limit fails at once with
+ * {@link ConcurrencyLimitExceededException} instead of waiting for a connection; accepted calls report
+ * their latency, through commit, back to the limit. Row and striped-lock, pool and query timeouts and
+ * exhausted conflict retries count as overload; other failures are ordinary samples. Limits, rejection rates and
+ * latencies are under {@code /api/stats/concurrencyLimits}.
+ */
+@Component
+public class TransferConcurrencyLimits implements StatsSource {
+
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int windowSize;
+    private final double smoothing;
+    private final Map<String, AdaptiveConcurrencyLimit> limits = new ConcurrentHashMap<>();
+
+    public TransferConcurrencyLimits(@Value("${transfer.concurrency-limit.enabled:true}") boolean enabled,
+                                     @Value("${transfer.concurrency-limit.initial-limit:20}") int initialLimit,
+                                     @Value("${transfer.concurrency-limit.min-limit:4}") int minLimit,
+                                     @Value("${transfer.concurrency-limit.max-limit:200}") int maxLimit,
+                                     @Value("${transfer.concurrency-limit.window-size:20}") int windowSize,
+                                     @Value("${transfer.concurrency-limit.smoothing:1.0}") double smoothing) {
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowSize = windowSize;
+        this.smoothing = smoothing;
+        // Fail on bad settings at startup rather than on the first transfer
+        new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, windowSize, smoothing);
+    }
+
+    public void run(String strategy, Runnable work) {
+        call(strategy, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> T call(String strategy, Supplier<T> work) {
+        if (!enabled) return work.get();
+        AdaptiveConcurrencyLimit limit = limitFor(strategy);
+        int inFlight = acquire(strategy, limit);
+        long start = System.nanoTime();
+        boolean overload = false;
+        try {
+            return work.get();
+        } catch (RuntimeException ex) {
+            overload = isOverload(ex);
+            throw ex;
+        } finally {
+            limit.release(System.nanoTime() - start, inFlight, overload);
+        }
+    }
+
+    /** For strategies that answer with a future: the slot is held until the future completes. */
+    public <T> CompletableFuture<T> callAsync(String strategy, Supplier<CompletableFuture<T>> work) {
+        if (!enabled) return work.get();
+        AdaptiveConcurrencyLimit limit = limitFor(strategy);
+        int inFlight = acquire(strategy, limit);
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = work.get();
+        } catch (RuntimeException ex) {
+            limit.release(System.nanoTime() - start, inFlight, isOverload(ex));
+            throw ex;
+        }
+        return future.whenComplete((result, ex) -> limit.release(System.nanoTime() - start, inFlight, ex != null && isOverload(ex)));
+    }
+
+    private AdaptiveConcurrencyLimit limitFor(String strategy) {
+        return limits.computeIfAbsent(strategy, s -> new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, windowSize, smoothing));
+    }
+
+    private static int acquire(String strategy, AdaptiveConcurrencyLimit limit) {
+        int inFlight = limit.tryAcquire();
+        if (inFlight < 0) throw new ConcurrencyLimitExceededException(strategy, limit.limit());
+        return inFlight;
+    }
+
+    private static boolean isOverload(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return RetryableSqlFailures.classify(cause) != null
+                || cause instanceof QueryTimeoutException
+                || cause instanceof DataAccessResourceFailureException
+                || cause instanceof CannotCreateTransactionException
+                || cause instanceof StripeLockTimeoutException;
+    }
+
+    @Override
+    public String statsName() {
+        return "concurrencyLimits";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("minLimit", minLimit);
+        stats.put("maxLimit", maxLimit);
+        Map<String, Object> byStrategy = new TreeMap<>();
+        limits.forEach((strategy, limit) -> byStrategy.put(strategy, limit.stats()));
+        stats.put("strategies", byStrategy);
+        return stats;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.transactional.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hikari pool gauges (active, idle, pending, total) and histograms of connection acquire time, time a
+ * connection is held and time to open a new one. Hikari calls the tracker itself, so this has to be
+ * installed on the pool before it starts (see TransactionConfig).
+ */
+public class ConnectionPoolStats implements MetricsTrackerFactory, StatsSource {
+
+    private final LatencyHistogram acquire = new LatencyHistogram();
+    private final LatencyHistogram usage = new LatencyHistogram();
+    private final LatencyHistogram creation = new LatencyHistogram();
+    private final LongAdder timeouts = new LongAdder();
+    private volatile String poolName;
+    private volatile PoolStats pool;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolName = poolName;
+        this.pool = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquire.record(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usage.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+            }
+
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                creation.record(TimeUnit.MILLISECONDS.toNanos(connectionCreatedMillis));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    @Override
+    public String statsName() {
+        return "connectionPool";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        PoolStats p = pool;
+        stats.put("pool", poolName);
+        if (p != null) {
+            // Hikari refreshes these gauges at most once per second
+            stats.put("active", p.getActiveConnections());
+            stats.put("idle", p.getIdleConnections());
+            stats.put("pending", p.getPendingThreads());
+            stats.put("total", p.getTotalConnections());
+            stats.put("max", p.getMaxConnections());
+        }
+        stats.put("timeouts", timeouts.sum());
+        stats.put("acquire", acquire.snapshot());
+        stats.put("usage", usage.snapshot());
+        stats.put("creation", creation.snapshot());
+        return stats;
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.transactional.metrics;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorates a transaction manager with latency histograms for the transactions it starts: time from
+ * begin to the first prepared statement (connection acquisition included), total duration, overall and
+ * per isolation level, and commit duration, plus rollback counts by cause. Calls that only join an
+ * outer transaction are counted and passed through untouched.
+ *
+ * <p>Rollback causes come from failed commits, from {@link #rollback(PlatformTransactionManager,
+ * TransactionStatus, Throwable)} in programmatic transactions, from {@link RollbackCauseAdvice} for
+ * declarative {@code @Transactional} ones, "RollbackOnly" when a commit turns into a rollback, and
+ * "unspecified" for a plain {@link #rollback(TransactionStatus)}.
+ */
+public class InstrumentedTransactionManager implements PlatformTransactionManager, StatsSource {
+
+    // Innermost transaction started on this thread; statementStarting() and recordRollbackCause() report to it
+    private static final ThreadLocal<TimedStatus> CURRENT = new ThreadLocal<>();
+
+    private static final int[] ISOLATION_LEVELS = {
+            TransactionDefinition.ISOLATION_DEFAULT,
+            TransactionDefinition.ISOLATION_READ_UNCOMMITTED,
+            TransactionDefinition.ISOLATION_READ_COMMITTED,
+            TransactionDefinition.ISOLATION_REPEATABLE_READ,
+            TransactionDefinition.ISOLATION_SERIALIZABLE};
+    private static final String[] ISOLATION_NAMES = {
+            "DEFAULT", "READ_UNCOMMITTED", "READ_COMMITTED", "REPEATABLE_READ", "SERIALIZABLE"};
+
+    private final String name;
+    private final PlatformTransactionManager delegate;
+
+    private final LongAdder begun = new LongAdder();
+    private final LongAdder participating = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder rolledBack = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> rollbacksByCause = new ConcurrentHashMap<>();
+    private final LatencyHistogram firstStatement = new LatencyHistogram();
+    private final LatencyHistogram duration = new LatencyHistogram();
+    private final LatencyHistogram commitDuration = new LatencyHistogram();
+    private final LatencyHistogram[] durationByIsolation = new LatencyHistogram[ISOLATION_LEVELS.length];
+
+    public InstrumentedTransactionManager(String name, PlatformTransactionManager delegate) {
+        this.name = name;
+        this.delegate = delegate;
+        for (int i = 0; i < durationByIsolation.length; i++) durationByIsolation[i] = new LatencyHistogram();
+    }
+
+    public PlatformTransactionManager getDelegate() {
+        return delegate;
+    }
+
+    /** Called by {@link StatementTimingDataSource} before every statement is prepared. */
+    static void statementStarting() {
+        TimedStatus current = CURRENT.get();
+        if (current != null && !current.statementSeen) {
+            current.statementSeen = true;
+            current.owner.firstStatement.record(System.nanoTime() - current.startNanos);
+        }
+    }
+
+    /** Called by {@link RollbackCauseAdvice} when a {@code @Transactional} method throws. */
+    static void recordRollbackCause(Throwable cause) {
+        TimedStatus current = CURRENT.get();
+        if (current != null) current.recordCause(cause);
+    }
+
+    /**
+     * Rolls back a programmatic transaction that failed with {@code cause}, which is what the rollback is
+     * counted under. Does nothing if the transaction already completed, e.g. because its commit failed.
+     * A failing rollback is added to {@code cause} as suppressed rather than thrown: the caller rethrows
+     * {@code cause}, which is what callers (and the retry interceptor) have to see, not the rollback error
+     * on a connection the pool has already closed.
+     */
+    public static void rollback(PlatformTransactionManager txManager, TransactionStatus status, Throwable cause) {
+        if (status.isCompleted()) return;
+        if (status instanceof TimedStatus timed) timed.recordCause(cause);
+        try {
+            txManager.rollback(status);
+        } catch (RuntimeException | Error ex) {
+            cause.addSuppressed(ex);
+        }
+    }
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
+        long start = System.nanoTime();
+        TransactionStatus status = delegate.getTransaction(definition);
+        if (!status.isNewTransaction()) {
+            participating.increment();
+            return status;
+        }
+        begun.increment();
+        int isolation = definition == null ? 0 : isolationIndex(definition.getIsolationLevel());
+        TimedStatus timed = new TimedStatus(this, status, isolation, start, CURRENT.get());
+        CURRENT.set(timed);
+        return timed;
+    }
+
+    @Override
+    public void commit(TransactionStatus status) throws TransactionException {
+        if (!(status instanceof TimedStatus timed) || timed.owner != this || timed.finished) {
+            delegate.commit(unwrap(status));
+            return;
+        }
+        boolean rollbackOnly = timed.isRollbackOnly();
+        long start = System.nanoTime();
+        try {
+            delegate.commit(timed.target);
+            commitDuration.record(System.nanoTime() - start);
+            if (rollbackOnly) recordRollback("RollbackOnly");
+            else committed.increment();
+        } catch (RuntimeException | Error ex) {
+            recordRollback(ex.getClass().getSimpleName());
+            throw ex;
+        } finally {
+            finish(timed);
+        }
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) throws TransactionException {
+        if (!(status instanceof TimedStatus timed) || timed.owner != this || timed.finished) {
+            // Already completed (e.g. rollback after a failed commit): let the delegate report it
+            delegate.rollback(unwrap(status));
+            return;
+        }
+        try {
+            delegate.rollback(timed.target);
+        } finally {
+            recordRollback(timed.cause != null ? timed.cause : "unspecified");
+            finish(timed);
+        }
+    }
+
+    private static TransactionStatus unwrap(TransactionStatus status) {
+        return status instanceof TimedStatus timed ? timed.target : status;
+    }
+
+    private void recordRollback(String cause) {
+        rolledBack.increment();
+        rollbacksByCause.computeIfAbsent(cause, c -> new LongAdder()).increment();
+    }
+
+    private void finish(TimedStatus timed) {
+        timed.finished = true;
+        long elapsed = System.nanoTime() - timed.startNanos;
+        duration.record(elapsed);
+        durationByIsolation[timed.isolation].record(elapsed);
+        if (CURRENT.get() == timed) {
+            if (timed.previous == null) CURRENT.remove();
+            else CURRENT.set(timed.previous);
+        }
+    }
+
+    private static int isolationIndex(int level) {
+        for (int i = 0; i < ISOLATION_LEVELS.length; i++) {
+            if (ISOLATION_LEVELS[i] == level) return i;
+        }
+        return 0;
+    }
+
+    @Override
+    public String statsName() {
+        return "tx." + name;
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("begun", begun.sum());
+        stats.put("participating", participating.sum());
+        stats.put("committed", committed.sum());
+        long rollbacks = rolledBack.sum();
+        long completed = committed.sum() + rollbacks;
+        stats.put("rolledBack", rollbacks);
+        stats.put("rollbackRate", completed == 0 ? 0.0 : (double) rollbacks / completed);
+        Map<String, Object> causes = new TreeMap<>();
+        rollbacksByCause.forEach((cause, count) -> causes.put(cause, count.sum()));
+        stats.put("rollbacksByCause", causes);
+        stats.put("timeToFirstStatement", firstStatement.snapshot());
+        stats.put("duration", duration.snapshot());
+        stats.put("commit", commitDuration.snapshot());
+        Map<String, Object> byIsolation = new LinkedHashMap<>();
+        for (int i = 0; i < durationByIsolation.length; i++) {
+            Map<String, Object> snapshot = durationByIsolation[i].snapshot();
+            if ((Long) snapshot.get("count") > 0) byIsolation.put(ISOLATION_NAMES[i], snapshot);
+        }
+        stats.put("durationByIsolation", byIsolation);
+        return stats;
+    }
+
+    /** Status handed to callers for transactions this manager started; delegates everything. */
+    private static final class TimedStatus implements TransactionStatus {
+
+        final InstrumentedTransactionManager owner;
+        final TransactionStatus target;
+        final int isolation;
+        final long startNanos;
+        final TimedStatus previous;
+        boolean statementSeen;
+        boolean finished;
+        String cause;
+
+        TimedStatus(InstrumentedTransactionManager owner, TransactionStatus target, int isolation,
+                    long startNanos, TimedStatus previous) {
+            this.owner = owner;
+            this.target = target;
+            this.isolation = isolation;
+            this.startNanos = startNanos;
+            this.previous = previous;
+        }
+
+        void recordCause(Throwable ex) {
+            if (cause == null) cause = ex.getClass().getSimpleName();
+        }
+
+        @Override public String getTransactionName() { return target.getTransactionName(); }
+        @Override public boolean hasTransaction() { return target.hasTransaction(); }
+        @Override public boolean isNewTransaction() { return target.isNewTransaction(); }
+        @Override public boolean isNested() { return target.isNested(); }
+        @Override public boolean isReadOnly() { return target.isReadOnly(); }
+        @Override public void setRollbackOnly() { target.setRollbackOnly(); }
+        @Override public boolean isRollbackOnly() { return target.isRollbackOnly(); }
+        @Override public boolean isCompleted() { return target.isCompleted(); }
+        @Override public boolean hasSavepoint() { return target.hasSavepoint(); }
+        @Override public void flush() { target.flush(); }
+        @Override public Object createSavepoint() throws TransactionException { return target.createSavepoint(); }
+        @Override public void rollbackToSavepoint(Object savepoint) throws TransactionException { target.rollbackToSavepoint(savepoint); }
+        @Override public void releaseSavepoint(Object savepoint) throws TransactionException { target.releaseSavepoint(savepoint); }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.transactional.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size log-linear histogram of nanosecond durations, in the style of HdrHistogram: values below 64
+ * get their own bucket, above that every power of two is split into 32 linear sub-buckets, so any
+ * recorded value is reported within ~3%. Recording is a few atomic increments and never allocates;
+ * snapshots copy the counts and are meant for the stats endpoint, not hot paths.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values are clamped to 2^42 ns (~73 minutes)
+    private static final long MAX_VALUE = (1L << 42) - 1;
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long v = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(v));
+        total.add(v);
+        max.accumulate(v);
+    }
+
+    /** count, meanMillis, p50/p90/p99/p999Millis and maxMillis; percentiles are bucket upper bounds. */
+    public Map<String, Object> snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        long maxNanos = max.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", count);
+        stats.put("meanMillis", count == 0 ? 0.0 : total.sum() / 1_000_000.0 / count);
+        stats.put("p50Millis", percentile(copy, count, 0.50, maxNanos) / 1_000_000.0);
+        stats.put("p90Millis", percentile(copy, count, 0.90, maxNanos) / 1_000_000.0);
+        stats.put("p99Millis", percentile(copy, count, 0.99, maxNanos) / 1_000_000.0);
+        stats.put("p999Millis", percentile(copy, count, 0.999, maxNanos) / 1_000_000.0);
+        stats.put("maxMillis", maxNanos / 1_000_000.0);
+        return stats;
+    }
+
+    private static long percentile(long[] counts, long count, double quantile, long maxNanos) {
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBoundOf(i), maxNanos);
+        }
+        return maxNanos;
+    }
+
+    static int indexOf(long v) {
+        if (v < 2 * SUB_BUCKETS) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * shift + (int) (v >>> shift);
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < 2 * SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index - (long) SUB_BUCKETS * shift;
+        return ((sub + 1) << shift) - 1;
+    }
+}
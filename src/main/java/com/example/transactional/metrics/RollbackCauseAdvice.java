@@ -0,0 +1,24 @@
+package com.example.transactional.metrics;
+
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands the exception thrown by a {@code @Transactional} method to {@link InstrumentedTransactionManager},
+ * so declarative rollbacks are counted by cause like programmatic ones. Runs inside the transaction
+ * advisor (see {@code TransactionConfig}), i.e. before the transaction interceptor rolls back.
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class RollbackCauseAdvice {
+
+    @AfterThrowing(pointcut = "@annotation(org.springframework.transaction.annotation.Transactional)"
+            + " || @within(org.springframework.transaction.annotation.Transactional)", throwing = "ex")
+    public void recordCause(Throwable ex) {
+        InstrumentedTransactionManager.recordRollbackCause(ex);
+    }
+}
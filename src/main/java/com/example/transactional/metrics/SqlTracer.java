@@ -0,0 +1,128 @@
+package com.example.transactional.metrics;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low-overhead replacement for statement logging: {@link StatementTimingDataSource} times every JDBC
+ * execute and reports it here, but only 1 in {@code sampleRate} statements, plus every statement that
+ * failed or was slower than the threshold, is kept. Kept traces go into a fixed-size ring buffer: the
+ * request thread only offers, and a trace is dropped (and counted) when the buffer is full. A single
+ * background thread drains the buffer and writes one structured line per trace to the
+ * {@code sql.trace} logger, once {@link #start()} has run (as the bean's init method).
+ * Bind parameters are never captured.
+ */
+public class SqlTracer implements StatsSource, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger("sql.trace");
+    private static final int MAX_SQL_LENGTH = 500;
+
+    record Trace(long epochMillis, String thread, String sql, long nanos, boolean slow, boolean failed) {}
+
+    private final boolean enabled;
+    private final int sampleRate;
+    private final long slowNanos;
+    private final ArrayBlockingQueue<Trace> buffer;
+    private final long flushIntervalMillis;
+    private ScheduledExecutorService flusher;
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    public SqlTracer(boolean enabled, int sampleRate, long slowThresholdMillis, int bufferCapacity, long flushIntervalMillis) {
+        if (sampleRate < 1) throw new IllegalArgumentException("sampleRate must be at least 1");
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /** Starts the background flusher; a disabled tracer or a flush interval of 0 (flush by hand) has none. */
+    @PostConstruct
+    public synchronized void start() {
+        if (!enabled || flushIntervalMillis <= 0 || flusher != null) return;
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sql-trace-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Called on the executing thread after every statement; allocates only for kept traces. */
+    public void record(String sql, long nanos, boolean failed) {
+        statements.increment();
+        boolean isSlow = nanos >= slowNanos;
+        if (!isSlow && !failed && ThreadLocalRandom.current().nextInt(sampleRate) != 0) return;
+        (isSlow ? slow : sampled).increment();
+        Trace trace = new Trace(System.currentTimeMillis(), Thread.currentThread().getName(), sql, nanos, isSlow, failed);
+        if (!buffer.offer(trace)) dropped.increment();
+    }
+
+    /** Writes out everything buffered so far; returns the number of traces written. */
+    public int flush() {
+        List<Trace> batch = new ArrayList<>(buffer.size());
+        buffer.drainTo(batch);
+        for (Trace t : batch) {
+            // Structured key=value line; the sql is last and quoted, so it can be parsed up to end of line
+            log.info("ts={} thread={} kind={} failed={} durationUs={} sql=\"{}\"",
+                    t.epochMillis(), t.thread(), t.slow() ? "slow" : "sample", t.failed(),
+                    TimeUnit.NANOSECONDS.toMicros(t.nanos()), abbreviate(t.sql()));
+        }
+        written.add(batch.size());
+        return batch.size();
+    }
+
+    private static String abbreviate(String sql) {
+        if (sql == null) return "";
+        String oneLine = sql.replace('\n', ' ').replace("\"", "\\\"");
+        return oneLine.length() <= MAX_SQL_LENGTH ? oneLine : oneLine.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+
+    @Override
+    public synchronized void close() {
+        if (flusher == null) return;
+        flusher.shutdown();
+        flush();
+    }
+
+    @Override
+    public String statsName() {
+        return "sqlTrace";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("sampleRate", sampleRate);
+        stats.put("slowThresholdMs", TimeUnit.NANOSECONDS.toMillis(slowNanos));
+        stats.put("statements", statements.sum());
+        stats.put("sampled", sampled.sum());
+        stats.put("slow", slow.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("written", written.sum());
+        stats.put("buffered", buffer.size());
+        return stats;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.transactional.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Hands out connections that tell {@link InstrumentedTransactionManager} when the first statement of a
+ * transaction is prepared, which is how time-to-first-statement is measured. With an enabled
+ * {@link SqlTracer}, statements are wrapped as well and every execute is timed and reported to it.
+ * Everything else is passed straight through; unwrap() still reaches the pool. The wrappers
+ * ({@link TimedConnection}, {@link TracedStatement}) are plain delegating classes rather than dynamic
+ * proxies, so a call costs one virtual dispatch and no reflection or argument arrays.
+ */
+public class StatementTimingDataSource extends DelegatingDataSource {
+
+    private final SqlTracer tracer;
+
+    public StatementTimingDataSource(DataSource target) {
+        this(target, null);
+    }
+
+    public StatementTimingDataSource(DataSource target, SqlTracer tracer) {
+        super(target);
+        this.tracer = tracer != null && tracer.isEnabled() ? tracer : null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection wrap(Connection target) {
+        return new TimedConnection(target, tracer);
+    }
+}
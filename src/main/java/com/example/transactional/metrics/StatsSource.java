@@ -0,0 +1,14 @@
+package com.example.transactional.metrics;
+
+import java.util.Map;
+
+/**
+ * Something that can report a snapshot of its runtime counters.
+ * All beans implementing this are collected by {@code StatsController} under {@link #statsName()}.
+ */
+public interface StatsSource {
+
+    String statsName();
+
+    Map<String, Object> stats();
+}
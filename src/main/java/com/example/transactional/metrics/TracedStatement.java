@@ -0,0 +1,427 @@
+package com.example.transactional.metrics;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+/**
+ * A statement whose executes are timed and reported to the {@link SqlTracer}. Prepared statements carry
+ * their SQL from the start; plain ones report the SQL passed to each execute, and a batch by the method
+ * name. getConnection() returns the {@link TimedConnection} that created it.
+ */
+class TracedStatement<S extends Statement> implements Statement {
+
+    final S target;
+    final String preparedSql;
+    final Connection connection;
+    final SqlTracer tracer;
+
+    TracedStatement(S target, String preparedSql, Connection connection, SqlTracer tracer) {
+        this.target = target;
+        this.preparedSql = preparedSql;
+        this.connection = connection;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ResultSet result = target.executeQuery(sql);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            int result = target.executeUpdate(sql);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        target.close();
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        return target.getMaxFieldSize();
+    }
+
+    @Override
+    public void setMaxFieldSize(int max) throws SQLException {
+        target.setMaxFieldSize(max);
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        return target.getMaxRows();
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+        target.setMaxRows(max);
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean enable) throws SQLException {
+        target.setEscapeProcessing(enable);
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return target.getQueryTimeout();
+    }
+
+    @Override
+    public void setQueryTimeout(int seconds) throws SQLException {
+        target.setQueryTimeout(seconds);
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        target.cancel();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return target.getWarnings();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        target.clearWarnings();
+    }
+
+    @Override
+    public void setCursorName(String name) throws SQLException {
+        target.setCursorName(name);
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            boolean result = target.execute(sql);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        return target.getResultSet();
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        return target.getUpdateCount();
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return target.getMoreResults();
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        target.setFetchDirection(direction);
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        return target.getFetchDirection();
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        target.setFetchSize(rows);
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return target.getFetchSize();
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        return target.getResultSetConcurrency();
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        return target.getResultSetType();
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        target.addBatch(sql);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        target.clearBatch();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            int[] result = target.executeBatch();
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(preparedSql != null ? preparedSql : "executeBatch", System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection;
+    }
+
+    @Override
+    public boolean getMoreResults(int current) throws SQLException {
+        return target.getMoreResults(current);
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return target.getGeneratedKeys();
+    }
+
+    @Override
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            int result = target.executeUpdate(sql, autoGeneratedKeys);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            int result = target.executeUpdate(sql, columnIndexes);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            int result = target.executeUpdate(sql, columnNames);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            boolean result = target.execute(sql, autoGeneratedKeys);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            boolean result = target.execute(sql, columnIndexes);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            boolean result = target.execute(sql, columnNames);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return target.getResultSetHoldability();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return target.isClosed();
+    }
+
+    @Override
+    public void setPoolable(boolean poolable) throws SQLException {
+        target.setPoolable(poolable);
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        return target.isPoolable();
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        target.closeOnCompletion();
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        return target.isCloseOnCompletion();
+    }
+
+    @Override
+    public long getLargeUpdateCount() throws SQLException {
+        return target.getLargeUpdateCount();
+    }
+
+    @Override
+    public void setLargeMaxRows(long max) throws SQLException {
+        target.setLargeMaxRows(max);
+    }
+
+    @Override
+    public long getLargeMaxRows() throws SQLException {
+        return target.getLargeMaxRows();
+    }
+
+    @Override
+    public long[] executeLargeBatch() throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            long[] result = target.executeLargeBatch();
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(preparedSql != null ? preparedSql : "executeLargeBatch", System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            long result = target.executeLargeUpdate(sql);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            long result = target.executeLargeUpdate(sql, autoGeneratedKeys);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            long result = target.executeLargeUpdate(sql, columnIndexes);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            long result = target.executeLargeUpdate(sql, columnNames);
+            failed = false;
+            return result;
+        } finally {
+            tracer.record(sql, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public String enquoteLiteral(String val) throws SQLException {
+        return target.enquoteLiteral(val);
+    }
+
+    @Override
+    public String enquoteIdentifier(String identifier, boolean alwaysQuote) throws SQLException {
+        return target.enquoteIdentifier(identifier, alwaysQuote);
+    }
+
+    @Override
+    public boolean isSimpleIdentifier(String identifier) throws SQLException {
+        return target.isSimpleIdentifier(identifier);
+    }
+
+    @Override
+    public String enquoteNCharLiteral(String val) throws SQLException {
+        return target.enquoteNCharLiteral(val);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return target.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.transactional.money;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+
+/**
+ * An amount held as a {@code long} count of minor units (cents, scale 2). Arithmetic is exact and
+ * fails instead of wrapping on overflow; parsing reads the decimal string directly, so the request and
+ * transfer paths never build a BigDecimal. BigDecimal conversions exist only for edges that still use it.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+
+    private final long minor;
+
+    private Money(long minor) {
+        this.minor = minor;
+    }
+
+    public static Money ofMinor(long minor) {
+        return minor == 0 ? ZERO : new Money(minor);
+    }
+
+    /** Exact conversion; more than two significant decimal places is an error, not a rounding. */
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Money of(BigDecimal amount) {
+        if (amount == null) throw new IllegalArgumentException("Amount is required");
+        try {
+            return ofMinor(amount.movePointRight(SCALE).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid amount: " + amount.toPlainString());
+        }
+    }
+
+    public static Money parse(CharSequence text) {
+        return ofMinor(parseMinor(text));
+    }
+
+    /**
+     * Parses "12", "12.3", "-12.34" (trailing zeros past the second decimal are allowed) into minor
+     * units without allocating.
+     */
+    public static long parseMinor(CharSequence text) {
+        if (text == null) throw new IllegalArgumentException("Amount is required");
+        int len = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (len > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i++;
+        }
+        long units = 0;
+        int digits = 0;
+        for (; i < len && text.charAt(i) != '.'; i++, digits++) {
+            units = accumulate(units, text.charAt(i), text);
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (i < len) {
+            for (i++; i < len; i++, fractionDigits++) {
+                char c = text.charAt(i);
+                if (fractionDigits < SCALE) {
+                    fraction = accumulate(fraction, c, text);
+                } else if (c != '0') {
+                    throw new IllegalArgumentException("Amount has more than " + SCALE + " decimal places: " + text);
+                }
+            }
+        }
+        if (digits == 0 && fractionDigits == 0) throw new IllegalArgumentException("Invalid amount: " + text);
+        for (int pad = fractionDigits; pad < SCALE; pad++) fraction *= 10;
+        try {
+            long minor = Math.addExact(Math.multiplyExact(units, 100), fraction);
+            return negative ? -minor : minor;
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + text);
+        }
+    }
+
+    private static long accumulate(long value, char c, CharSequence text) {
+        if (c < '0' || c > '9') throw new IllegalArgumentException("Invalid amount: " + text);
+        if (value > (Long.MAX_VALUE - (c - '0')) / 10) throw new IllegalArgumentException("Amount out of range: " + text);
+        return value * 10 + (c - '0');
+    }
+
+    public long minor() {
+        return minor;
+    }
+
+    public int signum() {
+        return Long.signum(minor);
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(addExact(minor, other.minor));
+    }
+
+    public Money minus(Money other) {
+        return ofMinor(addExact(minor, negateExact(other.minor)));
+    }
+
+    public Money negate() {
+        return ofMinor(negateExact(minor));
+    }
+
+    /** {@link Math#addExact} reported as a business error rather than an ArithmeticException. */
+    public static long addExact(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range");
+        }
+    }
+
+    public static long negateExact(long a) {
+        try {
+            return Math.negateExact(a);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range");
+        }
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minor, other.minor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && other.minor == minor;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minor);
+    }
+
+    @Override
+    public String toString() {
+        return format(minor);
+    }
+
+    public static String format(long minor) {
+        // Math.abs cannot represent Long.MIN_VALUE
+        if (minor == Long.MIN_VALUE) return BigDecimal.valueOf(minor, SCALE).toPlainString();
+        long abs = Math.abs(minor);
+        long cents = abs % 100;
+        return (minor < 0 ? "-" : "") + abs / 100 + (cents < 10 ? ".0" : ".") + cents;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.transactional.reconciliation;
+
+import jakarta.persistence.*;
+
+/**
+ * An account whose balance moved by a different amount than its ledger entries since the previous
+ * snapshot, e.g. a debit without its credit. Rows are written with JDBC; the entity only defines the
+ * table.
+ */
+@Entity
+@Table(name = "account_drifts", indexes = @Index(name = "ix_account_drifts_run", columnList = "run_id"))
+public class AccountDrift {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "run_id", nullable = false)
+    private Long runId;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    // All BIGINT minor units; drift = balanceDelta - ledgerDelta
+    @Column(name = "balance_delta", nullable = false)
+    private long balanceDelta;
+
+    @Column(name = "ledger_delta", nullable = false)
+    private long ledgerDelta;
+
+    @Column(nullable = false)
+    private long drift;
+
+    public AccountDrift() {}
+
+    public Long getId() { return id; }
+
+    public Long getRunId() { return runId; }
+
+    public Long getAccountId() { return accountId; }
+
+    public long getBalanceDelta() { return balanceDelta; }
+
+    public long getLedgerDelta() { return ledgerDelta; }
+
+    public long getDrift() { return drift; }
+}
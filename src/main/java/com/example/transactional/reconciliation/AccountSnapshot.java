@@ -0,0 +1,36 @@
+package com.example.transactional.reconciliation;
+
+import jakarta.persistence.*;
+
+/**
+ * Last reconciled state of one account: its total balance (account row plus buckets), the sum of its
+ * ledger entries and its version, all read by one statement. Rows are written with JDBC by
+ * {@link ReconciliationService}; the entity only defines the table.
+ */
+@Entity
+@Table(name = "account_snapshots")
+public class AccountSnapshot {
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    // BIGINT minor units, like accounts.balance
+    @Column(nullable = false)
+    private long balance;
+
+    @Column(name = "ledger_sum", nullable = false)
+    private long ledgerSum;
+
+    @Column(nullable = false)
+    private long version;
+
+    public AccountSnapshot() {}
+
+    public Long getAccountId() { return accountId; }
+
+    public long getBalance() { return balance; }
+
+    public long getLedgerSum() { return ledgerSum; }
+
+    public long getVersion() { return version; }
+}
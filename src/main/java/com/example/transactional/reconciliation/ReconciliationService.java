@@ -0,0 +1,469 @@
+package com.example.transactional.reconciliation;
+
+import com.example.transactional.metrics.InstrumentedTransactionManager;
+import com.example.transactional.metrics.LatencyHistogram;
+import com.example.transactional.metrics.StatsSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import jakarta.annotation.PreDestroy;
+import java.io.Serial;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Periodic check that every balance change is explained by the ledger. For each account the
+ * snapshot keeps its total balance (row plus buckets) and the sum of its {@code transfers} entries;
+ * since both move together in every transactional transfer, {@code balance delta - ledger delta} must be
+ * zero. A non-zero difference is drift, e.g. the debit that {@code transferWithoutTransaction} leaves
+ * behind when it fails before the credit.
+ *
+ * <p>The first run takes a baseline snapshot of every account. {@code accounts} is cut into keyset
+ * ranges of {@code chunk-size} rows, which are processed in parallel on a fork-join pool. Later runs only
+ * re-read and re-snapshot the accounts that changed, though finding them still scans every range:
+ * <ul>
+ *   <li>per range, one aggregate ({@code COUNT(*)}, {@code SUM(version)}) is compared with the snapshot's;
+ *   every writer bumps {@code version}, so a matching range has no changes and is skipped;</li>
+ *   <li>ledger entries since the previous run's watermark add the accounts they touched, which covers
+ *   bucket-only writes on sharded accounts.</li>
+ * </ul>
+ * A run therefore costs one index scan of {@code accounts} plus work proportional to the changes.
+ * Each account's current state is read with a single statement, so balance and ledger sum are
+ * consistent with each other. Drift is reported once: the snapshot then moves to the current state.
+ */
+@Service
+public class ReconciliationService implements StatsSource {
+
+    private static final String STATE_SQL =
+            "SELECT a.id, a.version, a.balance + COALESCE((SELECT SUM(b.balance) FROM account_buckets b WHERE b.account_id = a.id), 0), "
+            + "COALESCE((SELECT SUM(t.amount) FROM transfers t WHERE t.account_id = a.id), 0) FROM accounts a ";
+    private static final String INSERT_SNAPSHOT_SQL =
+            "INSERT INTO account_snapshots(account_id, balance, ledger_sum, version) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_SNAPSHOT_SQL =
+            "UPDATE account_snapshots SET balance = ?, ledger_sum = ?, version = ? WHERE account_id = ?";
+    private static final String NEXT_CHUNK_SQL = "SELECT id FROM accounts WHERE id >= ? AND id < ? ORDER BY id LIMIT 1 OFFSET ?";
+    private static final int IN_BATCH = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager txManager;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+    private final ReentrantLock running = new ReentrantLock();
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder baselines = new LongAdder();
+    private final LongAdder skippedBusy = new LongAdder();
+    private final LongAdder chunksScanned = new LongAdder();
+    private final LongAdder chunksChanged = new LongAdder();
+    private final LongAdder accountsChecked = new LongAdder();
+    private final LongAdder driftedAccounts = new LongAdder();
+    private final LatencyHistogram runDuration = new LatencyHistogram();
+
+    public ReconciliationService(JdbcTemplate jdbcTemplate,
+                                 @Qualifier("jdbcTxManager") PlatformTransactionManager txManager,
+                                 @Value("${reconciliation.enabled:true}") boolean enabled,
+                                 @Value("${reconciliation.chunk-size:1000}") int chunkSize,
+                                 @Value("${reconciliation.parallelism:4}") int parallelism) {
+        if (chunkSize < 1) throw new IllegalArgumentException("reconciliation.chunk-size must be at least 1");
+        this.jdbcTemplate = jdbcTemplate;
+        this.txManager = txManager;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public static class Drift {
+        public final long accountId;
+        public final long balanceDelta;
+        public final long ledgerDelta;
+        public final long drift;
+
+        Drift(long accountId, long balanceDelta, long ledgerDelta) {
+            this.accountId = accountId;
+            this.balanceDelta = balanceDelta;
+            this.ledgerDelta = ledgerDelta;
+            this.drift = balanceDelta - ledgerDelta;
+        }
+    }
+
+    public static class Report {
+        public long runId;
+        public boolean baseline;
+        public long ledgerWatermark;
+        public int chunksScanned;
+        public int chunksChanged;
+        public long accountsChecked;
+        public long durationMillis;
+        public List<Drift> drifts = new ArrayList<>();
+    }
+
+    private record Chunk(long lowId, long highId, long rowCount, long versionSum) {}
+
+    private record Snap(long balance, long ledgerSum, long version) {}
+
+    private record State(long id, long version, long balance, long ledgerSum) {}
+
+    // Per-chunk outcome, merged up the fork-join tree
+    private static final class Totals {
+        int chunks;
+        int changed;
+        long checked;
+        final List<Drift> drifts = new ArrayList<>();
+
+        Totals add(Totals other) {
+            chunks += other.chunks;
+            changed += other.changed;
+            checked += other.checked;
+            drifts.addAll(other.drifts);
+            return this;
+        }
+    }
+
+    /** Runs one pass now; fails if a pass is already running. */
+    public Report reconcile() {
+        if (!running.tryLock()) {
+            skippedBusy.increment();
+            throw new IllegalStateException("Reconciliation already running");
+        }
+        try {
+            return runOnce();
+        } finally {
+            running.unlock();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${reconciliation.interval-ms:60000}",
+               fixedDelayString = "${reconciliation.interval-ms:60000}")
+    public void scheduledReconcile() {
+        if (!enabled) return;
+        if (!running.tryLock()) {
+            skippedBusy.increment();
+            return;
+        }
+        try {
+            runOnce();
+        } finally {
+            running.unlock();
+        }
+    }
+
+    private Report runOnce() {
+        long start = System.nanoTime();
+        Instant startedAt = Instant.now();
+        List<Long> lastWatermark = jdbcTemplate.queryForList(
+                "SELECT ledger_watermark FROM reconciliation_runs ORDER BY id DESC LIMIT 1", Long.class);
+        // Read before any account: entries up to here are either visible to the state reads or not yet touched
+        long watermark = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM transfers", Long.class);
+        List<Chunk> chunks = jdbcTemplate.query("SELECT low_id, high_id, row_count, version_sum FROM snapshot_chunks ORDER BY low_id",
+                (rs, n) -> new Chunk(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)));
+
+        Report report = new Report();
+        report.baseline = lastWatermark.isEmpty() || chunks.isEmpty();
+        Totals totals;
+        if (report.baseline) {
+            jdbcTemplate.update("DELETE FROM snapshot_chunks");
+            jdbcTemplate.update("DELETE FROM account_snapshots");
+            List<Chunk> ranges = split(Long.MIN_VALUE, Long.MAX_VALUE);
+            totals = pool.invoke(new ChunkTask(ranges, 0, ranges.size(), this::baseline));
+            baselines.increment();
+        } else {
+            NavigableSet<Long> touched = new TreeSet<>(jdbcTemplate.queryForList(
+                    "SELECT DISTINCT account_id FROM transfers WHERE id > ? AND id <= ?", Long.class, lastWatermark.get(0), watermark));
+            totals = pool.invoke(new ChunkTask(chunks, 0, chunks.size(), chunk -> incremental(chunk, touched)));
+        }
+
+        report.ledgerWatermark = watermark;
+        report.chunksScanned = totals.chunks;
+        report.chunksChanged = totals.changed;
+        report.accountsChecked = totals.checked;
+        report.drifts = totals.drifts;
+        report.durationMillis = (System.nanoTime() - start) / 1_000_000;
+        report.runId = record(report, startedAt);
+
+        runs.increment();
+        chunksScanned.add(totals.chunks);
+        chunksChanged.add(totals.changed);
+        accountsChecked.add(totals.checked);
+        driftedAccounts.add(totals.drifts.size());
+        runDuration.record(System.nanoTime() - start);
+        return report;
+    }
+
+    /** Splits chunk ranges in halves until one chunk is left, then runs the work for it. */
+    private static final class ChunkTask extends RecursiveTask<Totals> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        // Never serialized: the task only lives inside one reconciliation run
+        private final transient List<Chunk> chunks;
+        private final int from;
+        private final int to;
+        private final transient Function<Chunk, Totals> work;
+
+        ChunkTask(List<Chunk> chunks, int from, int to, Function<Chunk, Totals> work) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.work = work;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from == 0) return new Totals();
+            if (to - from == 1) return work.apply(chunks.get(from));
+            int mid = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(chunks, from, mid, work);
+            left.fork();
+            Totals right = new ChunkTask(chunks, mid, to, work).compute();
+            return left.join().add(right);
+        }
+    }
+
+    /** Cuts [lowId, highId) into ranges of chunk-size accounts, skipping inside the database. */
+    private List<Chunk> split(long lowId, long highId) {
+        List<Chunk> ranges = new ArrayList<>();
+        long low = lowId;
+        while (true) {
+            List<Long> next = jdbcTemplate.queryForList(NEXT_CHUNK_SQL, Long.class, low, highId, chunkSize);
+            if (next.isEmpty()) break;
+            ranges.add(new Chunk(low, next.get(0), 0, 0));
+            low = next.get(0);
+        }
+        ranges.add(new Chunk(low, highId, 0, 0));
+        return ranges;
+    }
+
+    private Totals baseline(Chunk chunk) {
+        Totals totals = new Totals();
+        totals.chunks = 1;
+        inTransaction("reconciliationBaseline", () -> {
+            List<State> states = jdbcTemplate.query(STATE_SQL + "WHERE a.id >= ? AND a.id < ?", this::state, chunk.lowId(), chunk.highId());
+            jdbcTemplate.batchUpdate(INSERT_SNAPSHOT_SQL, states, chunkSize, (ps, s) -> {
+                ps.setLong(1, s.id());
+                ps.setLong(2, s.balance());
+                ps.setLong(3, s.ledgerSum());
+                ps.setLong(4, s.version());
+            });
+            saveChunk(chunk.lowId(), chunk.highId(), true);
+            totals.checked = states.size();
+        });
+        return totals;
+    }
+
+    private Totals incremental(Chunk chunk, NavigableSet<Long> touched) {
+        Totals totals = new Totals();
+        totals.chunks = 1;
+        long[] live = jdbcTemplate.queryForObject("SELECT COUNT(*), COALESCE(SUM(version), 0) FROM accounts WHERE id >= ? AND id < ?",
+                (rs, n) -> new long[]{rs.getLong(1), rs.getLong(2)}, chunk.lowId(), chunk.highId());
+        boolean changed = live[0] != chunk.rowCount() || live[1] != chunk.versionSum();
+        NavigableSet<Long> candidates = new TreeSet<>(touched.subSet(chunk.lowId(), true, chunk.highId(), false));
+        if (!changed && candidates.isEmpty()) return totals;
+
+        totals.changed = 1;
+        inTransaction("reconciliationChunk", () -> {
+            Map<Long, Snap> snaps = new HashMap<>();
+            if (changed) {
+                // Only here are the whole range's versions read: new, deleted and rewritten rows
+                jdbcTemplate.query("SELECT account_id, balance, ledger_sum, version FROM account_snapshots WHERE account_id >= ? AND account_id < ?",
+                        rs -> { snaps.put(rs.getLong(1), new Snap(rs.getLong(2), rs.getLong(3), rs.getLong(4))); },
+                        chunk.lowId(), chunk.highId());
+                Map<Long, Long> versions = new HashMap<>();
+                jdbcTemplate.query("SELECT id, version FROM accounts WHERE id >= ? AND id < ?",
+                        rs -> { versions.put(rs.getLong(1), rs.getLong(2)); }, chunk.lowId(), chunk.highId());
+                versions.forEach((id, version) -> {
+                    Snap snap = snaps.get(id);
+                    if (snap == null || snap.version() != version) candidates.add(id);
+                });
+                for (Long id : snaps.keySet()) {
+                    if (!versions.containsKey(id)) candidates.add(id);
+                }
+            } else {
+                inBatches(candidates, ids -> jdbcTemplate.query(
+                        "SELECT account_id, balance, ledger_sum, version FROM account_snapshots WHERE account_id IN (" + placeholders(ids) + ")",
+                        rs -> { snaps.put(rs.getLong(1), new Snap(rs.getLong(2), rs.getLong(3), rs.getLong(4))); }, ids.toArray()));
+            }
+
+            List<State> states = new ArrayList<>();
+            inBatches(candidates, ids -> states.addAll(jdbcTemplate.query(
+                    STATE_SQL + "WHERE a.id IN (" + placeholders(ids) + ")", this::state, ids.toArray())));
+            List<State> inserts = new ArrayList<>();
+            List<State> updates = new ArrayList<>();
+            for (State s : states) {
+                Snap snap = snaps.remove(s.id());
+                if (snap == null) {
+                    // New account: its opening balance is not in the ledger, so it only gets a baseline
+                    inserts.add(s);
+                    continue;
+                }
+                long balanceDelta = s.balance() - snap.balance();
+                long ledgerDelta = s.ledgerSum() - snap.ledgerSum();
+                if (balanceDelta != ledgerDelta) totals.drifts.add(new Drift(s.id(), balanceDelta, ledgerDelta));
+                updates.add(s);
+            }
+            jdbcTemplate.batchUpdate(INSERT_SNAPSHOT_SQL, inserts, IN_BATCH, (ps, s) -> {
+                ps.setLong(1, s.id());
+                ps.setLong(2, s.balance());
+                ps.setLong(3, s.ledgerSum());
+                ps.setLong(4, s.version());
+            });
+            jdbcTemplate.batchUpdate(UPDATE_SNAPSHOT_SQL, updates, IN_BATCH, (ps, s) -> {
+                ps.setLong(1, s.balance());
+                ps.setLong(2, s.ledgerSum());
+                ps.setLong(3, s.version());
+                ps.setLong(4, s.id());
+            });
+            // Candidates left in snaps were deleted from accounts
+            List<Long> deleted = new ArrayList<>();
+            for (Long id : candidates) {
+                if (snaps.containsKey(id)) deleted.add(id);
+            }
+            inBatches(deleted, ids -> jdbcTemplate.update(
+                    "DELETE FROM account_snapshots WHERE account_id IN (" + placeholders(ids) + ")", ids.toArray()));
+
+            if (live[0] > 2L * chunkSize) {
+                // Mostly the open-ended last range as accounts are added: re-cut it so ranges stay small
+                jdbcTemplate.update("DELETE FROM snapshot_chunks WHERE low_id = ?", chunk.lowId());
+                for (Chunk part : split(chunk.lowId(), chunk.highId())) saveChunk(part.lowId(), part.highId(), true);
+            } else {
+                saveChunk(chunk.lowId(), chunk.highId(), false);
+            }
+            totals.checked = states.size();
+        });
+        return totals;
+    }
+
+    // A range's aggregate is taken from its snapshots, so the next run compares against what was recorded
+    private void saveChunk(long lowId, long highId, boolean insert) {
+        long[] agg = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*), COALESCE(SUM(version), 0) FROM account_snapshots WHERE account_id >= ? AND account_id < ?",
+                (rs, n) -> new long[]{rs.getLong(1), rs.getLong(2)}, lowId, highId);
+        if (insert) {
+            jdbcTemplate.update("INSERT INTO snapshot_chunks(low_id, high_id, row_count, version_sum) VALUES (?, ?, ?, ?)",
+                    lowId, highId, agg[0], agg[1]);
+        } else {
+            jdbcTemplate.update("UPDATE snapshot_chunks SET row_count = ?, version_sum = ? WHERE low_id = ?", agg[0], agg[1], lowId);
+        }
+    }
+
+    private long record(Report report, Instant startedAt) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        inTransaction("reconciliationRecord", () -> {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(
+                        "INSERT INTO reconciliation_runs(started_at, finished_at, ledger_watermark, baseline, chunks_scanned, "
+                                + "chunks_changed, accounts_checked, drifted_accounts) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                        new String[]{"id"});
+                ps.setTimestamp(1, Timestamp.from(startedAt));
+                ps.setTimestamp(2, Timestamp.from(Instant.now()));
+                ps.setLong(3, report.ledgerWatermark);
+                ps.setBoolean(4, report.baseline);
+                ps.setInt(5, report.chunksScanned);
+                ps.setInt(6, report.chunksChanged);
+                ps.setLong(7, report.accountsChecked);
+                ps.setLong(8, report.drifts.size());
+                return ps;
+            }, keys);
+            long runId = keys.getKey().longValue();
+            jdbcTemplate.batchUpdate("INSERT INTO account_drifts(run_id, account_id, balance_delta, ledger_delta, drift) VALUES (?, ?, ?, ?, ?)",
+                    report.drifts, IN_BATCH, (ps, d) -> {
+                        ps.setLong(1, runId);
+                        ps.setLong(2, d.accountId);
+                        ps.setLong(3, d.balanceDelta);
+                        ps.setLong(4, d.ledgerDelta);
+                        ps.setLong(5, d.drift);
+                    });
+        });
+        return keys.getKey().longValue();
+    }
+
+    /** The most recent drift records, newest first, with the account owner where it still exists. */
+    public List<Map<String, Object>> recentDrifts(int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT d.run_id, d.account_id, a.owner, d.balance_delta, d.ledger_delta, d.drift FROM account_drifts d "
+                        + "LEFT JOIN accounts a ON a.id = d.account_id ORDER BY d.id DESC LIMIT ?", limit);
+    }
+
+    private State state(ResultSet rs, int n) throws SQLException {
+        return new State(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4));
+    }
+
+    private static void inBatches(Collection<Long> ids, Consumer<List<Long>> batch) {
+        List<Long> all = new ArrayList<>(ids);
+        for (int i = 0; i < all.size(); i += IN_BATCH) {
+            batch.accept(all.subList(i, Math.min(all.size(), i + IN_BATCH)));
+        }
+    }
+
+    private static String placeholders(List<Long> ids) {
+        return String.join(",", Collections.nCopies(ids.size(), "?"));
+    }
+
+    private void inTransaction(String name, Runnable body) {
+        DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+        def.setName(name);
+        def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        TransactionStatus status = txManager.getTransaction(def);
+        try {
+            body.run();
+            txManager.commit(status);
+        } catch (RuntimeException ex) {
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
+            throw ex;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Override
+    public String statsName() {
+        return "reconciliation";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("chunkSize", chunkSize);
+        stats.put("parallelism", pool.getParallelism());
+        stats.put("runs", runs.sum());
+        stats.put("baselines", baselines.sum());
+        stats.put("skippedBusy", skippedBusy.sum());
+        stats.put("chunksScanned", chunksScanned.sum());
+        stats.put("chunksChanged", chunksChanged.sum());
+        stats.put("accountsChecked", accountsChecked.sum());
+        stats.put("driftedAccounts", driftedAccounts.sum());
+        stats.put("runDuration", runDuration.snapshot());
+        return stats;
+    }
+}
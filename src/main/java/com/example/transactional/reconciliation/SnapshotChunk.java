@@ -0,0 +1,36 @@
+package com.example.transactional.reconciliation;
+
+import jakarta.persistence.*;
+
+/**
+ * A keyset range [lowId, highId) of {@code accounts} with the row count and version sum of its
+ * snapshots. Every writer bumps {@code accounts.version}, so a range whose live count and version sum
+ * still match has no changed rows and is skipped. Rows are written with JDBC; the entity only defines
+ * the table.
+ */
+@Entity
+@Table(name = "snapshot_chunks")
+public class SnapshotChunk {
+    @Id
+    @Column(name = "low_id")
+    private Long lowId;
+
+    @Column(name = "high_id", nullable = false)
+    private long highId;
+
+    @Column(name = "row_count", nullable = false)
+    private long rowCount;
+
+    @Column(name = "version_sum", nullable = false)
+    private long versionSum;
+
+    public SnapshotChunk() {}
+
+    public Long getLowId() { return lowId; }
+
+    public long getHighId() { return highId; }
+
+    public long getRowCount() { return rowCount; }
+
+    public long getVersionSum() { return versionSum; }
+}
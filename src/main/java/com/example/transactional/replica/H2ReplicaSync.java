@@ -0,0 +1,80 @@
+package com.example.transactional.replica;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Stand-in replication for local runs and tests, where the "replicas" are separate in-memory H2
+ * databases. On the first pass each replica gets the primary's schema ({@code SCRIPT NODATA}); every
+ * pass then copies {@link #TABLES} over with {@code MERGE}, in batches. The heartbeat is read before the
+ * data and written after it, so a replica never claims a heartbeat newer than the data it holds, which
+ * is the property real replication gives the router. Rows deleted on the primary are not removed, and
+ * every pass copies the tables whole: this is for small demo databases only.
+ */
+public class H2ReplicaSync {
+
+    private static final List<String> TABLES = List.of("accounts", "account_buckets");
+    private static final int BATCH = 1000;
+
+    private final JdbcTemplate primary;
+    private final List<JdbcTemplate> replicas = new ArrayList<>();
+    private final boolean[] schemaReady;
+
+    public H2ReplicaSync(DataSource primary, List<? extends DataSource> replicas) {
+        this.primary = new JdbcTemplate(primary);
+        for (DataSource replica : replicas) this.replicas.add(new JdbcTemplate(replica));
+        this.schemaReady = new boolean[replicas.size()];
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replicas.h2-sync.interval-ms:100}")
+    public synchronized void sync() {
+        List<Long> beat = primary.queryForList("SELECT beat_at FROM replica_heartbeat WHERE id = 1", Long.class);
+        for (int i = 0; i < replicas.size(); i++) {
+            JdbcTemplate replica = replicas.get(i);
+            if (!schemaReady[i]) {
+                createSchema(replica);
+                schemaReady[i] = true;
+            }
+            for (String table : TABLES) copy(table, replica);
+            if (!beat.isEmpty()) replica.update("MERGE INTO replica_heartbeat KEY(id) VALUES (1, ?)", beat.get(0));
+        }
+    }
+
+    private void createSchema(JdbcTemplate replica) {
+        Integer existing = replica.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE UPPER(TABLE_NAME) = 'ACCOUNTS'", Integer.class);
+        if (existing != null && existing > 0) return;
+        for (String ddl : primary.queryForList("SCRIPT NODATA", String.class)) {
+            String upper = ddl.trim().toUpperCase(Locale.ROOT);
+            if (upper.startsWith("--") || upper.startsWith("CREATE USER")) continue;
+            replica.execute(ddl);
+        }
+    }
+
+    private void copy(String table, JdbcTemplate replica) {
+        List<Object[]> rows = new ArrayList<>(BATCH);
+        String[] merge = new String[1];
+        primary.query("SELECT * FROM " + table, rs -> {
+            ResultSetMetaData meta = rs.getMetaData();
+            int columns = meta.getColumnCount();
+            if (merge[0] == null) {
+                merge[0] = "MERGE INTO " + table + " KEY(id) VALUES (" + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+            }
+            Object[] row = new Object[columns];
+            for (int c = 0; c < columns; c++) row[c] = rs.getObject(c + 1);
+            rows.add(row);
+            if (rows.size() == BATCH) {
+                replica.batchUpdate(merge[0], rows);
+                rows.clear();
+            }
+        });
+        if (!rows.isEmpty()) replica.batchUpdate(merge[0], rows);
+    }
+}
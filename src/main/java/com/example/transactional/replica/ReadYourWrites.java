@@ -0,0 +1,64 @@
+package com.example.transactional.replica;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Read-your-writes for replica reads. Writers report the owners they changed once their transaction
+ * has committed ({@link #written}); a read for an owner ({@link #readFor}) may then only be served by a
+ * replica whose heartbeat is newer than that owner's last write, otherwise {@link ReplicaRouter} sends
+ * it to the primary. Owners without a recent write are readable from any replica within the lag
+ * tolerance. Does nothing unless replica routing is enabled.
+ */
+@Component
+public class ReadYourWrites {
+
+    private static final ThreadLocal<Long> REQUIRED_POSITION = new ThreadLocal<>();
+
+    private final boolean enabled;
+    // owner -> epoch millis just after the commit of its last write
+    private final ConcurrentHashMap<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    public ReadYourWrites(@Value("${datasource.replicas.enabled:false}") boolean replicasEnabled,
+                          @Value("${datasource.replicas.read-your-writes:true}") boolean readYourWrites) {
+        this.enabled = replicasEnabled && readYourWrites;
+    }
+
+    /** Called after the commit that changed {@code owners}. */
+    public void written(String... owners) {
+        if (!enabled) return;
+        long now = System.currentTimeMillis();
+        for (String owner : owners) lastWrites.put(owner, now);
+    }
+
+    /** Runs {@code read} with replicas restricted to those that have seen the last write to {@code owner}. */
+    public <T> T readFor(String owner, Supplier<T> read) {
+        Long lastWrite = enabled ? lastWrites.get(owner) : null;
+        if (lastWrite == null) return read.get();
+        Long outer = REQUIRED_POSITION.get();
+        REQUIRED_POSITION.set(outer == null ? lastWrite : Math.max(outer, lastWrite));
+        try {
+            return read.get();
+        } finally {
+            if (outer == null) REQUIRED_POSITION.remove(); else REQUIRED_POSITION.set(outer);
+        }
+    }
+
+    /** Heartbeat a replica must be past to serve the current thread's read; 0 if any replica will do. */
+    static long requiredPosition() {
+        Long position = REQUIRED_POSITION.get();
+        return position == null ? 0 : position;
+    }
+
+    /** Drops writes that every replica within the lag tolerance has already applied. */
+    void forgetBefore(long epochMillis) {
+        lastWrites.values().removeIf(writtenAt -> writtenAt < epochMillis);
+    }
+
+    int tracked() {
+        return lastWrites.size();
+    }
+}
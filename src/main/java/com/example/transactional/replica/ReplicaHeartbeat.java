@@ -0,0 +1,25 @@
+package com.example.transactional.replica;
+
+import jakarta.persistence.*;
+
+/**
+ * Replication heartbeat: {@link ReplicaRouter} writes the current time into the single row on the
+ * primary, and the value a replica has applied tells how far behind it is. Rows are written with JDBC;
+ * the entity only defines the table.
+ */
+@Entity
+@Table(name = "replica_heartbeat")
+public class ReplicaHeartbeat {
+    @Id
+    private int id;
+
+    // Epoch millis on the primary's writer clock
+    @Column(name = "beat_at", nullable = false)
+    private long beatAt;
+
+    public ReplicaHeartbeat() {}
+
+    public int getId() { return id; }
+
+    public long getBeatAt() { return beatAt; }
+}
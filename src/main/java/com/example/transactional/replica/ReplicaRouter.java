@@ -0,0 +1,198 @@
+package com.example.transactional.replica;
+
+import com.example.transactional.metrics.StatsSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Picks the database for read-only transactions. {@link #readOnlyDataSource()} is installed as the
+ * read-only target of a {@code LazyConnectionDataSourceProxy} (see ReplicaRoutingConfig), so it is only
+ * asked for a connection once a transaction has marked its connection read-only and runs its first
+ * statement; everything else goes to the primary.
+ *
+ * <p>Replicas are tried round-robin. One is skipped when it is down, when its replication lag is over
+ * {@code max-lag-ms}, or, for a {@link ReadYourWrites} read, when it has not yet applied that owner's
+ * last write; if none is left the read goes to the primary. Lag is measured with a heartbeat: every
+ * {@code heartbeat-interval-ms} the current time is written to {@code replica_heartbeat} on the primary
+ * and read back from each replica. A replica that returns heartbeat {@code h} has applied every commit
+ * before {@code h}, and its lag is now minus {@code h}, so an idle, fully caught-up replica still shows
+ * up to one interval of lag. Counters are under {@code /api/stats/replicas}.
+ */
+public class ReplicaRouter implements StatsSource, AutoCloseable {
+
+    static final class Replica {
+        final String name;
+        final HikariDataSource pool;
+        final JdbcTemplate jdbc;
+        // Last heartbeat read back from the replica; 0 until the first successful probe
+        volatile long position;
+        volatile boolean up;
+        final LongAdder reads = new LongAdder();
+        final LongAdder probeFailures = new LongAdder();
+
+        Replica(String name, HikariDataSource pool) {
+            this.name = name;
+            this.pool = pool;
+            this.jdbc = new JdbcTemplate(pool);
+        }
+    }
+
+    private final HikariDataSource primary;
+    private final JdbcTemplate primaryJdbc;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final ReadYourWrites readYourWrites;
+    private final long maxLagMillis;
+    private final long heartbeatIntervalMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final DataSource readOnlyDataSource = new AbstractDataSource() {
+        @Override
+        public Connection getConnection() throws SQLException {
+            return route();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return route();
+        }
+    };
+
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder lagging = new LongAdder();
+    private final LongAdder behindWrite = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+
+    public ReplicaRouter(HikariDataSource primary, List<HikariDataSource> replicaPools, ReadYourWrites readYourWrites,
+                         long maxLagMillis, long heartbeatIntervalMillis) {
+        if (replicaPools.isEmpty()) throw new IllegalArgumentException("datasource.replicas.urls must list at least one replica");
+        if (maxLagMillis <= heartbeatIntervalMillis) {
+            throw new IllegalArgumentException("datasource.replicas.max-lag-ms must be greater than heartbeat-interval-ms");
+        }
+        this.primary = primary;
+        this.primaryJdbc = new JdbcTemplate(primary);
+        for (HikariDataSource pool : replicaPools) replicas.add(new Replica(pool.getPoolName(), pool));
+        this.readYourWrites = readYourWrites;
+        this.maxLagMillis = maxLagMillis;
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+    }
+
+    public DataSource primary() {
+        return primary;
+    }
+
+    public DataSource readOnlyDataSource() {
+        return readOnlyDataSource;
+    }
+
+    public List<HikariDataSource> replicaPools() {
+        return replicas.stream().map(r -> r.pool).toList();
+    }
+
+    private Connection route() throws SQLException {
+        long required = ReadYourWrites.requiredPosition();
+        long now = System.currentTimeMillis();
+        int n = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), n);
+        boolean sawLagging = false;
+        boolean sawBehindWrite = false;
+        for (int i = 0; i < n; i++) {
+            Replica replica = replicas.get((start + i) % n);
+            if (!replica.up) continue;
+            if (now - replica.position > maxLagMillis) {
+                sawLagging = true;
+                continue;
+            }
+            if (replica.position <= required) {
+                sawBehindWrite = true;
+                continue;
+            }
+            try {
+                Connection con = replica.pool.getConnection();
+                replica.reads.increment();
+                return con;
+            } catch (SQLException ex) {
+                // Out of rotation until the next heartbeat probe succeeds
+                replica.up = false;
+                replica.probeFailures.increment();
+            }
+        }
+        (sawBehindWrite ? behindWrite : sawLagging ? lagging : unavailable).increment();
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    /** Writes a heartbeat on the primary and reads back what each replica has applied. */
+    @Scheduled(fixedDelayString = "${datasource.replicas.heartbeat-interval-ms:200}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        if (primaryJdbc.update("UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1", now) == 0) {
+            primaryJdbc.update("INSERT INTO replica_heartbeat(id, beat_at) VALUES (1, ?)", now);
+        }
+        for (Replica replica : replicas) {
+            try {
+                List<Long> beat = replica.jdbc.queryForList("SELECT beat_at FROM replica_heartbeat WHERE id = 1", Long.class);
+                if (beat.isEmpty()) {
+                    replica.up = false;
+                } else {
+                    replica.position = beat.get(0);
+                    replica.up = true;
+                }
+            } catch (DataAccessException ex) {
+                replica.up = false;
+                replica.probeFailures.increment();
+            }
+        }
+        // A replica is only used while its heartbeat is within max-lag of now, so it has applied every
+        // write older than that; the margin covers probes that run late
+        readYourWrites.forgetBefore(now - maxLagMillis - 2 * heartbeatIntervalMillis);
+    }
+
+    @Override
+    public void close() {
+        for (Replica replica : replicas) replica.pool.close();
+        primary.close();
+    }
+
+    @Override
+    public String statsName() {
+        return "replicas";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxLagMs", maxLagMillis);
+        stats.put("heartbeatIntervalMs", heartbeatIntervalMillis);
+        stats.put("primaryReads", primaryReads.sum());
+        Map<String, Object> fallbacks = new LinkedHashMap<>();
+        fallbacks.put("lagging", lagging.sum());
+        fallbacks.put("readYourWrites", behindWrite.sum());
+        fallbacks.put("unavailable", unavailable.sum());
+        stats.put("primaryFallbacks", fallbacks);
+        stats.put("readYourWritesTracked", readYourWrites.tracked());
+        Map<String, Object> byReplica = new LinkedHashMap<>();
+        for (Replica replica : replicas) {
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("up", replica.up);
+            r.put("lagMs", replica.position == 0 ? null : now - replica.position);
+            r.put("reads", replica.reads.sum());
+            r.put("probeFailures", replica.probeFailures.sum());
+            byReplica.put(replica.name, r);
+        }
+        stats.put("replicas", byReplica);
+        return stats;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.transactional.retry;
+
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import java.sql.SQLException;
+
+/**
+ * Decides whether a failed transaction is worth running again. Only transient conflicts with other
+ * transactions qualify; the classification goes by SQLState and vendor code of the first
+ * {@link SQLException} in the cause chain, because Spring does not translate all of them (H2's
+ * concurrent-update error arrives uncategorized).
+ */
+public final class RetryableSqlFailures {
+
+    public enum Reason { DEADLOCK, SERIALIZATION_FAILURE, LOCK_TIMEOUT }
+
+    private RetryableSqlFailures() {}
+
+    /** The retryable reason for {@code ex}, or {@code null} if re-running the transaction would not help. */
+    public static Reason classify(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) return classify(sql);
+        }
+        // Translated without an SQLException underneath
+        if (ex instanceof CannotAcquireLockException) return Reason.LOCK_TIMEOUT;
+        if (ex instanceof PessimisticLockingFailureException) return Reason.SERIALIZATION_FAILURE;
+        return null;
+    }
+
+    private static Reason classify(SQLException sql) {
+        String state = sql.getSQLState() == null ? "" : sql.getSQLState();
+        int code = sql.getErrorCode();
+        // H2 reports deadlocks as 40001 with error code 40001, MySQL with error code 1213
+        if ("40P01".equals(state) || code == 40001 || code == 1213) return Reason.DEADLOCK;
+        // 90131: H2 concurrent update of the same row under MVCC
+        if ("40001".equals(state) || code == 90131) return Reason.SERIALIZATION_FAILURE;
+        // 55P03: PostgreSQL lock_not_available; 50200: H2 lock timeout; 1205: MySQL lock wait timeout
+        if ("55P03".equals(state) || code == 50200 || code == 1205) return Reason.LOCK_TIMEOUT;
+        return null;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.transactional.retry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method that owns a whole transaction, {@code @Transactional} or programmatic: when it fails
+ * with a deadlock, serialization failure or lock timeout (see {@link RetryableSqlFailures}), the
+ * {@link TransactionRetryInterceptor} runs it again with jittered exponential backoff. The method must
+ * be safe to re-run after a rollback, and only retries when it is not joining a caller's transaction.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RetryableTransaction {
+
+    /** Attempts including the first; 0 uses {@code transfer.retry.max-attempts}. */
+    int maxAttempts() default 0;
+
+    /** Total time for all attempts and backoff; 0 uses {@code transfer.retry.budget-ms}. */
+    long budgetMs() default 0;
+}
@@ -0,0 +1,142 @@
+package com.example.transactional.retry;
+
+import com.example.transactional.metrics.LatencyHistogram;
+import com.example.transactional.metrics.StatsSource;
+import com.example.transactional.retry.RetryableSqlFailures.Reason;
+import com.example.transactional.service.Backoff;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Re-runs {@link RetryableTransaction} methods that failed with a retryable conflict. Ordered ahead of
+ * the transaction advisor, so every attempt gets a fresh {@code @Transactional} transaction; methods
+ * that open a programmatic transaction on {@code jdbcTxManager} are re-run the same way. A call that
+ * arrives inside an active transaction (or inside another retrying call) is passed through untouched:
+ * only the owner of the outermost transaction can restart it.
+ *
+ * <p>Retries stop at the attempt limit or when the next backoff would overrun the time budget; the
+ * last failure is then rethrown. Counters are under {@code /api/stats/retry}, including the time spent
+ * in failed attempts and in backoff, i.e. what retrying costs.
+ */
+@Aspect
+@Component
+@Order(0)
+public class TransactionRetryInterceptor implements StatsSource {
+
+    private static final ThreadLocal<Boolean> RETRYING = new ThreadLocal<>();
+
+    private final Backoff backoff;
+    private final long budgetMillis;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+    private final LongAdder failedAttemptNanos = new LongAdder();
+    private final LongAdder backoffMillis = new LongAdder();
+    private final Map<Reason, LongAdder> failures = new EnumMap<>(Reason.class);
+    private final Map<String, LongAdder> retriesByMethod = new ConcurrentHashMap<>();
+    private final LatencyHistogram retriedCallLatency = new LatencyHistogram();
+
+    public TransactionRetryInterceptor(@Value("${transfer.retry.max-attempts:5}") int maxAttempts,
+                                       @Value("${transfer.retry.initial-backoff-ms:5}") long initialBackoffMillis,
+                                       @Value("${transfer.retry.max-backoff-ms:200}") long maxBackoffMillis,
+                                       @Value("${transfer.retry.budget-ms:2000}") long budgetMillis) {
+        this.backoff = new Backoff(maxAttempts, initialBackoffMillis, maxBackoffMillis);
+        this.budgetMillis = budgetMillis;
+        for (Reason reason : Reason.values()) failures.put(reason, new LongAdder());
+    }
+
+    @Around("@annotation(retryable)")
+    public Object retry(ProceedingJoinPoint call, RetryableTransaction retryable) throws Throwable {
+        if (RETRYING.get() != null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            joined.increment();
+            return call.proceed();
+        }
+        calls.increment();
+        int maxAttempts = retryable.maxAttempts() > 0 ? retryable.maxAttempts() : backoff.maxAttempts();
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(retryable.budgetMs() > 0 ? retryable.budgetMs() : budgetMillis);
+        long start = System.nanoTime();
+        RETRYING.set(Boolean.TRUE);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                long attemptStart = System.nanoTime();
+                try {
+                    Object result = call.proceed();
+                    if (attempt > 1) {
+                        recovered.increment();
+                        retriedCallLatency.record(System.nanoTime() - start);
+                    }
+                    return result;
+                } catch (RuntimeException ex) {
+                    Reason reason = RetryableSqlFailures.classify(ex);
+                    if (reason == null) throw ex;
+                    failures.get(reason).increment();
+                    failedAttemptNanos.add(System.nanoTime() - attemptStart);
+                    if (attempt >= maxAttempts) {
+                        exhausted.increment();
+                        throw ex;
+                    }
+                    long delay = backoff.delayMillis(attempt);
+                    if (System.nanoTime() - start + TimeUnit.MILLISECONDS.toNanos(delay) > budgetNanos) {
+                        budgetExhausted.increment();
+                        throw ex;
+                    }
+                    retries.increment();
+                    retriesByMethod.computeIfAbsent(name(call), k -> new LongAdder()).increment();
+                    backoffMillis.add(delay);
+                    Backoff.sleep(delay);
+                }
+            }
+        } finally {
+            RETRYING.remove();
+        }
+    }
+
+    private static String name(ProceedingJoinPoint call) {
+        return call.getSignature().getDeclaringType().getSimpleName() + "." + call.getSignature().getName();
+    }
+
+    @Override
+    public String statsName() {
+        return "retry";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxAttempts", backoff.maxAttempts());
+        stats.put("budgetMs", budgetMillis);
+        stats.put("calls", calls.sum());
+        stats.put("joinedOuterTransaction", joined.sum());
+        stats.put("retries", retries.sum());
+        stats.put("recovered", recovered.sum());
+        stats.put("exhausted", exhausted.sum());
+        stats.put("budgetExhausted", budgetExhausted.sum());
+        Map<String, Object> byReason = new LinkedHashMap<>();
+        failures.forEach((reason, count) -> byReason.put(reason.name(), count.sum()));
+        stats.put("failures", byReason);
+        Map<String, Object> byMethod = new TreeMap<>();
+        retriesByMethod.forEach((method, count) -> byMethod.put(method, count.sum()));
+        stats.put("retriesByMethod", byMethod);
+        stats.put("failedAttemptMillis", TimeUnit.NANOSECONDS.toMillis(failedAttemptNanos.sum()));
+        stats.put("backoffMillis", backoffMillis.sum());
+        stats.put("retriedCallLatency", retriedCallLatency.snapshot());
+        return stats;
+    }
+}
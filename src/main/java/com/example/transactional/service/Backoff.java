@@ -0,0 +1,47 @@
+package com.example.transactional.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded exponential backoff with full jitter: the n-th retry sleeps a random time in
+ * [0, min(maxMillis, initialMillis * 2^(n-1))].
+ */
+public class Backoff {
+
+    private final int maxAttempts;
+    private final long initialMillis;
+    private final long maxMillis;
+
+    public Backoff(int maxAttempts, long initialMillis, long maxMillis) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1");
+        if (initialMillis < 0 || maxMillis < initialMillis) throw new IllegalArgumentException("Invalid backoff bounds");
+        this.maxAttempts = maxAttempts;
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    public long delayMillis(int attempt) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 30);
+        long cap = Math.min(maxMillis, initialMillis << shift);
+        return cap == 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    public void pause(int attempt) {
+        sleep(delayMillis(attempt));
+    }
+
+    /** For callers that look at the delay first, e.g. to check it against a time budget. */
+    public static void sleep(long delay) {
+        if (delay == 0) return;
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off", e);
+        }
+    }
+}
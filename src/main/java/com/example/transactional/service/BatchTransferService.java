@@ -0,0 +1,345 @@
+package com.example.transactional.service;
+
+import com.example.transactional.account.AccountIdCache;
+import com.example.transactional.account.BalanceCache;
+import com.example.transactional.account.ShardedAccounts;
+import com.example.transactional.ledger.LedgerWriter;
+import com.example.transactional.metrics.InstrumentedTransactionManager;
+import com.example.transactional.metrics.StatsSource;
+import com.example.transactional.money.Money;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies many transfers with JDBC batching: items are grouped into chunks, each chunk is sent as
+ * one debit batch plus one credit batch and committed once. Rows that cannot be applied are dropped
+ * from their chunk and the rest of the chunk is retried, so a bad row never rolls back other rows.
+ */
+@Service
+public class BatchTransferService implements StatsSource {
+
+    private static final String DEBIT_SQL = "UPDATE accounts SET balance = balance - ?, version = version + 1 WHERE id = ?";
+    private static final String CREDIT_SQL = "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager txManager;
+    private final AccountIdCache accountIds;
+    private final BalanceCache balanceCache;
+    private final LedgerWriter ledgerWriter;
+    private final ShardedAccounts shardedAccounts;
+    private final int defaultChunkSize;
+
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder itemsCommitted = new LongAdder();
+    private final LongAdder itemsFailed = new LongAdder();
+    private final LongAdder commitNanosTotal = new LongAdder();
+    private final AtomicLong lastCommitNanos = new AtomicLong();
+    private final AtomicLong maxCommitNanos = new AtomicLong();
+
+    public BatchTransferService(JdbcTemplate jdbcTemplate,
+                                @Qualifier("jdbcTxManager") PlatformTransactionManager txManager,
+                                AccountIdCache accountIds,
+                                BalanceCache balanceCache,
+                                LedgerWriter ledgerWriter,
+                                ShardedAccounts shardedAccounts,
+                                @Value("${transfer.batch.chunk-size:500}") int defaultChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.txManager = txManager;
+        this.accountIds = accountIds;
+        this.balanceCache = balanceCache;
+        this.ledgerWriter = ledgerWriter;
+        this.shardedAccounts = shardedAccounts;
+        this.defaultChunkSize = defaultChunkSize;
+    }
+
+    public static class TransferItem {
+        public String from;
+        public String to;
+        public BigDecimal amount;
+
+        public TransferItem() {}
+
+        public TransferItem(String from, String to, BigDecimal amount) {
+            this.from = from;
+            this.to = to;
+            this.amount = amount;
+        }
+    }
+
+    public static class ItemResult {
+        public final int index;
+        public final String status; // "ok" or "failed"
+        public final String error;
+        public ItemResult(int index, String error) {
+            this.index = index;
+            this.status = error == null ? "ok" : "failed";
+            this.error = error;
+        }
+    }
+
+    public static class ChunkResult {
+        public final int chunk;
+        public final int size;
+        public final int committed;
+        public final int failed;
+        public final int attempts; // transactions opened for this chunk, 1 when no row was rejected
+        public final double commitMillis;
+        public ChunkResult(int chunk, int size, int committed, int attempts, long commitNanos) {
+            this.chunk = chunk;
+            this.size = size;
+            this.committed = committed;
+            this.failed = size - committed;
+            this.attempts = attempts;
+            this.commitMillis = commitNanos / 1_000_000.0;
+        }
+    }
+
+    public static class BatchResult {
+        public final int chunkSize;
+        public final int total;
+        public final int committed;
+        public final int failed;
+        public final List<ChunkResult> chunks;
+        public final List<ItemResult> items;
+        public BatchResult(int chunkSize, List<ChunkResult> chunks, List<ItemResult> items) {
+            this.chunkSize = chunkSize;
+            this.total = items.size();
+            this.committed = chunks.stream().mapToInt(c -> c.committed).sum();
+            this.failed = total - committed;
+            this.chunks = chunks;
+            this.items = items;
+        }
+    }
+
+    public int getDefaultChunkSize() {
+        return defaultChunkSize;
+    }
+
+    /**
+     * Consumes {@code items} lazily, so only one chunk is held in memory besides the per-item results.
+     */
+    public BatchResult transferBatch(Iterator<TransferItem> items, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        List<ChunkResult> chunkResults = new ArrayList<>();
+        List<ItemResult> itemResults = new ArrayList<>();
+        List<TransferItem> chunk = new ArrayList<>(chunkSize);
+        while (items.hasNext()) {
+            chunk.add(items.next());
+            if (chunk.size() == chunkSize) {
+                chunkResults.add(applyChunk(chunkResults.size(), itemResults.size(), chunk, itemResults));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunkResults.add(applyChunk(chunkResults.size(), itemResults.size(), chunk, itemResults));
+        }
+        return new BatchResult(chunkSize, chunkResults, itemResults);
+    }
+
+    private ChunkResult applyChunk(int chunkNo, int firstIndex, List<TransferItem> chunk, List<ItemResult> results) {
+        String[] errors = new String[chunk.size()];
+        ChunkRows rows = new ChunkRows(chunk.size());
+        List<Integer> valid = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            TransferItem item = chunk.get(i);
+            errors[i] = validate(item);
+            if (errors[i] != null) continue;
+            try {
+                rows.amounts[i] = Money.of(item.amount).minor();
+            } catch (IllegalArgumentException e) {
+                errors[i] = e.getMessage();
+                continue;
+            }
+            Long fromId = accountIds.findId(item.from);
+            Long toId = fromId == null ? null : accountIds.findId(item.to);
+            if (fromId == null) errors[i] = "Account not found: " + item.from;
+            else if (toId == null) errors[i] = "Account not found: " + item.to;
+            else if (shardedAccounts.bucketsOf(fromId) > 0) errors[i] = ShardedAccounts.shardedDebit(item.from).getMessage();
+            else {
+                rows.fromIds[i] = fromId;
+                rows.toIds[i] = toId;
+                valid.add(i);
+            }
+        }
+        ChunkTiming timing = new ChunkTiming();
+        int committed = apply(chunk, rows, valid, errors, timing).size();
+        for (int i = 0; i < chunk.size(); i++) {
+            results.add(new ItemResult(firstIndex + i, errors[i]));
+        }
+
+        chunks.increment();
+        itemsCommitted.add(committed);
+        itemsFailed.add(chunk.size() - committed);
+        return new ChunkResult(chunkNo, chunk.size(), committed, timing.attempts, timing.commitNanos);
+    }
+
+    // Returns the chunk positions that were committed; positions that failed get their entry in errors set.
+    private List<Integer> apply(List<TransferItem> chunk, ChunkRows rows, List<Integer> positions,
+                                String[] errors, ChunkTiming timing) {
+        List<Integer> pending = new ArrayList<>(positions);
+        while (!pending.isEmpty()) {
+            timing.attempts++;
+            DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+            def.setName("jdbcBatchTransfer");
+            def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+            TransactionStatus status = txManager.getTransaction(def);
+            List<Integer> rejected = new ArrayList<>();
+            try {
+                int[] debited = jdbcTemplate.batchUpdate(DEBIT_SQL, setter(rows, pending, true));
+                int[] credited = jdbcTemplate.batchUpdate(CREDIT_SQL, setter(rows, pending, false));
+                for (int i = 0; i < pending.size(); i++) {
+                    TransferItem item = chunk.get(pending.get(i));
+                    // A cached id that matches no row means the account went away: forget it and fail the item
+                    String error = null;
+                    if (!applied(debited[i])) {
+                        accountIds.invalidate(item.from);
+                        error = "Account not found: " + item.from;
+                    } else if (!applied(credited[i])) {
+                        accountIds.invalidate(item.to);
+                        error = "Account not found: " + item.to;
+                    }
+                    if (error != null) {
+                        errors[pending.get(i)] = error;
+                        rejected.add(pending.get(i));
+                    }
+                }
+            } catch (DataAccessException ex) {
+                InstrumentedTransactionManager.rollback(txManager, status, ex);
+                if (pending.size() == 1) {
+                    errors[pending.get(0)] = ex.getMostSpecificCause().getMessage();
+                    return List.of();
+                }
+                // The driver does not tell which row broke the batch: split and retry both halves
+                int mid = pending.size() / 2;
+                List<Integer> committed = new ArrayList<>(apply(chunk, rows, pending.subList(0, mid), errors, timing));
+                committed.addAll(apply(chunk, rows, pending.subList(mid, pending.size()), errors, timing));
+                return committed;
+            } catch (RuntimeException ex) {
+                InstrumentedTransactionManager.rollback(txManager, status, ex);
+                throw ex;
+            }
+
+            if (rejected.isEmpty()) {
+                String[] owners = new String[pending.size() * 2];
+                List<LedgerWriter.Transfer> ledger = new ArrayList<>(pending.size());
+                for (int i = 0; i < pending.size(); i++) {
+                    int p = pending.get(i);
+                    owners[2 * i] = chunk.get(p).from;
+                    owners[2 * i + 1] = chunk.get(p).to;
+                    ledger.add(new LedgerWriter.Transfer(rows.fromIds[p], rows.toIds[p], rows.amounts[p]));
+                }
+                try {
+                    ledgerWriter.append(ledger);
+                } catch (RuntimeException ex) {
+                    InstrumentedTransactionManager.rollback(txManager, status, ex);
+                    throw ex;
+                }
+                balanceCache.evictAfterCommit(owners);
+                long start = System.nanoTime();
+                txManager.commit(status);
+                long elapsed = System.nanoTime() - start;
+                timing.commitNanos += elapsed;
+                recordCommit(elapsed);
+                return pending;
+            }
+            txManager.rollback(status);
+            pending.removeAll(rejected);
+        }
+        return List.of();
+    }
+
+    private static BatchPreparedStatementSetter setter(ChunkRows rows, List<Integer> positions, boolean debit) {
+        return new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                int p = positions.get(i);
+                ps.setLong(1, rows.amounts[p]);
+                ps.setLong(2, debit ? rows.fromIds[p] : rows.toIds[p]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return positions.size();
+            }
+        };
+    }
+
+    // Drivers may report SUCCESS_NO_INFO for batched statements; treat that as applied.
+    private static boolean applied(int updateCount) {
+        return updateCount == 1 || updateCount == Statement.SUCCESS_NO_INFO;
+    }
+
+    private static String validate(TransferItem item) {
+        if (item == null) return "Missing transfer";
+        if (item.from == null || item.to == null) return "Both from and to are required";
+        if (item.amount == null || item.amount.signum() <= 0) return "Amount must be positive";
+        return null;
+    }
+
+    private void recordCommit(long nanos) {
+        commits.increment();
+        commitNanosTotal.add(nanos);
+        lastCommitNanos.set(nanos);
+        maxCommitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    // Resolved statement parameters, indexed by position in the chunk
+    private static class ChunkRows {
+        final long[] amounts;
+        final long[] fromIds;
+        final long[] toIds;
+        ChunkRows(int size) {
+            this.amounts = new long[size];
+            this.fromIds = new long[size];
+            this.toIds = new long[size];
+        }
+    }
+
+    private static class ChunkTiming {
+        int attempts;
+        long commitNanos;
+    }
+
+    @Override
+    public String statsName() {
+        return "batch";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long commitCount = commits.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("chunkSize", defaultChunkSize);
+        stats.put("chunks", chunks.sum());
+        stats.put("commits", commitCount);
+        stats.put("itemsCommitted", itemsCommitted.sum());
+        stats.put("itemsFailed", itemsFailed.sum());
+        stats.put("lastCommitMillis", lastCommitNanos.get() / 1_000_000.0);
+        stats.put("avgCommitMillis", commitCount == 0 ? 0.0 : commitNanosTotal.sum() / 1_000_000.0 / commitCount);
+        stats.put("maxCommitMillis", maxCommitNanos.get() / 1_000_000.0);
+        return stats;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.transactional.service;
+
+import com.example.transactional.metrics.LatencyHistogram;
+import com.example.transactional.metrics.StatsSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Fixed pool of platform threads, with a bounded queue, for the blocking JDBC work behind the
+ * non-blocking API. Overload is shed instead of queued. A full queue rejects the submit at once. A task
+ * that waited longer than {@code max-queue-wait-ms} is failed when dequeued instead of being run late.
+ * Both cases fail with {@link RejectedExecutionException}, so latency stays bounded by the queue limits.
+ *
+ * <p>Admission is counted by a semaphore of {@code threads + queue-capacity} permits, held from submit
+ * until the task is done. A bounded work queue would make the limit depend on whether an idle worker has
+ * taken its task off the queue yet.
+ */
+@Component
+public class BoundedTransferExecutor implements StatsSource {
+
+    private final ThreadPoolExecutor pool;
+    private final Semaphore slots;
+    private final int queueCapacity;
+    private final long maxQueueWaitNanos;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejectedFull = new LongAdder();
+    private final LongAdder shedExpired = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+
+    public BoundedTransferExecutor(@Value("${transfer.async.threads:16}") int threads,
+                                   @Value("${transfer.async.queue-capacity:64}") int queueCapacity,
+                                   @Value("${transfer.async.max-queue-wait-ms:1000}") long maxQueueWaitMillis) {
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "transfer-async-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.pool.prestartAllCoreThreads();
+        this.slots = new Semaphore(threads + queueCapacity);
+        this.queueCapacity = queueCapacity;
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+    }
+
+    /** Queues {@code work}; throws {@link RejectedExecutionException} right away when the queue is full. */
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        if (!slots.tryAcquire()) {
+            rejectedFull.increment();
+            throw new RejectedExecutionException("Transfer executor queue is full");
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long enqueuedAt = System.nanoTime();
+        try {
+            pool.execute(() -> run(work, future, enqueuedAt));
+        } catch (RejectedExecutionException ex) {
+            // Shutting down
+            slots.release();
+            throw ex;
+        }
+        submitted.increment();
+        return future;
+    }
+
+    // The slot is released before the future completes, so a caller that resubmits on completion finds it free
+    private <T> void run(Supplier<T> work, CompletableFuture<T> future, long enqueuedAt) {
+        long start = System.nanoTime();
+        queueWait.record(start - enqueuedAt);
+        if (start - enqueuedAt > maxQueueWaitNanos) {
+            shedExpired.increment();
+            slots.release();
+            future.completeExceptionally(new RejectedExecutionException("Transfer waited too long in queue"));
+            return;
+        }
+        T result = null;
+        Throwable failure = null;
+        try {
+            result = work.get();
+            completed.increment();
+        } catch (RuntimeException | Error ex) {
+            failed.increment();
+            failure = ex;
+        } finally {
+            runTime.record(System.nanoTime() - start);
+            slots.release();
+        }
+        if (failure == null) future.complete(result);
+        else future.completeExceptionally(failure);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public String statsName() {
+        return "asyncExecutor";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", pool.getMaximumPoolSize());
+        stats.put("active", pool.getActiveCount());
+        stats.put("queueDepth", pool.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("maxQueueWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos));
+        stats.put("submitted", submitted.sum());
+        stats.put("rejectedQueueFull", rejectedFull.sum());
+        stats.put("shedQueueWait", shedExpired.sum());
+        stats.put("completed", completed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("queueWait", queueWait.snapshot());
+        stats.put("runTime", runTime.snapshot());
+        return stats;
+    }
+}
@@ -0,0 +1,375 @@
+package com.example.transactional.service;
+
+import com.example.transactional.account.AccountIdCache;
+import com.example.transactional.account.BalanceCache;
+import com.example.transactional.account.ShardedAccounts;
+import com.example.transactional.idempotency.IdempotencyStore;
+import com.example.transactional.ledger.LedgerWriter;
+import com.example.transactional.metrics.InstrumentedTransactionManager;
+import com.example.transactional.metrics.StatsSource;
+import com.example.transactional.money.Money;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind transfers with group commit. Callers enqueue onto a bounded queue and get a future; a
+ * single writer thread drains up to {@code max-group-size} transfers at a time and applies them in one
+ * jdbcTxManager transaction: rows are locked in id order, funds are checked transfer by transfer
+ * against the running balances, deltas to the same account are coalesced into one UPDATE, and every
+ * accepted transfer is appended to the ledger. Futures complete once that transaction has committed.
+ * An {@code Idempotency-Key} bound at submit time is checked and recorded in the same transaction; a key
+ * already applied (or repeated within the group) fails only its own future, with {@link DuplicateKeyException}.
+ */
+@Service
+public class GroupCommitTransferService implements StatsSource {
+
+    private static final int SIZE_BUCKETS = 16; // group sizes 1, 2-3, 4-7, ... 2^15+
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager txManager;
+    private final AccountIdCache accountIds;
+    private final BalanceCache balanceCache;
+    private final LedgerWriter ledgerWriter;
+    private final IdempotencyStore idempotency;
+    private final ShardedAccounts shardedAccounts;
+    private final BlockingQueue<Pending> queue;
+    private final int maxGroupSize;
+    private final long offerTimeoutMillis;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder rejectedFull = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder[] groupsBySize = adders();
+    private final LongAdder[] transfersBySize = adders();
+    private final LongAdder[] commitNanosBySize = adders();
+    private final LongAdder[] latencyNanosBySize = adders();
+
+    public GroupCommitTransferService(JdbcTemplate jdbcTemplate,
+                                      @Qualifier("jdbcTxManager") PlatformTransactionManager txManager,
+                                      AccountIdCache accountIds,
+                                      BalanceCache balanceCache,
+                                      LedgerWriter ledgerWriter,
+                                      IdempotencyStore idempotency,
+                                      ShardedAccounts shardedAccounts,
+                                      @Value("${transfer.group-commit.queue-capacity:10000}") int queueCapacity,
+                                      @Value("${transfer.group-commit.max-group-size:256}") int maxGroupSize,
+                                      @Value("${transfer.group-commit.offer-timeout-ms:50}") long offerTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.txManager = txManager;
+        this.accountIds = accountIds;
+        this.balanceCache = balanceCache;
+        this.ledgerWriter = ledgerWriter;
+        this.idempotency = idempotency;
+        this.shardedAccounts = shardedAccounts;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxGroupSize = maxGroupSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    private static class Pending {
+        final String fromOwner;
+        final String toOwner;
+        final long amount;
+        final IdempotencyStore.Entry claim = IdempotencyStore.current();
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        long fromId;
+        long toId;
+        Pending(String fromOwner, String toOwner, long amount) {
+            this.fromOwner = fromOwner;
+            this.toOwner = toOwner;
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * Enqueues a transfer. Blocks for at most {@code offer-timeout-ms} when the queue is full and then
+     * throws {@link RejectedExecutionException}, so producers slow down instead of growing the queue.
+     */
+    public CompletableFuture<Void> submit(String fromOwner, String toOwner, BigDecimal amount) {
+        return submit(fromOwner, toOwner, Money.of(amount));
+    }
+
+    public CompletableFuture<Void> submit(String fromOwner, String toOwner, Money amount) {
+        validateAmount(amount);
+        Pending pending = new Pending(fromOwner, toOwner, amount.minor());
+        boolean accepted;
+        try {
+            accepted = running && queue.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            rejectedFull.increment();
+            throw new RejectedExecutionException("Transfer queue is full");
+        }
+        enqueued.increment();
+        return pending.done;
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        writer = new Thread(this::drain, "group-commit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void drain() {
+        List<Pending> group = new ArrayList<>(maxGroupSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+                queue.drainTo(group, maxGroupSize - 1);
+                commitGroup(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                for (Pending p : group) reject(p, e);
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void commitGroup(List<Pending> group) {
+        List<Pending> resolved = new ArrayList<>(group.size());
+        for (Pending p : group) {
+            Long fromId = accountIds.findId(p.fromOwner);
+            Long toId = accountIds.findId(p.toOwner);
+            if (fromId == null) reject(p, new IllegalArgumentException("Sender not found: " + p.fromOwner));
+            else if (toId == null) reject(p, new IllegalArgumentException("Recipient not found: " + p.toOwner));
+            else if (shardedAccounts.bucketsOf(fromId) > 0) reject(p, ShardedAccounts.shardedDebit(p.fromOwner));
+            else {
+                p.fromId = fromId;
+                p.toId = toId;
+                resolved.add(p);
+            }
+        }
+        if (resolved.isEmpty()) return;
+
+        DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+        def.setName("jdbcGroupCommit");
+        def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        TransactionStatus status = txManager.getTransaction(def);
+        List<Pending> accepted = new ArrayList<>(resolved.size());
+        long commitNanos;
+        try {
+            Map<Long, Long> balances = lockBalances(resolved);
+            Set<String> appliedKeys = idempotency.existing(claimedKeys(resolved));
+            Set<String> groupKeys = new HashSet<>();
+            TreeMap<Long, Long> deltas = new TreeMap<>();
+            List<LedgerWriter.Transfer> ledger = new ArrayList<>(resolved.size());
+            List<String> owners = new ArrayList<>(resolved.size() * 2);
+            for (Pending p : resolved) {
+                Long fromBalance = balances.get(p.fromId);
+                Long toBalance = balances.get(p.toId);
+                if (fromBalance == null || toBalance == null) {
+                    // Cached id without a row: the account went away after resolution
+                    accountIds.invalidate(p.fromOwner);
+                    accountIds.invalidate(p.toOwner);
+                    reject(p, new IllegalArgumentException("Account not found: " + p.fromOwner + " or " + p.toOwner));
+                    continue;
+                }
+                if (p.claim != null && (appliedKeys.contains(p.claim.key) || !groupKeys.add(p.claim.key))) {
+                    reject(p, new DuplicateKeyException("Idempotency-Key already applied: " + p.claim.key));
+                    continue;
+                }
+                if (fromBalance < p.amount) {
+                    reject(p, new IllegalArgumentException("Insufficient funds"));
+                    continue;
+                }
+                if (p.fromId != p.toId && toBalance > Long.MAX_VALUE - p.amount) {
+                    reject(p, new IllegalArgumentException("Amount out of range"));
+                    continue;
+                }
+                balances.put(p.fromId, fromBalance - p.amount);
+                balances.put(p.toId, balances.get(p.toId) + p.amount);
+                deltas.merge(p.fromId, -p.amount, Long::sum);
+                deltas.merge(p.toId, p.amount, Long::sum);
+                ledger.add(new LedgerWriter.Transfer(p.fromId, p.toId, p.amount));
+                owners.add(p.fromOwner);
+                owners.add(p.toOwner);
+                accepted.add(p);
+            }
+            applyDeltas(deltas);
+            List<String> transferIds = ledgerWriter.append(ledger);
+            recordClaims(accepted, transferIds);
+            balanceCache.evictAfterCommit(owners.toArray(new String[0]));
+
+            long start = System.nanoTime();
+            txManager.commit(status);
+            commitNanos = System.nanoTime() - start;
+        } catch (RuntimeException ex) {
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
+            for (Pending p : resolved) reject(p, ex);
+            return;
+        }
+
+        long now = System.nanoTime();
+        int bucket = bucketOf(group.size());
+        groupsBySize[bucket].increment();
+        transfersBySize[bucket].add(accepted.size());
+        commitNanosBySize[bucket].add(commitNanos);
+        for (Pending p : accepted) {
+            latencyNanosBySize[bucket].add(now - p.enqueuedAt);
+            committed.increment();
+            p.done.complete(null);
+        }
+    }
+
+    private static List<String> claimedKeys(List<Pending> group) {
+        List<String> keys = new ArrayList<>();
+        for (Pending p : group) {
+            if (p.claim != null) keys.add(p.claim.key);
+        }
+        return keys;
+    }
+
+    private void recordClaims(List<Pending> accepted, List<String> transferIds) {
+        List<IdempotencyStore.Entry> claims = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < accepted.size(); i++) {
+            if (accepted.get(i).claim == null) continue;
+            claims.add(accepted.get(i).claim);
+            ids.add(transferIds.get(i));
+        }
+        idempotency.recordAll(claims, ids);
+    }
+
+    private Map<Long, Long> lockBalances(List<Pending> group) {
+        List<Long> ids = new ArrayList<>();
+        for (Pending p : group) {
+            ids.add(p.fromId);
+            ids.add(p.toId);
+        }
+        ids = new ArrayList<>(new TreeSet<>(ids));
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Map<Long, Long> balances = new HashMap<>();
+        jdbcTemplate.query("SELECT id, balance FROM accounts WHERE id IN (" + placeholders + ") ORDER BY id FOR UPDATE",
+                rs -> { balances.put(rs.getLong(1), rs.getLong(2)); }, ids.toArray());
+        return balances;
+    }
+
+    private void applyDeltas(TreeMap<Long, Long> deltas) {
+        List<Map.Entry<Long, Long>> changes = new ArrayList<>(deltas.size());
+        for (Map.Entry<Long, Long> e : deltas.entrySet()) {
+            if (e.getValue() != 0) changes.add(e);
+        }
+        if (changes.isEmpty()) return;
+        jdbcTemplate.batchUpdate("UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE id = ?",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, changes.get(i).getValue());
+                        ps.setLong(2, changes.get(i).getKey());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return changes.size();
+                    }
+                });
+    }
+
+    private void reject(Pending p, RuntimeException ex) {
+        if (p.done.completeExceptionally(ex)) failed.increment();
+    }
+
+    private static int bucketOf(int groupSize) {
+        return Math.min(31 - Integer.numberOfLeadingZeros(groupSize), SIZE_BUCKETS - 1);
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[SIZE_BUCKETS];
+        for (int i = 0; i < adders.length; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    private void validateAmount(Money amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "groupCommit";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueRemaining", queue.remainingCapacity());
+        stats.put("maxGroupSize", maxGroupSize);
+        stats.put("enqueued", enqueued.sum());
+        stats.put("rejectedQueueFull", rejectedFull.sum());
+        stats.put("committed", committed.sum());
+        stats.put("failed", failed.sum());
+
+        // Per group-size bucket: how often it happened, commit cost, and what callers experienced
+        Map<String, Object> byGroupSize = new LinkedHashMap<>();
+        for (int b = 0; b < SIZE_BUCKETS; b++) {
+            long groups = groupsBySize[b].sum();
+            if (groups == 0) continue;
+            long transfers = transfersBySize[b].sum();
+            long commitNanos = commitNanosBySize[b].sum();
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            bucket.put("groups", groups);
+            bucket.put("transfers", transfers);
+            bucket.put("avgCommitMillis", commitNanos / 1_000_000.0 / groups);
+            bucket.put("avgLatencyMillis", transfers == 0 ? 0.0 : latencyNanosBySize[b].sum() / 1_000_000.0 / transfers);
+            bucket.put("transfersPerCommitSecond", commitNanos == 0 ? 0.0 : transfers * 1e9 / commitNanos);
+            int low = 1 << b;
+            String label = b == 0 ? "1" : b == SIZE_BUCKETS - 1 ? low + "+" : low + "-" + (2 * low - 1);
+            byGroupSize.put(label, bucket);
+        }
+        stats.put("byGroupSize", byGroupSize);
+        return stats;
+    }
+}
@@ -1,6 +1,12 @@
 package com.example.transactional.service;
 
+import com.example.transactional.account.AccountIdCache;
+import com.example.transactional.account.BalanceCache;
+import com.example.transactional.ledger.LedgerWriter;
+import com.example.transactional.metrics.InstrumentedTransactionManager;
+import com.example.transactional.money.Money;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -12,17 +18,31 @@ import java.math.BigDecimal;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 @Service
 public class IsolationDemoService {
 
     private final JdbcTemplate jdbcTemplate;
     private final PlatformTransactionManager txManager;
+    private final AccountIdCache accountIds;
+    private final BalanceCache balanceCache;
+    private final LedgerWriter ledgerWriter;
+    private final AsyncTaskExecutor writerExecutor;
 
     public IsolationDemoService(JdbcTemplate jdbcTemplate,
-                                @Qualifier("jdbcTxManager") PlatformTransactionManager txManager) {
+                                @Qualifier("jdbcTxManager") PlatformTransactionManager txManager,
+                                AccountIdCache accountIds,
+                                BalanceCache balanceCache,
+                                LedgerWriter ledgerWriter,
+                                @Qualifier("demoExecutor") AsyncTaskExecutor writerExecutor) {
         this.jdbcTemplate = jdbcTemplate;
         this.txManager = txManager;
+        this.accountIds = accountIds;
+        this.balanceCache = balanceCache;
+        this.ledgerWriter = ledgerWriter;
+        this.writerExecutor = writerExecutor;
     }
 
     public enum Isolation {
@@ -51,26 +71,28 @@ public class IsolationDemoService {
         }
     }
 
+    // Not @RetryableTransaction: the writer commits on its own, so a re-run would apply it twice, and
+    // retrying only the reader would read after the write and never show the anomaly
     public NonRepeatableReadResult demoNonRepeatableRead(String owner, BigDecimal delta, Isolation isolation) {
-        // Latches to coordinate threads
+        long deltaMinor = Money.of(delta).minor();
         CountDownLatch afterFirstRead = new CountDownLatch(1);
-        CountDownLatch writerDone = new CountDownLatch(1);
-
-        // Start writer thread that updates balance after first read
-        Thread writer = new Thread(() -> {
-            try {
-                afterFirstRead.await();
-                runInNewTx(Isolation.READ_COMMITTED, () -> {
-                    int upd = jdbcTemplate.update("UPDATE accounts SET balance = balance + ? WHERE owner = ?", delta, owner);
-                    if (upd != 1) throw new IllegalArgumentException("Account not found: " + owner);
+
+        // Start writer that updates balance after first read (virtual thread when virtual threads are enabled)
+        Future<?> writer = writerExecutor.submit(() -> {
+            afterFirstRead.await();
+            runInNewTx(Isolation.READ_COMMITTED, () -> {
+                long[] used = new long[1];
+                int upd = accountIds.update(owner, id -> {
+                    used[0] = id;
+                    return jdbcTemplate.update("UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE id = ?", deltaMinor, id);
                 });
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            } finally {
-                writerDone.countDown();
-            }
-        }, "writer-nonrepeatable");
-        writer.start();
+                if (upd != 1) throw new IllegalArgumentException("Account not found: " + owner);
+                // Recorded like any balance change, so reconciliation does not report the demo as drift
+                ledgerWriter.appendAdjustment(used[0], deltaMinor);
+                balanceCache.evictAfterCommit(owner);
+            });
+            return null;
+        });
 
         BigDecimal first;
         BigDecimal second;
@@ -83,11 +105,12 @@ public class IsolationDemoService {
         try {
             first = readBalance(owner);
             afterFirstRead.countDown();
-            try { writerDone.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            awaitWriter(writer);
             second = readBalance(owner);
             txManager.commit(status);
         } catch (RuntimeException ex) {
-            txManager.rollback(status);
+            writer.cancel(true);
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
             throw ex;
         }
         return new NonRepeatableReadResult(isolation, first, second);
@@ -106,24 +129,20 @@ public class IsolationDemoService {
         }
     }
 
+    // Not @RetryableTransaction, for the same reason: a re-run would insert a second phantom row
     public PhantomReadResult demoPhantomRead(BigDecimal threshold, Isolation isolation) {
+        long thresholdMinor = Money.of(threshold).minor();
         CountDownLatch afterFirstQuery = new CountDownLatch(1);
-        CountDownLatch writerDone = new CountDownLatch(1);
-
-        Thread writer = new Thread(() -> {
-            try {
-                afterFirstQuery.await();
-                runInNewTx(Isolation.READ_COMMITTED, () -> {
-                    String owner = "phantom-" + UUID.randomUUID();
-                    jdbcTemplate.update("INSERT INTO accounts(owner, balance) VALUES (?, ?)", owner, threshold.add(new BigDecimal("1.00")));
-                });
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            } finally {
-                writerDone.countDown();
-            }
-        }, "writer-phantom");
-        writer.start();
+
+        Future<?> writer = writerExecutor.submit(() -> {
+            afterFirstQuery.await();
+            runInNewTx(Isolation.READ_COMMITTED, () -> {
+                String owner = "phantom-" + UUID.randomUUID();
+                jdbcTemplate.update("INSERT INTO accounts(owner, balance) VALUES (?, ?)", owner, thresholdMinor + 100);
+                accountIds.invalidate(owner);
+            });
+            return null;
+        });
 
         int c1;
         int c2;
@@ -133,24 +152,38 @@ public class IsolationDemoService {
         def.setIsolationLevel(isolation.level);
         TransactionStatus status = txManager.getTransaction(def);
         try {
-            c1 = countAbove(threshold);
+            c1 = countAbove(thresholdMinor);
             afterFirstQuery.countDown();
-            try { writerDone.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
-            c2 = countAbove(threshold);
+            awaitWriter(writer);
+            c2 = countAbove(thresholdMinor);
             txManager.commit(status);
         } catch (RuntimeException ex) {
-            txManager.rollback(status);
+            writer.cancel(true);
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
             throw ex;
         }
         return new PhantomReadResult(isolation, c1, c2);
     }
 
+    // A writer that failed (unknown owner, lock timeout) fails the demo instead of reporting no anomaly
+    private static void awaitWriter(Future<?> writer) {
+        try {
+            writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the writer", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException("Writer failed", e.getCause());
+        }
+    }
+
     private BigDecimal readBalance(String owner) {
-        return jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE owner = ?", (rs, rn) -> rs.getBigDecimal(1), owner);
+        return jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE owner = ?", (rs, rn) -> Money.ofMinor(rs.getLong(1)).toBigDecimal(), owner);
     }
 
-    private int countAbove(BigDecimal threshold) {
-        Integer cnt = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accounts WHERE balance >= ?", Integer.class, threshold);
+    private int countAbove(long thresholdMinor) {
+        Integer cnt = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accounts WHERE balance >= ?", Integer.class, thresholdMinor);
         return cnt == null ? 0 : cnt;
     }
 
@@ -164,7 +197,7 @@ public class IsolationDemoService {
             body.run();
             txManager.commit(status);
         } catch (RuntimeException ex) {
-            txManager.rollback(status);
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
             throw ex;
         }
     }
@@ -0,0 +1,324 @@
+package com.example.transactional.service;
+
+import com.example.transactional.ledger.LedgerWriter;
+import com.example.transactional.metrics.InstrumentedTransactionManager;
+import com.example.transactional.metrics.LatencyHistogram;
+import com.example.transactional.retry.RetryableSqlFailures;
+import com.example.transactional.service.IsolationDemoService.Isolation;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator for isolation anomalies: N readers and M writers run for a fixed time against a fresh
+ * set of accounts, once per isolation level, and every anomaly a transaction can observe is counted.
+ *
+ * <p>Accounts come in pairs with a constant pair total. Writers move money inside a pair with an
+ * application-side read-modify-write ({@code SELECT} both, {@code UPDATE ... SET balance = ?}) and record
+ * the move in the ledger, so an update lost to a concurrent writer changes the pair total. Each reader transaction reads one side
+ * of a pair, counts the run's rows above a threshold, reads the other side, and then repeats the first
+ * read and the count. It records:
+ * <ul>
+ *   <li>{@code nonRepeatableReads}: the two reads of the same row differ;</li>
+ *   <li>{@code phantomReads}: the two counts differ, because writers move rows across the threshold;</li>
+ *   <li>{@code readSkews}: the two sides do not add up to the pair total (includes dirty reads).</li>
+ * </ul>
+ * After the run, {@code lostUpdatePairs} and {@code totalDrift} compare the final pair totals. Writer
+ * serialization failures (see {@link RetryableSqlFailures}) are retried with backoff and counted.
+ * Pair choice follows a Zipf distribution with exponent {@code skew} (0 = uniform).
+ */
+@Service
+public class IsolationLoadService {
+
+    private static final long INITIAL_BALANCE = 100_000; // minor units per account
+    private static final long THRESHOLD = INITIAL_BALANCE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager txManager;
+    private final LedgerWriter ledgerWriter;
+    private final Backoff backoff;
+    private final int maxThreads;
+    private final long maxDurationMillis;
+
+    public IsolationLoadService(JdbcTemplate jdbcTemplate,
+                                @Qualifier("jdbcTxManager") PlatformTransactionManager txManager,
+                                LedgerWriter ledgerWriter,
+                                @Value("${isolation.load.max-attempts:5}") int maxAttempts,
+                                @Value("${isolation.load.initial-backoff-ms:1}") long initialBackoffMillis,
+                                @Value("${isolation.load.max-backoff-ms:20}") long maxBackoffMillis,
+                                @Value("${isolation.load.max-threads:128}") int maxThreads,
+                                @Value("${isolation.load.max-duration-ms:60000}") long maxDurationMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.txManager = txManager;
+        this.ledgerWriter = ledgerWriter;
+        this.backoff = new Backoff(maxAttempts, initialBackoffMillis, maxBackoffMillis);
+        this.maxThreads = maxThreads;
+        this.maxDurationMillis = maxDurationMillis;
+    }
+
+    public static class LoadSpec {
+        public int readers = 4;
+        public int writers = 4;
+        public List<Isolation> isolations = List.of(Isolation.values());
+        public long durationMillis = 2000;
+        public int pairs = 50;
+        public double skew = 0.0;
+    }
+
+    public static class LevelResult {
+        public final Isolation isolation;
+        public long readerTransactions;
+        public long writerCommits;
+        public long nonRepeatableReads;
+        public long phantomReads;
+        public long readSkews;
+        public long lostUpdatePairs;
+        public long totalDrift;
+        public long serializationFailures;
+        public long retries;
+        public long exhaustedRetries;
+        public long errors;
+        public double readerTps;
+        public double writerTps;
+        public Map<String, Object> writerLatency;
+
+        LevelResult(Isolation isolation) {
+            this.isolation = isolation;
+        }
+    }
+
+    private static class Counters {
+        final LongAdder readerTransactions = new LongAdder();
+        final LongAdder writerCommits = new LongAdder();
+        final LongAdder nonRepeatableReads = new LongAdder();
+        final LongAdder phantomReads = new LongAdder();
+        final LongAdder readSkews = new LongAdder();
+        final LongAdder serializationFailures = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder exhaustedRetries = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LatencyHistogram writerLatency = new LatencyHistogram();
+    }
+
+    public List<LevelResult> run(LoadSpec spec) {
+        validate(spec);
+        double[] cdf = zipfCdf(spec.pairs, spec.skew);
+        List<LevelResult> results = new ArrayList<>();
+        for (Isolation isolation : spec.isolations) {
+            results.add(runLevel(spec, isolation, cdf));
+        }
+        return results;
+    }
+
+    private LevelResult runLevel(LoadSpec spec, Isolation isolation, double[] cdf) {
+        String prefix = "iso-load-" + UUID.randomUUID() + "-";
+        long[] ids = createAccounts(prefix, spec.pairs * 2);
+        Counters counters = new Counters();
+        ExecutorService pool = Executors.newFixedThreadPool(spec.readers + spec.writers);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(spec.durationMillis);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < spec.readers; i++) {
+                workers.add(pool.submit(() -> {
+                    while (System.nanoTime() < deadline) read(isolation, prefix, ids, pick(cdf), counters);
+                }));
+            }
+            for (int i = 0; i < spec.writers; i++) {
+                workers.add(pool.submit(() -> {
+                    while (System.nanoTime() < deadline) write(isolation, ids, pick(cdf), counters);
+                }));
+            }
+            for (Future<?> f : workers) {
+                try {
+                    f.get();
+                } catch (Exception e) {
+                    counters.errors.increment();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        LevelResult result = new LevelResult(isolation);
+        result.readerTransactions = counters.readerTransactions.sum();
+        result.writerCommits = counters.writerCommits.sum();
+        result.nonRepeatableReads = counters.nonRepeatableReads.sum();
+        result.phantomReads = counters.phantomReads.sum();
+        result.readSkews = counters.readSkews.sum();
+        result.serializationFailures = counters.serializationFailures.sum();
+        result.retries = counters.retries.sum();
+        result.exhaustedRetries = counters.exhaustedRetries.sum();
+        result.errors = counters.errors.sum();
+        result.readerTps = result.readerTransactions / seconds;
+        result.writerTps = result.writerCommits / seconds;
+        result.writerLatency = counters.writerLatency.snapshot();
+        checkPairTotals(ids, result);
+        // Scratch accounts: their ledger rows go with them
+        jdbcTemplate.update("DELETE FROM transfers WHERE account_id IN (SELECT id FROM accounts WHERE owner LIKE ?)", prefix + "%");
+        jdbcTemplate.update("DELETE FROM accounts WHERE owner LIKE ?", prefix + "%");
+        return result;
+    }
+
+    private void read(Isolation isolation, String prefix, long[] ids, int pair, Counters counters) {
+        boolean flip = ThreadLocalRandom.current().nextBoolean();
+        long first = ids[2 * pair + (flip ? 1 : 0)];
+        long other = ids[2 * pair + (flip ? 0 : 1)];
+        try {
+            inTransaction("isolationLoadReader", isolation, () -> {
+                long a1 = balance(first);
+                long c1 = countAbove(prefix);
+                long b = balance(other);
+                long a2 = balance(first);
+                long c2 = countAbove(prefix);
+                if (a1 != a2) counters.nonRepeatableReads.increment();
+                if (c1 != c2) counters.phantomReads.increment();
+                if (a1 + b != 2 * INITIAL_BALANCE) counters.readSkews.increment();
+            });
+            counters.readerTransactions.increment();
+        } catch (RuntimeException e) {
+            counters.errors.increment();
+        }
+    }
+
+    private void write(Isolation isolation, long[] ids, int pair, Counters counters) {
+        boolean flip = ThreadLocalRandom.current().nextBoolean();
+        long from = ids[2 * pair + (flip ? 1 : 0)];
+        long to = ids[2 * pair + (flip ? 0 : 1)];
+        long amount = 1 + ThreadLocalRandom.current().nextLong(100);
+        long start = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                inTransaction("isolationLoadWriter", isolation, () -> {
+                    // Read-modify-write in the application: exactly what a lost update breaks
+                    long fromBalance = balance(from);
+                    long toBalance = balance(to);
+                    if (fromBalance < amount) return;
+                    jdbcTemplate.update("UPDATE accounts SET balance = ?, version = version + 1 WHERE id = ?", fromBalance - amount, from);
+                    jdbcTemplate.update("UPDATE accounts SET balance = ?, version = version + 1 WHERE id = ?", toBalance + amount, to);
+                    // A lost update still shows up as drift against these rows, as it should
+                    ledgerWriter.append(List.of(new LedgerWriter.Transfer(from, to, amount)));
+                });
+                counters.writerCommits.increment();
+                counters.writerLatency.record(System.nanoTime() - start);
+                return;
+            } catch (RuntimeException e) {
+                if (RetryableSqlFailures.classify(e) == null) {
+                    counters.errors.increment();
+                    return;
+                }
+                counters.serializationFailures.increment();
+                if (attempt >= backoff.maxAttempts()) {
+                    counters.exhaustedRetries.increment();
+                    return;
+                }
+                counters.retries.increment();
+                backoff.pause(attempt);
+            }
+        }
+    }
+
+    private void inTransaction(String name, Isolation isolation, Runnable body) {
+        DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+        def.setName(name);
+        def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        def.setIsolationLevel(isolation.level);
+        TransactionStatus status = txManager.getTransaction(def);
+        try {
+            body.run();
+            txManager.commit(status);
+        } catch (RuntimeException ex) {
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
+            throw ex;
+        }
+    }
+
+    private long balance(long id) {
+        Long balance = jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE id = ?", Long.class, id);
+        return balance == null ? 0 : balance;
+    }
+
+    private long countAbove(String prefix) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accounts WHERE owner LIKE ? AND balance > ?",
+                Long.class, prefix + "%", THRESHOLD);
+        return count == null ? 0 : count;
+    }
+
+    private long[] createAccounts(String prefix, int n) {
+        List<Object[]> rows = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) rows.add(new Object[]{prefix + i, INITIAL_BALANCE});
+        jdbcTemplate.batchUpdate("INSERT INTO accounts(owner, balance) VALUES (?, ?)", rows);
+        long[] ids = new long[n];
+        jdbcTemplate.query("SELECT owner, id FROM accounts WHERE owner LIKE ?", rs -> {
+            String owner = rs.getString(1);
+            ids[Integer.parseInt(owner.substring(prefix.length()))] = rs.getLong(2);
+        }, prefix + "%");
+        return ids;
+    }
+
+    private void checkPairTotals(long[] ids, LevelResult result) {
+        for (int p = 0; p < ids.length / 2; p++) {
+            long total = balance(ids[2 * p]) + balance(ids[2 * p + 1]);
+            if (total != 2 * INITIAL_BALANCE) {
+                result.lostUpdatePairs++;
+                result.totalDrift += total - 2 * INITIAL_BALANCE;
+            }
+        }
+    }
+
+    private static int pick(double[] cdf) {
+        int i = Arrays.binarySearch(cdf, ThreadLocalRandom.current().nextDouble());
+        return Math.min(i >= 0 ? i : -i - 1, cdf.length - 1);
+    }
+
+    // P(pair k) proportional to 1 / (k + 1)^skew; skew 0 is uniform
+    private static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, skew);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) cdf[k] /= sum;
+        return cdf;
+    }
+
+    private void validate(LoadSpec spec) {
+        if (spec.readers < 0 || spec.writers < 0 || spec.readers + spec.writers == 0) {
+            throw new IllegalArgumentException("Need at least one reader or writer");
+        }
+        if (spec.readers + spec.writers > maxThreads) {
+            throw new IllegalArgumentException("At most " + maxThreads + " readers and writers");
+        }
+        if (spec.durationMillis < 1 || spec.durationMillis > maxDurationMillis) {
+            throw new IllegalArgumentException("Duration must be between 1 and " + maxDurationMillis + " ms");
+        }
+        if (spec.pairs < 1 || spec.pairs > 10_000) {
+            throw new IllegalArgumentException("Pairs must be between 1 and 10000");
+        }
+        if (spec.skew < 0) {
+            throw new IllegalArgumentException("Skew must not be negative");
+        }
+        if (spec.isolations == null || spec.isolations.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one isolation level");
+        }
+    }
+}
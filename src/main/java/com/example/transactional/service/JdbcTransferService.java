@@ -1,5 +1,14 @@
 package com.example.transactional.service;
 
+import com.example.transactional.account.AccountIdCache;
+import com.example.transactional.account.BalanceCache;
+import com.example.transactional.account.ShardedAccounts;
+import com.example.transactional.ledger.LedgerWriter;
+import com.example.transactional.metrics.InstrumentedTransactionManager;
+import com.example.transactional.money.Money;
+import com.example.transactional.retry.RetryableTransaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
@@ -15,6 +24,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Service
 public class JdbcTransferService {
@@ -22,58 +37,134 @@ public class JdbcTransferService {
     private final JdbcTemplate jdbcTemplate;
     private final PlatformTransactionManager txManager;
     private final DataSource dataSource;
+    private final AccountIdCache accountIds;
+    private final BalanceCache balanceCache;
+    private final LedgerWriter ledgerWriter;
+    private final ShardedAccounts shardedAccounts;
+    private final int maxLegs;
 
     public JdbcTransferService(JdbcTemplate jdbcTemplate,
                                @Qualifier("jdbcTxManager") PlatformTransactionManager txManager,
-                               DataSource dataSource) {
+                               DataSource dataSource,
+                               AccountIdCache accountIds,
+                               BalanceCache balanceCache,
+                               LedgerWriter ledgerWriter,
+                               ShardedAccounts shardedAccounts,
+                               @Value("${transfer.multi-leg.max-legs:100}") int maxLegs) {
         this.jdbcTemplate = jdbcTemplate;
         this.txManager = txManager;
         this.dataSource = dataSource;
+        this.accountIds = accountIds;
+        this.balanceCache = balanceCache;
+        this.ledgerWriter = ledgerWriter;
+        this.shardedAccounts = shardedAccounts;
+        this.maxLegs = maxLegs;
     }
 
+    public static class Leg {
+        public String owner;
+        public Money amount;
+
+        public Leg() {}
+
+        public Leg(String owner, Money amount) {
+            this.owner = owner;
+            this.amount = amount;
+        }
+    }
+
+    public static class MultiLegTransfer {
+        public List<Leg> debits;
+        public List<Leg> credits;
+    }
+
+    // Each transfer mode has a BigDecimal overload for existing callers; it converts exactly and delegates
+
     // Programmatic transaction using PlatformTransactionManager
+    @RetryableTransaction
+    @StripeLocked
     public void transferWithTxManager(String fromOwner, String toOwner, BigDecimal amount, boolean failMidway) {
+        transferWithTxManager(fromOwner, toOwner, Money.of(amount), failMidway);
+    }
+
+    @RetryableTransaction
+    @StripeLocked
+    public void transferWithTxManager(String fromOwner, String toOwner, Money amount, boolean failMidway) {
         validateAmount(amount);
         DefaultTransactionDefinition def = new DefaultTransactionDefinition();
         def.setName("jdbcTransfer");
         def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
         TransactionStatus status = txManager.getTransaction(def);
         try {
-            debit(fromOwner, amount);
+            long fromId = debit(fromOwner, amount);
             if (failMidway) {
                 throw new RuntimeException("Simulated failure between debit and credit (txManager)");
             }
-            credit(toOwner, amount);
+            long toId = credit(toOwner, amount);
+            ledgerWriter.append(fromId, toId, amount);
+            txManager.commit(status);
+        } catch (RuntimeException ex) {
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
+            throw ex;
+        }
+    }
+
+    // Programmatic transaction with a guarded debit: the funds check is part of the UPDATE itself,
+    // so a transfer costs two statements and can never overdraw the sender
+    @RetryableTransaction
+    @StripeLocked
+    public void transferConditional(String fromOwner, String toOwner, BigDecimal amount, boolean failMidway) {
+        transferConditional(fromOwner, toOwner, Money.of(amount), failMidway);
+    }
+
+    @RetryableTransaction
+    @StripeLocked
+    public void transferConditional(String fromOwner, String toOwner, Money amount, boolean failMidway) {
+        validateAmount(amount);
+        DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+        def.setName("jdbcConditionalTransfer");
+        def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        TransactionStatus status = txManager.getTransaction(def);
+        try {
+            long fromId = debitIfCovered(fromOwner, amount);
+            if (failMidway) {
+                throw new RuntimeException("Simulated failure between debit and credit (conditional)");
+            }
+            long toId = credit(toOwner, amount);
+            ledgerWriter.append(fromId, toId, amount);
             txManager.commit(status);
         } catch (RuntimeException ex) {
-            txManager.rollback(status);
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
             throw ex;
         }
     }
 
     // Manual JDBC transaction using Connection commit/rollback directly
+    @RetryableTransaction
+    @StripeLocked
     public void transferManualConnection(String fromOwner, String toOwner, BigDecimal amount, boolean failMidway) {
+        transferManualConnection(fromOwner, toOwner, Money.of(amount), failMidway);
+    }
+
+    @RetryableTransaction
+    @StripeLocked
+    public void transferManualConnection(String fromOwner, String toOwner, Money amount, boolean failMidway) {
         validateAmount(amount);
         try (Connection conn = dataSource.getConnection()) {
             boolean originalAutoCommit = conn.getAutoCommit();
             conn.setAutoCommit(false);
             try {
-                try (PreparedStatement ps = conn.prepareStatement("UPDATE accounts SET balance = balance - ? WHERE owner = ?")) {
-                    ps.setBigDecimal(1, amount);
-                    ps.setString(2, fromOwner);
-                    int updated = ps.executeUpdate();
-                    if (updated != 1) throw new IllegalArgumentException("Sender not found: " + fromOwner);
-                }
+                long fromId = updateById(conn, "UPDATE accounts SET balance = balance - ?, version = version + 1 WHERE id = ?", amount, fromOwner);
+                if (fromId == 0) throw new IllegalArgumentException("Sender not found: " + fromOwner);
+                shardedAccounts.requireUnsharded(fromId, fromOwner); // rolls the debit back
                 if (failMidway) {
                     throw new RuntimeException("Simulated failure between debit and credit (manual)");
                 }
-                try (PreparedStatement ps = conn.prepareStatement("UPDATE accounts SET balance = balance + ? WHERE owner = ?")) {
-                    ps.setBigDecimal(1, amount);
-                    ps.setString(2, toOwner);
-                    int updated = ps.executeUpdate();
-                    if (updated != 1) throw new IllegalArgumentException("Recipient not found: " + toOwner);
-                }
+                long toId = updateById(conn, "UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE id = ?", amount, toOwner);
+                if (toId == 0) throw new IllegalArgumentException("Recipient not found: " + toOwner);
+                ledgerWriter.append(conn, fromId, toId, amount);
                 conn.commit();
+                balanceCache.evict(fromOwner, toOwner);
             } catch (RuntimeException | SQLException ex) {
                 try { conn.rollback(); } catch (SQLException ignore) {}
                 throw (ex instanceof RuntimeException) ? (RuntimeException) ex : new RuntimeException(ex);
@@ -86,31 +177,210 @@ public class JdbcTransferService {
     }
 
     // No transaction: demonstrates partial update on failure
+    @StripeLocked
     public void transferWithoutTransaction(String fromOwner, String toOwner, BigDecimal amount, boolean failMidway) {
+        transferWithoutTransaction(fromOwner, toOwner, Money.of(amount), failMidway);
+    }
+
+    @StripeLocked
+    public void transferWithoutTransaction(String fromOwner, String toOwner, Money amount, boolean failMidway) {
         validateAmount(amount);
-        debit(fromOwner, amount); // autocommit true by default
+        long fromId = debit(fromOwner, amount); // autocommit true by default
         if (failMidway) {
             throw new RuntimeException("Simulated failure without transaction");
         }
-        credit(toOwner, amount);
+        long toId = credit(toOwner, amount);
+        ledgerWriter.append(fromId, toId, amount);
+    }
+
+    /**
+     * Applies debits and credits that net to zero in one transaction: every involved row is locked with
+     * a single {@code SELECT ... ORDER BY id FOR UPDATE}, funds are checked against the locked balances,
+     * and the per-account net changes go out as one JDBC batch. Each leg gets its own ledger row under a
+     * shared transfer id, which is returned.
+     */
+    @RetryableTransaction
+    public String transferMultiLeg(List<Leg> debits, List<Leg> credits) {
+        int legCount = validateLegs(debits, credits);
+
+        // Net change per account, in id order; an account may appear on both sides
+        TreeMap<Long, Long> deltas = new TreeMap<>();
+        Map<Long, String> owners = new HashMap<>();
+        long[] legIds = new long[legCount];
+        long[] legAmounts = new long[legCount];
+        int leg = 0;
+        for (Leg d : debits) {
+            legIds[leg] = idOf(d.owner);
+            shardedAccounts.requireUnsharded(legIds[leg], d.owner);
+            legAmounts[leg] = -d.amount.minor();
+            deltas.merge(legIds[leg], legAmounts[leg], Money::addExact);
+            owners.put(legIds[leg], d.owner);
+            leg++;
+        }
+        for (Leg c : credits) {
+            legIds[leg] = idOf(c.owner);
+            legAmounts[leg] = c.amount.minor();
+            deltas.merge(legIds[leg], legAmounts[leg], Money::addExact);
+            owners.put(legIds[leg], c.owner);
+            leg++;
+        }
+
+        DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+        def.setName("jdbcMultiLegTransfer");
+        def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        TransactionStatus status = txManager.getTransaction(def);
+        try {
+            Map<Long, Long> balances = lockBalances(deltas);
+            List<Map.Entry<Long, Long>> changes = new ArrayList<>(deltas.size());
+            for (Map.Entry<Long, Long> e : deltas.entrySet()) {
+                Long balance = balances.get(e.getKey());
+                String owner = owners.get(e.getKey());
+                if (balance == null) {
+                    accountIds.invalidate(owner);
+                    throw new IllegalArgumentException("Account not found: " + owner);
+                }
+                long delta = e.getValue();
+                if (delta < 0 && balance + delta < 0) {
+                    throw new IllegalArgumentException("Insufficient funds: " + owner);
+                }
+                // A credit that would overflow the column fails here rather than in the UPDATE
+                if (delta > 0) Money.addExact(balance, delta);
+                if (delta != 0) changes.add(e);
+            }
+            jdbcTemplate.batchUpdate("UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE id = ?",
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            ps.setLong(1, changes.get(i).getValue());
+                            ps.setLong(2, changes.get(i).getKey());
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return changes.size();
+                        }
+                    });
+            String transferId = ledgerWriter.appendLegs(legIds, legAmounts);
+            balanceCache.evictAfterCommit(owners.values().toArray(new String[0]));
+            txManager.commit(status);
+            return transferId;
+        } catch (RuntimeException ex) {
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
+            throw ex;
+        }
     }
 
     public BigDecimal balanceOf(String owner) {
+        Long id = accountIds.findId(owner);
+        if (id != null && shardedAccounts.bucketsOf(id) > 0) {
+            return Money.ofMinor(shardedAccounts.balanceOf(id)).toBigDecimal();
+        }
         return jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE owner = ?",
-                (rs, rowNum) -> rs.getBigDecimal(1), owner);
+                (rs, rowNum) -> Money.ofMinor(rs.getLong(1)).toBigDecimal(), owner);
     }
 
-    private void debit(String owner, BigDecimal amount) {
-        int updated = jdbcTemplate.update("UPDATE accounts SET balance = balance - ? WHERE owner = ?", amount, owner);
+    // debit, debitIfCovered and credit return the id of the account they updated
+    private long debit(String owner, Money amount) {
+        long[] used = new long[1];
+        int updated = accountIds.update(owner, id -> {
+            used[0] = id;
+            shardedAccounts.requireUnsharded(id, owner);
+            return jdbcTemplate.update("UPDATE accounts SET balance = balance - ?, version = version + 1 WHERE id = ?", amount.minor(), id);
+        });
         if (updated != 1) throw new IllegalArgumentException("Account not found: " + owner);
+        balanceCache.evictAfterCommit(owner);
+        return used[0];
+    }
+
+    private long debitIfCovered(String owner, Money amount) {
+        long[] used = new long[1];
+        int updated = accountIds.update(owner, id -> {
+            used[0] = id;
+            shardedAccounts.requireUnsharded(id, owner);
+            return jdbcTemplate.update("UPDATE accounts SET balance = balance - ?, version = version + 1 WHERE id = ? AND balance >= ?",
+                    amount.minor(), id, amount.minor());
+        });
+        if (updated == 1) {
+            balanceCache.evictAfterCommit(owner);
+            return used[0];
+        }
+        // A zero count already re-resolved the id, so this only tells the two causes apart
+        if (accountIds.findId(owner) == null) throw new IllegalArgumentException("Account not found: " + owner);
+        throw new IllegalArgumentException("Insufficient funds");
     }
 
-    private void credit(String owner, BigDecimal amount) {
-        int updated = jdbcTemplate.update("UPDATE accounts SET balance = balance + ? WHERE owner = ?", amount, owner);
+    private long credit(String owner, Money amount) {
+        long[] used = new long[1];
+        int updated = accountIds.update(owner, id -> {
+            used[0] = id;
+            return jdbcTemplate.update("UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE id = ?", amount.minor(), id);
+        });
         if (updated != 1) throw new IllegalArgumentException("Account not found: " + owner);
+        balanceCache.evictAfterCommit(owner);
+        return used[0];
+    }
+
+    // Returns the id of the updated account, or 0 if no account matched. Id lookups stay on conn: the
+    // manual path already holds a pooled connection and must not wait for a second one
+    private long updateById(Connection conn, String sql, Money amount, String owner) throws SQLException {
+        long[] used = new long[1];
+        int updated = accountIds.update(conn, owner, id -> {
+            used[0] = id;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, amount.minor());
+                ps.setLong(2, id);
+                return ps.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        return updated == 1 ? used[0] : 0;
+    }
+
+    // Returns the number of legs
+    private int validateLegs(List<Leg> debits, List<Leg> credits) {
+        if (debits == null || debits.isEmpty() || credits == null || credits.isEmpty()) {
+            throw new IllegalArgumentException("At least one debit and one credit are required");
+        }
+        int legs = debits.size() + credits.size();
+        if (legs > maxLegs) throw new IllegalArgumentException("Too many legs: " + legs + " (max " + maxLegs + ")");
+        long debited = 0;
+        long credited = 0;
+        for (Leg d : debits) {
+            validateLeg(d);
+            debited = Money.addExact(debited, d.amount.minor());
+        }
+        for (Leg c : credits) {
+            validateLeg(c);
+            credited = Money.addExact(credited, c.amount.minor());
+        }
+        if (debited != credited) {
+            throw new IllegalArgumentException("Legs do not net to zero: debits " + Money.format(debited)
+                    + ", credits " + Money.format(credited));
+        }
+        return legs;
+    }
+
+    private void validateLeg(Leg leg) {
+        if (leg == null || leg.owner == null) throw new IllegalArgumentException("Every leg needs an owner");
+        validateAmount(leg.amount);
+    }
+
+    private long idOf(String owner) {
+        Long id = accountIds.findId(owner);
+        if (id == null) throw new IllegalArgumentException("Account not found: " + owner);
+        return id;
+    }
+
+    private Map<Long, Long> lockBalances(TreeMap<Long, Long> deltas) {
+        String placeholders = String.join(",", Collections.nCopies(deltas.size(), "?"));
+        Map<Long, Long> balances = new HashMap<>();
+        jdbcTemplate.query("SELECT id, balance FROM accounts WHERE id IN (" + placeholders + ") ORDER BY id FOR UPDATE",
+                rs -> { balances.put(rs.getLong(1), rs.getLong(2)); }, deltas.keySet().toArray());
+        return balances;
     }
 
-    private void validateAmount(BigDecimal amount) {
+    private void validateAmount(Money amount) {
         if (amount == null || amount.signum() <= 0) {
             throw new IllegalArgumentException("Amount must be positive");
         }
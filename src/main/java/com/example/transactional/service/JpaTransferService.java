@@ -2,6 +2,11 @@ package com.example.transactional.service;
 
 import com.example.transactional.account.Account;
 import com.example.transactional.account.AccountRepository;
+import com.example.transactional.account.BalanceCache;
+import com.example.transactional.account.ShardedAccounts;
+import com.example.transactional.ledger.LedgerWriter;
+import com.example.transactional.money.Money;
+import com.example.transactional.retry.RetryableTransaction;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -11,16 +16,33 @@ import java.math.BigDecimal;
 public class JpaTransferService {
 
     private final AccountRepository accountRepository;
+    private final BalanceCache balanceCache;
+    private final LedgerWriter ledgerWriter;
+    private final ShardedAccounts shardedAccounts;
 
-    public JpaTransferService(AccountRepository accountRepository) {
+    public JpaTransferService(AccountRepository accountRepository, BalanceCache balanceCache, LedgerWriter ledgerWriter,
+                              ShardedAccounts shardedAccounts) {
         this.accountRepository = accountRepository;
+        this.balanceCache = balanceCache;
+        this.ledgerWriter = ledgerWriter;
+        this.shardedAccounts = shardedAccounts;
     }
 
     @Transactional
+    @RetryableTransaction
+    @StripeLocked
     public void transfer(String fromOwner, String toOwner, BigDecimal amount, boolean failMidway) {
+        transfer(fromOwner, toOwner, Money.of(amount), failMidway);
+    }
+
+    @Transactional
+    @RetryableTransaction
+    @StripeLocked
+    public void transfer(String fromOwner, String toOwner, Money amount, boolean failMidway) {
         validateAmount(amount);
         Account from = accountRepository.findByOwner(fromOwner)
                 .orElseThrow(() -> new IllegalArgumentException("Sender not found: " + fromOwner));
+        shardedAccounts.requireUnsharded(from.getId(), fromOwner);
         Account to = accountRepository.findByOwner(toOwner)
                 .orElseThrow(() -> new IllegalArgumentException("Recipient not found: " + toOwner));
 
@@ -28,7 +50,7 @@ public class JpaTransferService {
             throw new IllegalArgumentException("Insufficient funds");
         }
 
-        from.setBalance(from.getBalance().subtract(amount));
+        from.setBalance(from.getBalance().minus(amount));
         accountRepository.save(from);
 
         if (failMidway) {
@@ -36,18 +58,23 @@ public class JpaTransferService {
             throw new RuntimeException("Simulated failure between operations");
         }
 
-        to.setBalance(to.getBalance().add(amount));
+        to.setBalance(to.getBalance().plus(amount));
         accountRepository.save(to);
+        // JDBC insert on the JPA transaction's connection, so it commits or rolls back with the entities
+        ledgerWriter.append(from.getId(), to.getId(), amount);
+        balanceCache.evictAfterCommit(fromOwner, toOwner);
     }
 
     @Transactional(readOnly = true)
     public BigDecimal balanceOf(String owner) {
         return accountRepository.findByOwner(owner)
-                .map(Account::getBalance)
+                .map(account -> shardedAccounts.bucketsOf(account.getId()) == 0
+                        ? account.getBalance().toBigDecimal()
+                        : Money.ofMinor(shardedAccounts.balanceOf(account.getId())).toBigDecimal())
                 .orElseThrow(() -> new IllegalArgumentException("Account not found: " + owner));
     }
 
-    private void validateAmount(BigDecimal amount) {
+    private void validateAmount(Money amount) {
         if (amount == null || amount.signum() <= 0) {
             throw new IllegalArgumentException("Amount must be positive");
         }
@@ -0,0 +1,171 @@
+package com.example.transactional.service;
+
+import com.example.transactional.account.BalanceCache;
+import com.example.transactional.account.ShardedAccounts;
+import com.example.transactional.ledger.LedgerWriter;
+import com.example.transactional.metrics.InstrumentedTransactionManager;
+import com.example.transactional.money.Money;
+import com.example.transactional.metrics.StatsSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transfer without row locks: both accounts are read with their version, and each write is a
+ * conditional {@code UPDATE ... WHERE id = ? AND version = ?}. An update count of zero means another
+ * writer got there first; the whole transaction is rolled back and retried with jittered backoff
+ * until the attempt budget is spent.
+ */
+@Service
+public class OptimisticTransferService implements StatsSource {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager txManager;
+    private final BalanceCache balanceCache;
+    private final LedgerWriter ledgerWriter;
+    private final ShardedAccounts shardedAccounts;
+    private final Backoff backoff;
+
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public OptimisticTransferService(JdbcTemplate jdbcTemplate,
+                                     @Qualifier("jdbcTxManager") PlatformTransactionManager txManager,
+                                     BalanceCache balanceCache,
+                                     LedgerWriter ledgerWriter,
+                                     ShardedAccounts shardedAccounts,
+                                     @Value("${transfer.optimistic.max-attempts:8}") int maxAttempts,
+                                     @Value("${transfer.optimistic.initial-backoff-ms:2}") long initialBackoffMillis,
+                                     @Value("${transfer.optimistic.max-backoff-ms:50}") long maxBackoffMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.txManager = txManager;
+        this.balanceCache = balanceCache;
+        this.ledgerWriter = ledgerWriter;
+        this.shardedAccounts = shardedAccounts;
+        this.backoff = new Backoff(maxAttempts, initialBackoffMillis, maxBackoffMillis);
+    }
+
+    private static class Snapshot {
+        final long id;
+        final long balance;
+        final long version;
+        Snapshot(long id, long balance, long version) {
+            this.id = id;
+            this.balance = balance;
+            this.version = version;
+        }
+    }
+
+    public void transfer(String fromOwner, String toOwner, BigDecimal amount, boolean failMidway) {
+        transfer(fromOwner, toOwner, Money.of(amount), failMidway);
+    }
+
+    public void transfer(String fromOwner, String toOwner, Money amount, boolean failMidway) {
+        validateAmount(amount);
+        for (int attempt = 1; ; attempt++) {
+            attempts.increment();
+            try {
+                transferOnce(fromOwner, toOwner, amount, failMidway);
+                transfers.increment();
+                return;
+            } catch (OptimisticLockingFailureException ex) {
+                conflicts.increment();
+                if (attempt >= backoff.maxAttempts()) {
+                    exhausted.increment();
+                    throw ex;
+                }
+                retries.increment();
+                backoff.pause(attempt);
+            }
+        }
+    }
+
+    private void transferOnce(String fromOwner, String toOwner, Money amount, boolean failMidway) {
+        DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+        def.setName("jdbcOptimisticTransfer");
+        def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        TransactionStatus status = txManager.getTransaction(def);
+        try {
+            Snapshot from = read(fromOwner, "Sender");
+            shardedAccounts.requireUnsharded(from.id, fromOwner);
+            Snapshot to = read(toOwner, "Recipient");
+
+            if (from.balance < amount.minor()) {
+                throw new IllegalArgumentException("Insufficient funds");
+            }
+            // Moving money within one account changes nothing; writing it twice would conflict with itself
+            if (from.id != to.id) {
+                write(from, from.balance - amount.minor(), fromOwner);
+                if (failMidway) {
+                    throw new RuntimeException("Simulated failure between debit and credit (optimistic)");
+                }
+                write(to, Money.addExact(to.balance, amount.minor()), toOwner);
+                ledgerWriter.append(from.id, to.id, amount);
+            }
+            balanceCache.evictAfterCommit(fromOwner, toOwner);
+            txManager.commit(status);
+        } catch (RuntimeException ex) {
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
+            throw ex;
+        }
+    }
+
+    private Snapshot read(String owner, String role) {
+        try {
+            return jdbcTemplate.queryForObject("SELECT id, balance, version FROM accounts WHERE owner = ?",
+                    (rs, rowNum) -> new Snapshot(rs.getLong(1), rs.getLong(2), rs.getLong(3)), owner);
+        } catch (EmptyResultDataAccessException e) {
+            throw new IllegalArgumentException(role + " not found: " + owner);
+        }
+    }
+
+    private void write(Snapshot snapshot, long newBalance, String owner) {
+        int updated = jdbcTemplate.update("UPDATE accounts SET balance = ?, version = version + 1 WHERE id = ? AND version = ?",
+                newBalance, snapshot.id, snapshot.version);
+        if (updated != 1) {
+            throw new OptimisticLockingFailureException("Account " + owner + " was modified concurrently");
+        }
+    }
+
+    private void validateAmount(Money amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "optimistic";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long attemptCount = attempts.sum();
+        long transferCount = transfers.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxAttempts", backoff.maxAttempts());
+        stats.put("transfers", transferCount);
+        stats.put("attempts", attemptCount);
+        stats.put("conflicts", conflicts.sum());
+        stats.put("retries", retries.sum());
+        stats.put("exhausted", exhausted.sum());
+        stats.put("conflictRate", attemptCount == 0 ? 0.0 : (double) conflicts.sum() / attemptCount);
+        stats.put("retriesPerTransfer", transferCount == 0 ? 0.0 : (double) retries.sum() / transferCount);
+        return stats;
+    }
+}
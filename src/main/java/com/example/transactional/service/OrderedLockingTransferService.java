@@ -0,0 +1,169 @@
+package com.example.transactional.service;
+
+import com.example.transactional.account.AccountIdCache;
+import com.example.transactional.account.BalanceCache;
+import com.example.transactional.account.ShardedAccounts;
+import com.example.transactional.ledger.LedgerWriter;
+import com.example.transactional.metrics.InstrumentedTransactionManager;
+import com.example.transactional.metrics.LatencyHistogram;
+import com.example.transactional.metrics.StatsSource;
+import com.example.transactional.money.Money;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transfer that locks both account rows with SELECT ... FOR UPDATE before touching them.
+ * Rows are always locked in ascending id order, so two transfers over the same pair in
+ * opposite directions queue behind each other instead of deadlocking. Lock timeouts and
+ * deadlock-loser errors are retried with bounded, jittered backoff.
+ */
+@Service
+public class OrderedLockingTransferService implements StatsSource {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager txManager;
+    private final BalanceCache balanceCache;
+    private final LedgerWriter ledgerWriter;
+    private final AccountIdCache accountIds;
+    private final ShardedAccounts shardedAccounts;
+    private final Backoff backoff;
+
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder lockFailures = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+
+    public OrderedLockingTransferService(JdbcTemplate jdbcTemplate,
+                                         @Qualifier("jdbcTxManager") PlatformTransactionManager txManager,
+                                         BalanceCache balanceCache,
+                                         LedgerWriter ledgerWriter,
+                                         AccountIdCache accountIds,
+                                         ShardedAccounts shardedAccounts,
+                                         @Value("${transfer.locking.max-attempts:5}") int maxAttempts,
+                                         @Value("${transfer.locking.initial-backoff-ms:10}") long initialBackoffMillis,
+                                         @Value("${transfer.locking.max-backoff-ms:200}") long maxBackoffMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.txManager = txManager;
+        this.balanceCache = balanceCache;
+        this.ledgerWriter = ledgerWriter;
+        this.accountIds = accountIds;
+        this.shardedAccounts = shardedAccounts;
+        this.backoff = new Backoff(maxAttempts, initialBackoffMillis, maxBackoffMillis);
+    }
+
+    public void transfer(String fromOwner, String toOwner, BigDecimal amount, boolean failMidway) {
+        transfer(fromOwner, toOwner, Money.of(amount), failMidway);
+    }
+
+    public void transfer(String fromOwner, String toOwner, Money amount, boolean failMidway) {
+        validateAmount(amount);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transferOnce(fromOwner, toOwner, amount, failMidway);
+                transfers.increment();
+                return;
+            } catch (PessimisticLockingFailureException ex) {
+                lockFailures.increment();
+                if (attempt >= backoff.maxAttempts()) {
+                    exhausted.increment();
+                    throw ex;
+                }
+                retries.increment();
+                backoff.pause(attempt);
+            }
+        }
+    }
+
+    private void transferOnce(String fromOwner, String toOwner, Money amount, boolean failMidway) {
+        DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+        def.setName("jdbcOrderedLockingTransfer");
+        def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        TransactionStatus status = txManager.getTransaction(def);
+        try {
+            long fromId = idOf(fromOwner, "Sender");
+            shardedAccounts.requireUnsharded(fromId, fromOwner);
+            long toId = idOf(toOwner, "Recipient");
+
+            // Global lock order: lower id first, regardless of transfer direction
+            long fromBalance;
+            if (fromId <= toId) {
+                fromBalance = lockBalance(fromId, fromOwner);
+                if (toId != fromId) lockBalance(toId, toOwner);
+            } else {
+                lockBalance(toId, toOwner);
+                fromBalance = lockBalance(fromId, fromOwner);
+            }
+
+            if (fromBalance < amount.minor()) {
+                throw new IllegalArgumentException("Insufficient funds");
+            }
+            jdbcTemplate.update("UPDATE accounts SET balance = balance - ?, version = version + 1 WHERE id = ?", amount.minor(), fromId);
+            if (failMidway) {
+                throw new RuntimeException("Simulated failure between debit and credit (ordered locking)");
+            }
+            jdbcTemplate.update("UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE id = ?", amount.minor(), toId);
+            ledgerWriter.append(fromId, toId, amount);
+            balanceCache.evictAfterCommit(fromOwner, toOwner);
+            txManager.commit(status);
+        } catch (RuntimeException ex) {
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
+            throw ex;
+        }
+    }
+
+    private long idOf(String owner, String role) {
+        Long id = accountIds.findId(owner);
+        if (id == null) throw new IllegalArgumentException(role + " not found: " + owner);
+        return id;
+    }
+
+    private long lockBalance(long id, String owner) {
+        long start = System.nanoTime();
+        List<Long> balance = jdbcTemplate.queryForList("SELECT balance FROM accounts WHERE id = ? FOR UPDATE", Long.class, id);
+        // Row lock wait plus one round trip; failed acquisitions are counted under lockFailures instead
+        lockWait.record(System.nanoTime() - start);
+        if (balance.isEmpty()) {
+            // Stale cached id: drop it so the next attempt resolves the owner again
+            accountIds.invalidate(owner);
+            throw new IllegalArgumentException("Account not found: " + owner);
+        }
+        return balance.get(0);
+    }
+
+    private void validateAmount(Money amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "orderedLocking";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxAttempts", backoff.maxAttempts());
+        stats.put("transfers", transfers.sum());
+        stats.put("lockFailures", lockFailures.sum());
+        stats.put("retries", retries.sum());
+        stats.put("exhausted", exhausted.sum());
+        stats.put("lockWait", lockWait.snapshot());
+        return stats;
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.transactional.service;
+
+import com.example.transactional.account.AccountIdCache;
+import com.example.transactional.account.BalanceCache;
+import com.example.transactional.account.ShardedAccounts;
+import com.example.transactional.ledger.LedgerWriter;
+import com.example.transactional.metrics.InstrumentedTransactionManager;
+import com.example.transactional.metrics.StatsSource;
+import com.example.transactional.money.Money;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transfers that understand sharded accounts. A sharded account keeps its balance in K
+ * {@code account_buckets} rows, so a hot recipient is no longer one row lock. A credit adds to one
+ * random bucket. A debit takes the whole amount from one bucket that covers it, probing from a random
+ * bucket. If the probes miss, it falls back to a consolidating sweep: every row of the account is
+ * locked, the debit is checked against the total, and the remainder is spread evenly over the buckets.
+ * {@link #rebalanceSkewed()} runs the same sweep in the background when a bucket drops below half its
+ * share. Unsharded accounts on either side are debited and credited on their account row.
+ *
+ * <p>The two sides are written in ascending account id order, and lock failures are retried with
+ * backoff ({@code transfer.locking.*}), because a sweep locks many rows at once.
+ */
+@Service
+public class ShardedTransferService implements StatsSource {
+
+    private static final int MAX_BUCKETS = 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager txManager;
+    private final AccountIdCache accountIds;
+    private final BalanceCache balanceCache;
+    private final LedgerWriter ledgerWriter;
+    private final ShardedAccounts shardedAccounts;
+    private final int defaultBuckets;
+    private final int debitProbes;
+    private final boolean rebalanceEnabled;
+    private final Backoff backoff;
+
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder bucketCredits = new LongAdder();
+    private final LongAdder bucketDebits = new LongAdder();
+    private final LongAdder probeMisses = new LongAdder();
+    private final LongAdder consolidations = new LongAdder();
+    private final LongAdder rebalances = new LongAdder();
+    private final LongAdder lockFailures = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    public ShardedTransferService(JdbcTemplate jdbcTemplate,
+                                  @Qualifier("jdbcTxManager") PlatformTransactionManager txManager,
+                                  AccountIdCache accountIds,
+                                  BalanceCache balanceCache,
+                                  LedgerWriter ledgerWriter,
+                                  ShardedAccounts shardedAccounts,
+                                  @Value("${accounts.sharding.buckets:16}") int defaultBuckets,
+                                  @Value("${accounts.sharding.debit-probes:3}") int debitProbes,
+                                  @Value("${accounts.sharding.rebalance-enabled:false}") boolean rebalanceEnabled,
+                                  @Value("${transfer.locking.max-attempts:5}") int maxAttempts,
+                                  @Value("${transfer.locking.initial-backoff-ms:10}") long initialBackoffMillis,
+                                  @Value("${transfer.locking.max-backoff-ms:200}") long maxBackoffMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.txManager = txManager;
+        this.accountIds = accountIds;
+        this.balanceCache = balanceCache;
+        this.ledgerWriter = ledgerWriter;
+        this.shardedAccounts = shardedAccounts;
+        this.defaultBuckets = defaultBuckets;
+        this.debitProbes = debitProbes;
+        this.rebalanceEnabled = rebalanceEnabled;
+        this.backoff = new Backoff(maxAttempts, initialBackoffMillis, maxBackoffMillis);
+    }
+
+    public int getDefaultBuckets() {
+        return defaultBuckets;
+    }
+
+    /**
+     * Splits {@code owner}'s balance evenly over {@code buckets} new bucket rows and zeroes the account
+     * row. Sharding is one-way. Debit a sharded account through {@link #transfer} only: the other paths
+     * see only the account row and reject it ({@link ShardedAccounts#requireUnsharded}). Crediting it
+     * through them is safe.
+     */
+    public void shard(String owner, int buckets) {
+        if (buckets < 1 || buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Bucket count must be between 1 and " + MAX_BUCKETS);
+        }
+        DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+        def.setName("jdbcShardAccount");
+        def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        TransactionStatus status = txManager.getTransaction(def);
+        long id;
+        try {
+            id = idOf(owner, "Account");
+            if (shardedAccounts.bucketsOf(id) > 0) throw new IllegalArgumentException("Account already sharded: " + owner);
+            List<Long> balance = jdbcTemplate.queryForList("SELECT balance FROM accounts WHERE id = ? FOR UPDATE", Long.class, id);
+            if (balance.isEmpty()) throw new IllegalArgumentException("Account not found: " + owner);
+            long[] shares = spread(balance.get(0), buckets);
+            jdbcTemplate.batchUpdate("INSERT INTO account_buckets(account_id, bucket, balance) VALUES (?, ?, ?)",
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            ps.setLong(1, id);
+                            ps.setInt(2, i);
+                            ps.setLong(3, shares[i]);
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return buckets;
+                        }
+                    });
+            jdbcTemplate.update("UPDATE accounts SET balance = 0, version = version + 1 WHERE id = ?", id);
+            balanceCache.evictAfterCommit(owner);
+            txManager.commit(status);
+        } catch (RuntimeException ex) {
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
+            throw ex;
+        }
+        shardedAccounts.register(id, buckets);
+    }
+
+    public void transfer(String fromOwner, String toOwner, BigDecimal amount, boolean failMidway) {
+        transfer(fromOwner, toOwner, Money.of(amount), failMidway);
+    }
+
+    public void transfer(String fromOwner, String toOwner, Money amount, boolean failMidway) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transferOnce(fromOwner, toOwner, amount.minor(), failMidway);
+                transfers.increment();
+                return;
+            } catch (PessimisticLockingFailureException ex) {
+                lockFailures.increment();
+                if (attempt >= backoff.maxAttempts()) throw ex;
+                retries.increment();
+                backoff.pause(attempt);
+            }
+        }
+    }
+
+    private void transferOnce(String fromOwner, String toOwner, long amount, boolean failMidway) {
+        DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+        def.setName("jdbcShardedTransfer");
+        def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        TransactionStatus status = txManager.getTransaction(def);
+        try {
+            long fromId = idOf(fromOwner, "Sender");
+            long toId = idOf(toOwner, "Recipient");
+            if (fromId <= toId) {
+                debit(fromId, amount);
+                if (failMidway) throw new RuntimeException("Simulated failure between debit and credit (sharded)");
+                credit(toId, amount);
+            } else {
+                credit(toId, amount);
+                if (failMidway) throw new RuntimeException("Simulated failure between credit and debit (sharded)");
+                debit(fromId, amount);
+            }
+            ledgerWriter.append(fromId, toId, Money.ofMinor(amount));
+            balanceCache.evictAfterCommit(fromOwner, toOwner);
+            txManager.commit(status);
+        } catch (RuntimeException ex) {
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
+            throw ex;
+        }
+    }
+
+    private void debit(long id, long amount) {
+        int buckets = shardedAccounts.bucketsOf(id);
+        if (buckets == 0) {
+            int updated = jdbcTemplate.update(
+                    "UPDATE accounts SET balance = balance - ?, version = version + 1 WHERE id = ? AND balance >= ?", amount, id, amount);
+            if (updated == 0) throw new IllegalArgumentException("Insufficient funds");
+            return;
+        }
+        // Pick a covering bucket without locking, then re-check under the row lock; a lost race just probes again
+        for (int probe = 0; probe < debitProbes; probe++) {
+            int start = ThreadLocalRandom.current().nextInt(buckets);
+            int updated = jdbcTemplate.update(
+                    "UPDATE account_buckets SET balance = balance - ? WHERE id = ("
+                            + "SELECT id FROM account_buckets WHERE account_id = ? AND balance >= ? ORDER BY MOD(bucket + ?, ?) LIMIT 1"
+                            + ") AND balance >= ?",
+                    amount, id, amount, buckets - start, buckets, amount);
+            if (updated == 1) {
+                bucketDebits.increment();
+                return;
+            }
+            probeMisses.increment();
+        }
+        consolidations.increment();
+        consolidate(id, amount);
+    }
+
+    private void credit(long id, long amount) {
+        int buckets = shardedAccounts.bucketsOf(id);
+        int updated;
+        if (buckets == 0) {
+            updated = jdbcTemplate.update("UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE id = ?", amount, id);
+        } else {
+            updated = jdbcTemplate.update("UPDATE account_buckets SET balance = balance + ? WHERE account_id = ? AND bucket = ?",
+                    amount, id, ThreadLocalRandom.current().nextInt(buckets));
+            bucketCredits.increment();
+        }
+        if (updated != 1) throw new IllegalArgumentException("Account not found: " + id);
+    }
+
+    /**
+     * Locks the account row and all its buckets, takes {@code debit} from the total and spreads the rest
+     * evenly over the buckets. Runs on the caller's transaction.
+     */
+    private void consolidate(long id, long debit) {
+        List<Long> main = jdbcTemplate.queryForList("SELECT balance FROM accounts WHERE id = ? FOR UPDATE", Long.class, id);
+        if (main.isEmpty()) throw new IllegalArgumentException("Account not found: " + id);
+        List<Long> buckets = jdbcTemplate.queryForList(
+                "SELECT balance FROM account_buckets WHERE account_id = ? ORDER BY bucket FOR UPDATE", Long.class, id);
+        long total = main.get(0);
+        for (long b : buckets) total = Money.addExact(total, b);
+        if (total < debit) throw new IllegalArgumentException("Insufficient funds");
+        long[] shares = spread(total - debit, buckets.size());
+        jdbcTemplate.batchUpdate("UPDATE account_buckets SET balance = ? WHERE account_id = ? AND bucket = ?",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, shares[i]);
+                        ps.setLong(2, id);
+                        ps.setInt(3, i);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return shares.length;
+                    }
+                });
+        if (main.get(0) != 0) {
+            jdbcTemplate.update("UPDATE accounts SET balance = 0, version = version + 1 WHERE id = ?", id);
+        }
+    }
+
+    /**
+     * Evens out sharded accounts whose account row holds money (credited through another path) or whose
+     * poorest bucket is below half its share, so debits keep finding a covering bucket. The balance is
+     * unchanged, so no cache eviction is needed.
+     */
+    public void rebalanceSkewed() {
+        for (Map.Entry<Long, Integer> e : new ArrayList<>(shardedAccounts.all().entrySet())) {
+            long id = e.getKey();
+            int buckets = e.getValue();
+            Boolean skewed = jdbcTemplate.query(
+                    "SELECT a.balance, MIN(b.balance), SUM(b.balance) FROM accounts a JOIN account_buckets b ON b.account_id = a.id "
+                            + "WHERE a.id = ? GROUP BY a.balance",
+                    rs -> rs.next() && (rs.getLong(1) != 0 || rs.getLong(2) * 2 * buckets < rs.getLong(3)), id);
+            if (Boolean.TRUE.equals(skewed)) {
+                try {
+                    rebalance(id);
+                } catch (PessimisticLockingFailureException busy) {
+                    lockFailures.increment(); // try again next round
+                }
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "${accounts.sharding.rebalance-interval-ms:5000}",
+               fixedDelayString = "${accounts.sharding.rebalance-interval-ms:5000}")
+    public void scheduledRebalance() {
+        if (rebalanceEnabled) rebalanceSkewed();
+    }
+
+    void rebalance(long id) {
+        DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+        def.setName("jdbcRebalanceBuckets");
+        def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        TransactionStatus status = txManager.getTransaction(def);
+        try {
+            consolidate(id, 0);
+            txManager.commit(status);
+        } catch (RuntimeException ex) {
+            InstrumentedTransactionManager.rollback(txManager, status, ex);
+            throw ex;
+        }
+        rebalances.increment();
+    }
+
+    // Even split; the first (total % n) buckets get one extra minor unit
+    private static long[] spread(long total, int n) {
+        long[] shares = new long[n];
+        long each = total / n;
+        long rest = total % n;
+        for (int i = 0; i < n; i++) shares[i] = each + (i < rest ? 1 : 0);
+        return shares;
+    }
+
+    private long idOf(String owner, String role) {
+        Long id = accountIds.findId(owner);
+        if (id == null) throw new IllegalArgumentException(role + " not found: " + owner);
+        return id;
+    }
+
+    @Override
+    public String statsName() {
+        return "sharded";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shardedAccounts", shardedAccounts.all().size());
+        stats.put("transfers", transfers.sum());
+        stats.put("bucketCredits", bucketCredits.sum());
+        stats.put("bucketDebits", bucketDebits.sum());
+        stats.put("probeMisses", probeMisses.sum());
+        stats.put("consolidations", consolidations.sum());
+        stats.put("rebalances", rebalances.sum());
+        stats.put("lockFailures", lockFailures.sum());
+        stats.put("retries", retries.sum());
+        return stats;
+    }
+}
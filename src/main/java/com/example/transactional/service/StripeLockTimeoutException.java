@@ -0,0 +1,15 @@
+package com.example.transactional.service;
+
+import java.io.Serial;
+import java.util.concurrent.RejectedExecutionException;
+
+/** A transfer that waited longer than the striped-lock timeout for its accounts; the web layer answers 503. */
+public class StripeLockTimeoutException extends RejectedExecutionException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public StripeLockTimeoutException(String fromOwner, String toOwner, long timeoutMillis) {
+        super("Timed out after " + timeoutMillis + " ms waiting for the account locks of " + fromOwner + " -> " + toOwner);
+    }
+}
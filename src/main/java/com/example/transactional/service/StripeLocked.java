@@ -0,0 +1,19 @@
+package com.example.transactional.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a transfer whose first two parameters are the sender's and recipient's owners: with
+ * {@code transfer.striped-locks.enabled=true}, {@link StripedAccountLocks} holds both accounts' stripes
+ * around every call, whoever the caller is. The stripes are taken inside the retry interceptor and
+ * outside the transaction, so a transfer never holds a connection while it queues for a stripe.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface StripeLocked {
+}
@@ -0,0 +1,185 @@
+package com.example.transactional.service;
+
+import com.example.transactional.account.AccountIdCache;
+import com.example.transactional.metrics.LatencyHistogram;
+import com.example.transactional.metrics.StatsSource;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional in-process serialization of transfers per account, for single-node deployments. Account ids
+ * hash onto a fixed array of locks; a transfer takes the stripes of both accounts in ascending stripe
+ * order, so conflicting transfers queue in the JVM instead of in the database's lock manager and two
+ * transfers can never wait on each other's stripes. Disabled unless transfer.striped-locks.enabled=true.
+ *
+ * <p>The locks wrap every {@link StripeLocked} service method, ordered inside the retry interceptor and
+ * outside the transaction advisor, so direct callers of the services are serialized too. A stripe that
+ * is not free within {@code wait-timeout-ms} fails the transfer with {@link StripeLockTimeoutException},
+ * which the concurrency limits count as overload, rather than queuing it behind a hot account forever.
+ */
+@Aspect
+@Component
+@Order(1)
+public class StripedAccountLocks implements StatsSource {
+
+    private static final int[] NONE = {};
+
+    private final AccountIdCache accountIds;
+    private final boolean enabled;
+    private final long waitTimeoutMillis;
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLongArray contendedByStripe;
+    private final LatencyHistogram contendedWait = new LatencyHistogram();
+
+    public StripedAccountLocks(AccountIdCache accountIds,
+                               @Value("${transfer.striped-locks.enabled:false}") boolean enabled,
+                               @Value("${transfer.striped-locks.stripes:1024}") int stripes,
+                               @Value("${transfer.striped-locks.wait-timeout-ms:1000}") long waitTimeoutMillis) {
+        if (Integer.bitCount(stripes) != 1) throw new IllegalArgumentException("Stripe count must be a power of two");
+        this.accountIds = accountIds;
+        this.enabled = enabled;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) this.stripes[i] = new ReentrantLock();
+        this.mask = stripes - 1;
+        this.contendedByStripe = new AtomicLongArray(stripes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Around("@annotation(com.example.transactional.service.StripeLocked) && args(fromOwner, toOwner, ..)")
+    public Object locked(ProceedingJoinPoint call, String fromOwner, String toOwner) throws Throwable {
+        int[] held = lock(fromOwner, toOwner);
+        try {
+            return call.proceed();
+        } finally {
+            unlock(held);
+        }
+    }
+
+    /**
+     * Runs {@code transfer} holding the stripes of both accounts. Unknown owners are not locked; the
+     * transfer itself reports them.
+     */
+    public void run(String fromOwner, String toOwner, Runnable transfer) {
+        int[] held = lock(fromOwner, toOwner);
+        try {
+            transfer.run();
+        } finally {
+            unlock(held);
+        }
+    }
+
+    // The stripes taken, in acquisition order; none when disabled or an owner is unknown
+    private int[] lock(String fromOwner, String toOwner) {
+        if (!enabled) return NONE;
+        Long fromId = accountIds.findId(fromOwner);
+        Long toId = accountIds.findId(toOwner);
+        if (fromId == null || toId == null) return NONE;
+        int a = stripeOf(fromId);
+        int b = stripeOf(toId);
+        int first = Math.min(a, b);
+        int second = Math.max(a, b);
+        acquire(first, fromOwner, toOwner);
+        if (second == first) return new int[]{first};
+        try {
+            acquire(second, fromOwner, toOwner);
+        } catch (RuntimeException ex) {
+            stripes[first].unlock();
+            throw ex;
+        }
+        return new int[]{first, second};
+    }
+
+    private void unlock(int[] held) {
+        for (int i = held.length - 1; i >= 0; i--) stripes[held[i]].unlock();
+    }
+
+    private void acquire(int stripe, String fromOwner, String toOwner) {
+        acquisitions.increment();
+        ReentrantLock lock = stripes[stripe];
+        if (lock.tryLock()) return;
+        long start = System.nanoTime();
+        boolean locked;
+        try {
+            locked = lock.tryLock(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the account locks of " + fromOwner + " -> " + toOwner, e);
+        }
+        long waited = System.nanoTime() - start;
+        contended.increment();
+        contendedByStripe.incrementAndGet(stripe);
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        contendedWait.record(waited);
+        if (!locked) {
+            timeouts.increment();
+            throw new StripeLockTimeoutException(fromOwner, toOwner, waitTimeoutMillis);
+        }
+    }
+
+    private int stripeOf(long accountId) {
+        int h = Long.hashCode(accountId);
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    @Override
+    public String statsName() {
+        return "stripedLocks";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long contendedCount = contended.sum();
+        long acquired = acquisitions.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("stripes", stripes.length);
+        stats.put("waitTimeoutMs", waitTimeoutMillis);
+        stats.put("acquisitions", acquired);
+        stats.put("contended", contendedCount);
+        stats.put("timeouts", timeouts.sum());
+        stats.put("contentionRate", acquired == 0 ? 0.0 : (double) contendedCount / acquired);
+        stats.put("avgWaitMillis", contendedCount == 0 ? 0.0 : waitNanos.sum() / 1_000_000.0 / contendedCount);
+        stats.put("maxWaitMillis", maxWaitNanos.get() / 1_000_000.0);
+        stats.put("contendedWait", contendedWait.snapshot());
+
+        List<int[]> hottest = new ArrayList<>();
+        for (int i = 0; i < stripes.length; i++) {
+            long c = contendedByStripe.get(i);
+            if (c > 0) hottest.add(new int[]{i, (int) Math.min(c, Integer.MAX_VALUE)});
+        }
+        hottest.sort(Comparator.comparingInt((int[] e) -> e[1]).reversed());
+        Map<String, Object> top = new LinkedHashMap<>();
+        for (int[] e : hottest.subList(0, Math.min(5, hottest.size()))) {
+            top.put(String.valueOf(e[0]), e[1]);
+        }
+        stats.put("hottestStripes", top);
+        return stats;
+    }
+}
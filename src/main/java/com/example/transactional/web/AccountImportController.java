@@ -0,0 +1,40 @@
+package com.example.transactional.web;
+
+import com.example.transactional.account.AccountImporter;
+import com.example.transactional.account.AccountImporter.Result;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/accounts")
+public class AccountImportController {
+
+    private final AccountImporter importer;
+
+    public AccountImportController(AccountImporter importer) {
+        this.importer = importer;
+    }
+
+    // Reads the request body as a stream, so the upload is never held in memory as a whole
+    @PostMapping(value = "/import", consumes = {"text/csv", "text/plain", "application/octet-stream"})
+    public ResponseEntity<?> importCsv(InputStream body) {
+        return ResponseEntity.ok(toMap(importer.importCsv(body)));
+    }
+
+    private static Map<String, Object> toMap(Result result) {
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("linesRead", result.linesRead);
+        resp.put("inserted", result.inserted);
+        resp.put("skipped", result.skipped);
+        resp.put("rejected", result.rejected);
+        resp.put("errors", result.errors);
+        resp.put("chunks", result.chunks);
+        resp.put("durationMillis", result.durationMillis);
+        resp.put("rowsPerSecond", Math.round(result.rowsPerSecond));
+        return resp;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.transactional.web;
+
+import com.example.transactional.service.BoundedTransferExecutor;
+import com.example.transactional.service.JdbcTransferService.MultiLegTransfer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Non-blocking mirror of {@link TransferController} and {@link IsolationController} under {@code /api/async}.
+ * The servlet thread only queues the request on {@link BoundedTransferExecutor} and is released; the
+ * blocking JDBC work runs on that executor's fixed pool. When the executor sheds load the response is
+ * 503 with {@code Retry-After}. Responses and validation are those of the blocking endpoints.
+ */
+@RestController
+@RequestMapping("/api/async")
+public class AsyncTransferController {
+
+    private final TransferController transfers;
+    private final IsolationController isolation;
+    private final BoundedTransferExecutor executor;
+    private final long retryAfterSeconds;
+
+    public AsyncTransferController(TransferController transfers,
+                                   IsolationController isolation,
+                                   BoundedTransferExecutor executor,
+                                   @Value("${transfer.async.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.transfers = transfers;
+        this.isolation = isolation;
+        this.executor = executor;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @GetMapping("/accounts/{owner}/balance")
+    public CompletableFuture<Map<String, Object>> balance(@PathVariable String owner) {
+        return executor.submit(() -> transfers.balance(owner));
+    }
+
+    @PostMapping("/transfer/jpa")
+    public CompletableFuture<ResponseEntity<?>> transferJpa(@RequestParam String from,
+                                                            @RequestParam String to,
+                                                            @RequestParam String amount,
+                                                            @RequestParam(defaultValue = "false") boolean failMidway,
+                                                            @RequestHeader(value = TransferController.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return executor.submit(() -> transfers.transferJpa(from, to, amount, failMidway, idempotencyKey));
+    }
+
+    @PostMapping("/transfer/jdbc-txmgr")
+    public CompletableFuture<ResponseEntity<?>> transferJdbcTxMgr(@RequestParam String from,
+                                                                  @RequestParam String to,
+                                                                  @RequestParam String amount,
+                                                                  @RequestParam(defaultValue = "false") boolean failMidway,
+                                                                  @RequestHeader(value = TransferController.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return executor.submit(() -> transfers.transferJdbcTxMgr(from, to, amount, failMidway, idempotencyKey));
+    }
+
+    @PostMapping("/transfer/jdbc-conditional")
+    public CompletableFuture<ResponseEntity<?>> transferJdbcConditional(@RequestParam String from,
+                                                                        @RequestParam String to,
+                                                                        @RequestParam String amount,
+                                                                        @RequestParam(defaultValue = "false") boolean failMidway,
+                                                                        @RequestHeader(value = TransferController.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return executor.submit(() -> transfers.transferJdbcConditional(from, to, amount, failMidway, idempotencyKey));
+    }
+
+    @PostMapping("/transfer/jdbc-manual")
+    public CompletableFuture<ResponseEntity<?>> transferJdbcManual(@RequestParam String from,
+                                                                   @RequestParam String to,
+                                                                   @RequestParam String amount,
+                                                                   @RequestParam(defaultValue = "false") boolean failMidway,
+                                                                   @RequestHeader(value = TransferController.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return executor.submit(() -> transfers.transferJdbcManual(from, to, amount, failMidway, idempotencyKey));
+    }
+
+    @PostMapping("/transfer/jdbc-no-tx")
+    public CompletableFuture<ResponseEntity<?>> transferJdbcNoTx(@RequestParam String from,
+                                                                 @RequestParam String to,
+                                                                 @RequestParam String amount,
+                                                                 @RequestParam(defaultValue = "false") boolean failMidway,
+                                                                 @RequestHeader(value = TransferController.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return executor.submit(() -> transfers.transferJdbcNoTx(from, to, amount, failMidway, idempotencyKey));
+    }
+
+    @PostMapping("/transfer/jdbc-locking")
+    public CompletableFuture<ResponseEntity<?>> transferJdbcLocking(@RequestParam String from,
+                                                                    @RequestParam String to,
+                                                                    @RequestParam String amount,
+                                                                    @RequestParam(defaultValue = "false") boolean failMidway,
+                                                                    @RequestHeader(value = TransferController.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return executor.submit(() -> transfers.transferJdbcLocking(from, to, amount, failMidway, idempotencyKey));
+    }
+
+    @PostMapping("/transfer/jdbc-optimistic")
+    public CompletableFuture<ResponseEntity<?>> transferJdbcOptimistic(@RequestParam String from,
+                                                                       @RequestParam String to,
+                                                                       @RequestParam String amount,
+                                                                       @RequestParam(defaultValue = "false") boolean failMidway,
+                                                                       @RequestHeader(value = TransferController.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return executor.submit(() -> transfers.transferJdbcOptimistic(from, to, amount, failMidway, idempotencyKey));
+    }
+
+    @PostMapping("/transfer/jdbc-sharded")
+    public CompletableFuture<ResponseEntity<?>> transferJdbcSharded(@RequestParam String from,
+                                                                    @RequestParam String to,
+                                                                    @RequestParam String amount,
+                                                                    @RequestParam(defaultValue = "false") boolean failMidway,
+                                                                    @RequestHeader(value = TransferController.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return executor.submit(() -> transfers.transferJdbcSharded(from, to, amount, failMidway, idempotencyKey));
+    }
+
+    @PostMapping(value = "/transfer/multi-leg", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> transferMultiLeg(@RequestBody MultiLegTransfer transfer,
+                                                                 @RequestHeader(value = TransferController.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return executor.submit(() -> transfers.transferMultiLeg(transfer, idempotencyKey));
+    }
+
+    // Already queue-backed: the servlet thread only enqueues, so no executor hop
+    @PostMapping("/transfer/group-commit")
+    public CompletableFuture<ResponseEntity<?>> transferGroupCommit(@RequestParam String from,
+                                                                    @RequestParam String to,
+                                                                    @RequestParam String amount,
+                                                                    @RequestHeader(value = TransferController.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return transfers.transferGroupCommit(from, to, amount, idempotencyKey);
+    }
+
+    @GetMapping("/isolation/non-repeatable")
+    public CompletableFuture<ResponseEntity<?>> nonRepeatable(@RequestParam(defaultValue = "alice") String owner,
+                                                              @RequestParam(defaultValue = "5.00") BigDecimal delta,
+                                                              @RequestParam(defaultValue = "READ_COMMITTED") String level) {
+        return executor.submit(() -> isolation.nonRepeatable(owner, delta, level));
+    }
+
+    @GetMapping("/isolation/phantom")
+    public CompletableFuture<ResponseEntity<?>> phantom(@RequestParam(defaultValue = "50.00") BigDecimal threshold,
+                                                        @RequestParam(defaultValue = "READ_COMMITTED") String level) {
+        return executor.submit(() -> isolation.phantom(threshold, level));
+    }
+
+    @PostMapping("/isolation/load")
+    public CompletableFuture<ResponseEntity<?>> load(@RequestParam(defaultValue = "4") int readers,
+                                                     @RequestParam(defaultValue = "4") int writers,
+                                                     @RequestParam(defaultValue = "READ_UNCOMMITTED,READ_COMMITTED,REPEATABLE_READ,SERIALIZABLE") String levels,
+                                                     @RequestParam(defaultValue = "2000") long durationMs,
+                                                     @RequestParam(defaultValue = "50") int pairs,
+                                                     @RequestParam(defaultValue = "0.0") double skew) {
+        return executor.submit(() -> isolation.load(readers, writers, levels, durationMs, pairs, skew));
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<?> overloaded(RejectedExecutionException ex) {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(resp);
+    }
+
+    @ExceptionHandler({IllegalArgumentException.class, RuntimeException.class})
+    public ResponseEntity<?> handle(RuntimeException ex) {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("error", ex.getMessage());
+        return ResponseEntity.badRequest().body(resp);
+    }
+}
@@ -4,14 +4,22 @@ import com.example.transactional.service.IsolationDemoService;
 import com.example.transactional.service.IsolationDemoService.Isolation;
 import com.example.transactional.service.IsolationDemoService.NonRepeatableReadResult;
 import com.example.transactional.service.IsolationDemoService.PhantomReadResult;
+import com.example.transactional.service.IsolationLoadService;
+import com.example.transactional.service.IsolationLoadService.LevelResult;
+import com.example.transactional.service.IsolationLoadService.LoadSpec;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -19,9 +27,11 @@ import java.util.Map;
 public class IsolationController {
 
     private final IsolationDemoService demoService;
+    private final IsolationLoadService loadService;
 
-    public IsolationController(IsolationDemoService demoService) {
+    public IsolationController(IsolationDemoService demoService, IsolationLoadService loadService) {
         this.demoService = demoService;
+        this.loadService = loadService;
     }
 
     @GetMapping("/non-repeatable")
@@ -52,5 +62,36 @@ public class IsolationController {
         resp.put("note", "anomaly=true indicates a phantom read (row count changed during transaction)");
         return ResponseEntity.ok(resp);
     }
-}
 
+    @PostMapping("/load")
+    public ResponseEntity<?> load(@RequestParam(defaultValue = "4") int readers,
+                                  @RequestParam(defaultValue = "4") int writers,
+                                  @RequestParam(defaultValue = "READ_UNCOMMITTED,READ_COMMITTED,REPEATABLE_READ,SERIALIZABLE") String levels,
+                                  @RequestParam(defaultValue = "2000") long durationMs,
+                                  @RequestParam(defaultValue = "50") int pairs,
+                                  @RequestParam(defaultValue = "0.0") double skew) {
+        LoadSpec spec = new LoadSpec();
+        spec.readers = readers;
+        spec.writers = writers;
+        spec.isolations = Arrays.stream(levels.split(",")).map(Isolation::from).toList();
+        spec.durationMillis = durationMs;
+        spec.pairs = pairs;
+        spec.skew = skew;
+        List<LevelResult> results = loadService.run(spec);
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("readers", readers);
+        resp.put("writers", writers);
+        resp.put("durationMs", durationMs);
+        resp.put("pairs", pairs);
+        resp.put("skew", skew);
+        resp.put("results", results);
+        return ResponseEntity.ok(resp);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handle(IllegalArgumentException ex) {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("error", ex.getMessage());
+        return ResponseEntity.badRequest().body(resp);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.transactional.web;
+
+import com.example.transactional.money.Money;
+import com.example.transactional.reconciliation.ReconciliationService;
+import com.example.transactional.reconciliation.ReconciliationService.Drift;
+import com.example.transactional.reconciliation.ReconciliationService.Report;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/reconciliation")
+public class ReconciliationController {
+
+    private final ReconciliationService reconciliation;
+
+    public ReconciliationController(ReconciliationService reconciliation) {
+        this.reconciliation = reconciliation;
+    }
+
+    @PostMapping("/run")
+    public ResponseEntity<?> run() {
+        Report report = reconciliation.reconcile();
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("runId", report.runId);
+        resp.put("baseline", report.baseline);
+        resp.put("ledgerWatermark", report.ledgerWatermark);
+        resp.put("chunksScanned", report.chunksScanned);
+        resp.put("chunksChanged", report.chunksChanged);
+        resp.put("accountsChecked", report.accountsChecked);
+        resp.put("durationMillis", report.durationMillis);
+        List<Map<String, Object>> drifts = new ArrayList<>();
+        for (Drift d : report.drifts) {
+            Map<String, Object> drift = new LinkedHashMap<>();
+            drift.put("accountId", d.accountId);
+            drift.put("balanceDelta", Money.ofMinor(d.balanceDelta).toBigDecimal());
+            drift.put("ledgerDelta", Money.ofMinor(d.ledgerDelta).toBigDecimal());
+            drift.put("drift", Money.ofMinor(d.drift).toBigDecimal());
+            drifts.add(drift);
+        }
+        resp.put("drifts", drifts);
+        return ResponseEntity.ok(resp);
+    }
+
+    @GetMapping("/drifts")
+    public ResponseEntity<?> drifts(@RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > 10_000) throw new IllegalArgumentException("limit must be between 1 and 10000");
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("drifts", reconciliation.recentDrifts(limit));
+        return ResponseEntity.ok(resp);
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<?> busy(IllegalStateException ex) {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(resp);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handle(IllegalArgumentException ex) {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("error", ex.getMessage());
+        return ResponseEntity.badRequest().body(resp);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.transactional.web;
+
+import com.example.transactional.metrics.StatsSource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    private final List<StatsSource> sources;
+
+    public StatsController(List<StatsSource> sources) {
+        this.sources = sources;
+    }
+
+    @GetMapping
+    public Map<String, Object> all() {
+        Map<String, Object> resp = new TreeMap<>();
+        for (StatsSource source : sources) {
+            resp.put(source.statsName(), source.stats());
+        }
+        return resp;
+    }
+
+    @GetMapping("/{name}")
+    public ResponseEntity<?> one(@PathVariable String name) {
+        return sources.stream()
+                .filter(s -> s.statsName().equals(name))
+                .findFirst()
+                .<ResponseEntity<?>>map(s -> ResponseEntity.ok(s.stats()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
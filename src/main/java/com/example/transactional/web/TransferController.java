@@ -1,79 +1,345 @@
 package com.example.transactional.web;
 
+import com.example.transactional.account.AccountIdCache;
+import com.example.transactional.account.BalanceCache;
+import com.example.transactional.idempotency.IdempotencyStore;
+import com.example.transactional.ledger.LedgerHistory;
+import com.example.transactional.limit.TransferConcurrencyLimits;
+import com.example.transactional.money.Money;
+import com.example.transactional.service.BatchTransferService;
+import com.example.transactional.service.BatchTransferService.TransferItem;
+import com.example.transactional.service.GroupCommitTransferService;
 import com.example.transactional.service.JdbcTransferService;
+import com.example.transactional.service.JdbcTransferService.Leg;
+import com.example.transactional.service.JdbcTransferService.MultiLegTransfer;
 import com.example.transactional.service.JpaTransferService;
+import com.example.transactional.service.OptimisticTransferService;
+import com.example.transactional.service.OrderedLockingTransferService;
+import com.example.transactional.service.ShardedTransferService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api")
 public class TransferController {
 
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
     private final JpaTransferService jpaTransferService;
     private final JdbcTransferService jdbcTransferService;
+    private final BatchTransferService batchTransferService;
+    private final OrderedLockingTransferService lockingTransferService;
+    private final OptimisticTransferService optimisticTransferService;
+    private final GroupCommitTransferService groupCommitTransferService;
+    private final ShardedTransferService shardedTransferService;
+    private final TransferConcurrencyLimits limits;
+    private final BalanceCache balanceCache;
+    private final AccountIdCache accountIds;
+    private final LedgerHistory ledgerHistory;
+    private final IdempotencyStore idempotency;
+    private final ObjectMapper objectMapper;
 
-    public TransferController(JpaTransferService jpaTransferService, JdbcTransferService jdbcTransferService) {
+    public TransferController(JpaTransferService jpaTransferService,
+                              JdbcTransferService jdbcTransferService,
+                              BatchTransferService batchTransferService,
+                              OrderedLockingTransferService lockingTransferService,
+                              OptimisticTransferService optimisticTransferService,
+                              GroupCommitTransferService groupCommitTransferService,
+                              ShardedTransferService shardedTransferService,
+                              TransferConcurrencyLimits limits,
+                              BalanceCache balanceCache,
+                              AccountIdCache accountIds,
+                              LedgerHistory ledgerHistory,
+                              IdempotencyStore idempotency,
+                              ObjectMapper objectMapper) {
         this.jpaTransferService = jpaTransferService;
         this.jdbcTransferService = jdbcTransferService;
+        this.batchTransferService = batchTransferService;
+        this.lockingTransferService = lockingTransferService;
+        this.optimisticTransferService = optimisticTransferService;
+        this.groupCommitTransferService = groupCommitTransferService;
+        this.shardedTransferService = shardedTransferService;
+        this.limits = limits;
+        this.balanceCache = balanceCache;
+        this.accountIds = accountIds;
+        this.ledgerHistory = ledgerHistory;
+        this.idempotency = idempotency;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/accounts/{owner}/balance")
     public Map<String, Object> balance(@PathVariable String owner) {
         Map<String, Object> resp = new LinkedHashMap<>();
         resp.put("owner", owner);
-        resp.put("balance", jpaTransferService.balanceOf(owner));
+        resp.put("balance", balanceCache.get(owner, jpaTransferService::balanceOf));
         return resp;
     }
 
+    // Streams the ledger as a JSON array, oldest first, one keyset page at a time
+    @GetMapping(value = "/accounts/{owner}/history", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> history(@PathVariable String owner,
+                                                         @RequestParam(defaultValue = "0") long limit) {
+        Long accountId = accountIds.findId(owner);
+        if (accountId == null) {
+            throw new IllegalArgumentException("Account not found: " + owner);
+        }
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+                gen.writeStartArray();
+                ledgerHistory.stream(accountId, limit, entry -> {
+                    try {
+                        gen.writeStartObject();
+                        gen.writeNumberField("id", entry.id);
+                        gen.writeStringField("transferId", entry.transferId);
+                        gen.writeNumberField("amount", entry.amount.toBigDecimal());
+                        gen.writeStringField("createdAt", entry.createdAt.toString());
+                        gen.writeEndObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                gen.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // Opt-in and one-way: splits the balance over bucket rows so credits stop queuing on one row lock
+    @PostMapping("/accounts/{owner}/shard")
+    public ResponseEntity<?> shard(@PathVariable String owner,
+                                   @RequestParam(required = false) Integer buckets) {
+        int count = buckets != null ? buckets : shardedTransferService.getDefaultBuckets();
+        shardedTransferService.shard(owner, count);
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("status", "ok");
+        resp.put("owner", owner);
+        resp.put("buckets", count);
+        return ResponseEntity.ok(resp);
+    }
+
     @PostMapping("/transfer/jpa")
     public ResponseEntity<?> transferJpa(@RequestParam String from,
                                          @RequestParam String to,
-                                         @RequestParam BigDecimal amount,
-                                         @RequestParam(defaultValue = "false") boolean failMidway) {
-        jpaTransferService.transfer(from, to, amount, failMidway);
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("status", "ok");
-        return ResponseEntity.ok(resp);
+                                         @RequestParam String amount,
+                                         @RequestParam(defaultValue = "false") boolean failMidway,
+                                         @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        Money money = Money.parse(amount);
+        return transfer("jpa", idempotencyKey, request("jpa", from, to, money, failMidway),
+                () -> jpaTransferService.transfer(from, to, money, failMidway));
     }
 
     @PostMapping("/transfer/jdbc-txmgr")
     public ResponseEntity<?> transferJdbcTxMgr(@RequestParam String from,
                                                @RequestParam String to,
-                                               @RequestParam BigDecimal amount,
-                                               @RequestParam(defaultValue = "false") boolean failMidway) {
-        jdbcTransferService.transferWithTxManager(from, to, amount, failMidway);
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("status", "ok");
-        return ResponseEntity.ok(resp);
+                                               @RequestParam String amount,
+                                               @RequestParam(defaultValue = "false") boolean failMidway,
+                                               @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        Money money = Money.parse(amount);
+        return transfer("jdbc-txmgr", idempotencyKey, request("jdbc-txmgr", from, to, money, failMidway),
+                () -> jdbcTransferService.transferWithTxManager(from, to, money, failMidway));
+    }
+
+    @PostMapping("/transfer/jdbc-conditional")
+    public ResponseEntity<?> transferJdbcConditional(@RequestParam String from,
+                                                     @RequestParam String to,
+                                                     @RequestParam String amount,
+                                                     @RequestParam(defaultValue = "false") boolean failMidway,
+                                                     @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        Money money = Money.parse(amount);
+        return transfer("jdbc-conditional", idempotencyKey, request("jdbc-conditional", from, to, money, failMidway),
+                () -> jdbcTransferService.transferConditional(from, to, money, failMidway));
     }
 
     @PostMapping("/transfer/jdbc-manual")
     public ResponseEntity<?> transferJdbcManual(@RequestParam String from,
                                                 @RequestParam String to,
-                                                @RequestParam BigDecimal amount,
-                                                @RequestParam(defaultValue = "false") boolean failMidway) {
-        jdbcTransferService.transferManualConnection(from, to, amount, failMidway);
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("status", "ok");
-        return ResponseEntity.ok(resp);
+                                                @RequestParam String amount,
+                                                @RequestParam(defaultValue = "false") boolean failMidway,
+                                                @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        Money money = Money.parse(amount);
+        return transfer("jdbc-manual", idempotencyKey, request("jdbc-manual", from, to, money, failMidway),
+                () -> jdbcTransferService.transferManualConnection(from, to, money, failMidway));
     }
 
     @PostMapping("/transfer/jdbc-no-tx")
     public ResponseEntity<?> transferJdbcNoTx(@RequestParam String from,
                                               @RequestParam String to,
-                                              @RequestParam BigDecimal amount,
-                                              @RequestParam(defaultValue = "false") boolean failMidway) {
-        jdbcTransferService.transferWithoutTransaction(from, to, amount, failMidway);
+                                              @RequestParam String amount,
+                                              @RequestParam(defaultValue = "false") boolean failMidway,
+                                              @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        // Each statement autocommits, so a duplicate could move money before its key row fails
+        if (idempotencyKey != null) {
+            throw new IllegalArgumentException("Idempotency-Key is not supported on jdbc-no-tx: it has no transaction to record the key in");
+        }
+        Money money = Money.parse(amount);
+        return transfer("jdbc-no-tx", null, request("jdbc-no-tx", from, to, money, failMidway),
+                () -> jdbcTransferService.transferWithoutTransaction(from, to, money, failMidway));
+    }
+
+    @PostMapping("/transfer/jdbc-locking")
+    public ResponseEntity<?> transferJdbcLocking(@RequestParam String from,
+                                                 @RequestParam String to,
+                                                 @RequestParam String amount,
+                                                 @RequestParam(defaultValue = "false") boolean failMidway,
+                                                 @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        Money money = Money.parse(amount);
+        return transfer("jdbc-locking", idempotencyKey, request("jdbc-locking", from, to, money, failMidway),
+                () -> lockingTransferService.transfer(from, to, money, failMidway));
+    }
+
+    @PostMapping("/transfer/jdbc-optimistic")
+    public ResponseEntity<?> transferJdbcOptimistic(@RequestParam String from,
+                                                    @RequestParam String to,
+                                                    @RequestParam String amount,
+                                                    @RequestParam(defaultValue = "false") boolean failMidway,
+                                                    @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        Money money = Money.parse(amount);
+        return transfer("jdbc-optimistic", idempotencyKey, request("jdbc-optimistic", from, to, money, failMidway),
+                () -> optimisticTransferService.transfer(from, to, money, failMidway));
+    }
+
+    @PostMapping("/transfer/jdbc-sharded")
+    public ResponseEntity<?> transferJdbcSharded(@RequestParam String from,
+                                                 @RequestParam String to,
+                                                 @RequestParam String amount,
+                                                 @RequestParam(defaultValue = "false") boolean failMidway,
+                                                 @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        Money money = Money.parse(amount);
+        return transfer("jdbc-sharded", idempotencyKey, request("jdbc-sharded", from, to, money, failMidway),
+                () -> shardedTransferService.transfer(from, to, money, failMidway));
+    }
+
+    // Body: {"debits":[{"owner":"alice","amount":10.00}],"credits":[{"owner":"bob","amount":9.50},...]}
+    @PostMapping(value = "/transfer/multi-leg", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> transferMultiLeg(@RequestBody MultiLegTransfer transfer,
+                                              @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return ok(limits.call("multi-leg", () -> jdbcTransferService.transferMultiLeg(transfer.debits, transfer.credits)));
+        }
+        String request = "multi-leg|" + legs(transfer.debits) + "|" + legs(transfer.credits);
+        return transfer("multi-leg", idempotencyKey, request, () -> jdbcTransferService.transferMultiLeg(transfer.debits, transfer.credits));
+    }
+
+    // Returns once the group containing this transfer has committed
+    @PostMapping("/transfer/group-commit")
+    public CompletableFuture<ResponseEntity<?>> transferGroupCommit(@RequestParam String from,
+                                                                    @RequestParam String to,
+                                                                    @RequestParam String amount,
+                                                                    @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        Money money = Money.parse(amount);
+        if (idempotencyKey == null) {
+            return limits.callAsync("group-commit", () -> groupCommitTransferService.submit(from, to, money)).thenApply(done -> ok(null));
+        }
+        IdempotencyStore.Entry claim = idempotency.claim(idempotencyKey, request("group-commit", from, to, money, false));
+        IdempotencyStore.Entry applied = idempotency.find(claim);
+        if (applied != null) {
+            return CompletableFuture.completedFuture(replayed(applied));
+        }
+        return idempotency.call(claim, () -> limits.callAsync("group-commit", () -> groupCommitTransferService.submit(from, to, money))).handle((done, ex) -> {
+            if (ex == null) {
+                idempotency.remember(claim);
+                return ok(claim.getTransferId());
+            }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof DuplicateKeyException) {
+                IdempotencyStore.Entry winner = idempotency.load(claim);
+                if (winner != null) return replayed(winner);
+            }
+            throw ex instanceof CompletionException ce ? ce : new CompletionException(cause);
+        });
+    }
+
+    // Body is a JSON array (or newline-delimited objects) of {from, to, amount}, read one item at a time
+    @PostMapping(value = "/transfer/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> transferBatch(InputStream body,
+                                           @RequestParam(required = false) Integer chunkSize) throws IOException {
+        int size = chunkSize != null ? chunkSize : batchTransferService.getDefaultChunkSize();
+        try (MappingIterator<TransferItem> items = objectMapper.readerFor(TransferItem.class).readValues(body)) {
+            return ResponseEntity.ok(batchTransferService.transferBatch(items, size));
+        }
+    }
+
+    /**
+     * Runs a single transfer. With an {@code Idempotency-Key} the key is recorded in the transfer's own
+     * transaction; a key that was already applied returns the original response without running it again,
+     * and a concurrent duplicate that lost the race on the key's primary key is answered the same way.
+     * Only the transfer itself counts against the strategy's concurrency limit; replays do not.
+     */
+    private ResponseEntity<?> transfer(String strategy, String idempotencyKey, String request, Runnable work) {
+        Runnable transfer = () -> limits.run(strategy, work);
+        if (idempotencyKey == null) {
+            transfer.run();
+            return ok(null);
+        }
+        IdempotencyStore.Entry claim = idempotency.claim(idempotencyKey, request);
+        IdempotencyStore.Entry applied = idempotency.find(claim);
+        if (applied != null) return replayed(applied);
+        try {
+            idempotency.run(claim, transfer);
+        } catch (DuplicateKeyException ex) {
+            IdempotencyStore.Entry winner = idempotency.load(claim);
+            if (winner == null) throw ex;
+            return replayed(winner);
+        }
+        idempotency.remember(claim);
+        return ok(claim.getTransferId());
+    }
+
+    private static ResponseEntity<Map<String, Object>> ok(String transferId) {
         Map<String, Object> resp = new HashMap<>();
         resp.put("status", "ok");
+        if (transferId != null) resp.put("transferId", transferId);
         return ResponseEntity.ok(resp);
     }
 
+    private static ResponseEntity<Map<String, Object>> replayed(IdempotencyStore.Entry applied) {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("status", "ok");
+        resp.put("transferId", applied.getTransferId());
+        return ResponseEntity.ok().header(IDEMPOTENT_REPLAYED, "true").body(resp);
+    }
+
+    // What a key is bound to: reusing a key for a different request is refused rather than replayed
+    private static String request(String endpoint, String from, String to, Money amount, boolean failMidway) {
+        return endpoint + "|" + from + "|" + to + "|" + amount.minor() + "|" + failMidway;
+    }
+
+    private static String legs(List<Leg> legs) {
+        if (legs == null) return "";
+        StringBuilder sb = new StringBuilder();
+        for (Leg leg : legs) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(leg.owner).append(':').append(leg.amount == null ? "null" : leg.amount.minor());
+        }
+        return sb.toString();
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<?> overloaded(RejectedExecutionException ex) {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(resp);
+    }
+
     @ExceptionHandler({IllegalArgumentException.class, RuntimeException.class})
     public ResponseEntity<?> handle(RuntimeException ex) {
         Map<String, Object> resp = new HashMap<>();
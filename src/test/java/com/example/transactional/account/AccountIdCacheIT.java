@@ -0,0 +1,62 @@
+package com.example.transactional.account;
+
+import com.example.transactional.money.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class AccountIdCacheIT {
+
+    @Autowired
+    AccountIdCache accountIdCache;
+
+    @Autowired
+    AccountRepository accountRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void resolvesOwnersAndCachesHits() {
+        Long id = accountIdCache.findId("alice");
+        assertEquals(accountRepository.findByOwner("alice").orElseThrow().getId(), id);
+        long hitsBefore = (long) accountIdCache.stats().get("hits");
+        assertEquals(id, accountIdCache.findId("alice"));
+        assertEquals(hitsBefore + 1, (long) accountIdCache.stats().get("hits"));
+        assertNull(accountIdCache.findId("nobody"));
+    }
+
+    @Test
+    void removingAccountThroughJpaInvalidates() {
+        Account carol = accountRepository.save(new Account("carol", Money.parse("1.00")));
+        assertEquals(carol.getId(), accountIdCache.findId("carol"));
+        accountRepository.delete(carol);
+        assertNull(accountIdCache.findId("carol"));
+    }
+
+    @Test
+    void staleIdIsReResolvedOnUpdate() {
+        Long oldId = accountIdCache.findId("bob");
+        // Recreate bob behind the cache's back
+        jdbcTemplate.update("DELETE FROM accounts WHERE owner = 'bob'");
+        jdbcTemplate.update("INSERT INTO accounts(owner, balance) VALUES ('bob', 5000)");
+
+        int updated = accountIdCache.update("bob", id ->
+                jdbcTemplate.update("UPDATE accounts SET balance = balance + 1 WHERE id = ?", id));
+
+        assertEquals(1, updated);
+        assertNotEquals(oldId, accountIdCache.findId("bob"));
+    }
+
+    @Test
+    void ownerIsUnique() {
+        assertThrows(RuntimeException.class, () ->
+                jdbcTemplate.update("INSERT INTO accounts(owner, balance) VALUES ('alice', 100)"));
+    }
+}
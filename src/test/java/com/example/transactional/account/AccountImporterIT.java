@@ -0,0 +1,89 @@
+package com.example.transactional.account;
+
+import com.example.transactional.account.AccountImporter.Result;
+import com.example.transactional.money.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "accounts.import.chunk-size=300")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class AccountImporterIT {
+
+    @Autowired
+    AccountImporter importer;
+
+    @Autowired
+    AccountRepository accountRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void importsInChunksAndSkipsExistingOwners() {
+        StringBuilder csv = new StringBuilder("owner,balance\n");
+        for (int i = 0; i < 1000; i++) csv.append("imp-").append(i).append(',').append(i).append(".25\n");
+        csv.append("alice,1.00\n").append("imp-5,9.99\n");
+
+        Result result = importer.importCsv(stream(csv.toString()));
+
+        assertEquals(1000, result.inserted);
+        assertEquals(2, result.skipped);
+        assertEquals(0, result.rejected);
+        assertEquals(4, result.chunks);
+        assertTrue(result.rowsPerSecond > 0);
+        assertEquals(Money.parse("5.25").minor(), jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE owner = 'imp-5'", Long.class));
+        assertEquals(Money.parse("100.00"), accountRepository.findByOwner("alice").orElseThrow().getBalance());
+        assertEquals(1002, jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT id) FROM accounts", Integer.class));
+    }
+
+    @Test
+    void rejectsMalformedLinesAndKeepsGoing() {
+        String csv = "\"carol, jr\",10.00\n"
+                + "dave\n"
+                + "erin,1.234\n"
+                + "frank,-1\n"
+                + "grace,abc\n"
+                + "heidi,0\n";
+
+        Result result = importer.importCsv(stream(csv));
+
+        assertEquals(2, result.inserted);
+        assertEquals(4, result.rejected);
+        assertEquals(4, result.errors.size());
+        assertTrue(result.errors.get(0).startsWith("line 2:"));
+        assertTrue(accountRepository.findByOwner("carol, jr").isPresent());
+    }
+
+    @Test
+    void importedIdsDoNotCollideWithJpaOrDefaultIds() {
+        importer.importCsv(stream("p1,1\np2,1\np3,1\n"));
+        accountRepository.save(new Account("jpa-1", Money.parse("1.00")));
+        jdbcTemplate.update("INSERT INTO accounts(owner, balance) VALUES ('jdbc-1', 100)");
+        importer.importCsv(stream("p4,1\n"));
+        accountRepository.save(new Account("jpa-2", Money.parse("1.00")));
+
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM accounts", Long.class);
+        assertEquals(ids.size(), ids.stream().distinct().count());
+        assertEquals(9, ids.size());
+    }
+
+    @Test
+    void parsesQuotedFields() {
+        assertEquals(List.of("a \"b\"", "1,5"), AccountImporter.parseLine("\"a \"\"b\"\"\",\"1,5\""));
+        assertEquals(List.of("x", ""), AccountImporter.parseLine("x,"));
+    }
+
+    private static InputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.transactional.account;
+
+import com.example.transactional.service.JdbcTransferService;
+import com.example.transactional.service.JpaTransferService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class BalanceCacheIT {
+
+    @Autowired
+    BalanceCache balanceCache;
+
+    @Autowired
+    JpaTransferService jpaTransferService;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Test
+    void servesRepeatedReadsFromCache() {
+        balanceCache.get("alice", jpaTransferService::balanceOf);
+        long hitsBefore = (long) balanceCache.stats().get("hits");
+        assertEquals(new BigDecimal("100.00"), balanceCache.get("alice", jpaTransferService::balanceOf));
+        assertEquals(hitsBefore + 1, (long) balanceCache.stats().get("hits"));
+    }
+
+    @Test
+    void committedTransferEvicts() {
+        balanceCache.get("alice", jpaTransferService::balanceOf);
+        balanceCache.get("bob", jpaTransferService::balanceOf);
+
+        jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), false);
+        jpaTransferService.transfer("alice", "bob", new BigDecimal("5.00"), false);
+
+        assertEquals(new BigDecimal("85.00"), balanceCache.get("alice", jpaTransferService::balanceOf));
+        assertEquals(new BigDecimal("65.00"), balanceCache.get("bob", jpaTransferService::balanceOf));
+    }
+
+    @Test
+    void neverStaleAfterRollback() {
+        balanceCache.get("alice", jpaTransferService::balanceOf);
+        long invalidationsBefore = (long) balanceCache.stats().get("invalidations");
+
+        assertThrows(RuntimeException.class, () ->
+                jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), true));
+        assertThrows(RuntimeException.class, () ->
+                jdbcTransferService.transferConditional("alice", "bob", new BigDecimal("10.00"), true));
+        assertThrows(RuntimeException.class, () ->
+                jpaTransferService.transfer("alice", "bob", new BigDecimal("10.00"), true));
+
+        // Nothing committed, so nothing was evicted and the cached value still matches the database
+        assertEquals(invalidationsBefore, (long) balanceCache.stats().get("invalidations"));
+        assertEquals(jdbcTransferService.balanceOf("alice"), balanceCache.get("alice", jpaTransferService::balanceOf));
+    }
+
+    @Test
+    void partialUpdateWithoutTransactionIsEvicted() {
+        balanceCache.get("alice", jpaTransferService::balanceOf);
+        assertThrows(RuntimeException.class, () ->
+                jdbcTransferService.transferWithoutTransaction("alice", "bob", new BigDecimal("10.00"), true));
+        assertEquals(new BigDecimal("90.00"), balanceCache.get("alice", jpaTransferService::balanceOf));
+    }
+}
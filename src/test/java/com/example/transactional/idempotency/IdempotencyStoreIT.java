@@ -0,0 +1,140 @@
+package com.example.transactional.idempotency;
+
+import com.example.transactional.idempotency.IdempotencyStore.Entry;
+import com.example.transactional.service.GroupCommitTransferService;
+import com.example.transactional.service.JdbcTransferService;
+import com.example.transactional.web.TransferController;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "transfer.idempotency.sweep-batch-size=10")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class IdempotencyStoreIT {
+
+    private static final String REQUEST = "jdbc-txmgr|alice|bob|1000|false";
+
+    @Autowired
+    IdempotencyStore idempotency;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Autowired
+    GroupCommitTransferService groupCommitTransferService;
+
+    @Autowired
+    TransferController transferController;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void key_isRecordedWithTheTransferAndReplayedFromMemory() {
+        Entry claim = idempotency.claim("k-1", REQUEST);
+        assertNull(idempotency.find(claim));
+        assertEquals(1L, idempotency.stats().get("bloomNegatives"));
+        assertEquals(0L, idempotency.stats().get("dbLookups"));
+
+        idempotency.run(claim, () -> jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), false));
+        idempotency.remember(claim);
+
+        Entry replay = idempotency.find(idempotency.claim("k-1", REQUEST));
+        assertNotNull(replay);
+        assertEquals(claim.getTransferId(), replay.getTransferId());
+        assertEquals(1L, idempotency.stats().get("cacheHits"));
+        assertEquals(claim.getTransferId(), jdbcTemplate.queryForObject(
+                "SELECT transfer_id FROM idempotency_keys WHERE idempotency_key = ?", String.class, "k-1"));
+    }
+
+    @Test
+    void duplicateKey_rollsBackTheSecondTransfer() {
+        Entry first = idempotency.claim("k-2", REQUEST);
+        idempotency.run(first, () -> jdbcTransferService.transferManualConnection("alice", "bob", new BigDecimal("10.00"), false));
+
+        // A concurrent retry that passed the lookup before the first one committed
+        Entry second = idempotency.claim("k-2", REQUEST);
+        assertThrows(DuplicateKeyException.class, () ->
+                idempotency.run(second, () -> jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), false)));
+
+        assertEquals(new BigDecimal("90.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("60.00"), jdbcTransferService.balanceOf("bob"));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transfers", Integer.class));
+        assertEquals(first.getTransferId(), idempotency.load(second).getTransferId());
+        // Reading the winner after a duplicate is not a bloom filter false positive
+        assertEquals(0L, idempotency.stats().get("bloomFalsePositives"));
+    }
+
+    @Test
+    void noTxTransfer_rejectsKey() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                transferController.transferJdbcNoTx("alice", "bob", "10.00", false, "k-6"));
+        assertTrue(ex.getMessage().startsWith("Idempotency-Key is not supported on jdbc-no-tx"));
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_keys", Integer.class));
+    }
+
+    @Test
+    void failedTransfer_leavesKeyUnused() {
+        Entry claim = idempotency.claim("k-3", REQUEST);
+        assertThrows(RuntimeException.class, () ->
+                idempotency.run(claim, () -> jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), true)));
+        assertNull(idempotency.load(claim));
+
+        idempotency.run(claim, () -> jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), false));
+        assertNotNull(idempotency.load(claim));
+        assertEquals(new BigDecimal("90.00"), jdbcTransferService.balanceOf("alice"));
+    }
+
+    @Test
+    void reusedKey_forDifferentRequest_isRejected() {
+        Entry claim = idempotency.claim("k-4", REQUEST);
+        idempotency.run(claim, () -> jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), false));
+        idempotency.remember(claim);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                idempotency.find(idempotency.claim("k-4", "jdbc-txmgr|alice|bob|2000|false")));
+        assertEquals("Idempotency-Key was already used for a different request", ex.getMessage());
+    }
+
+    @Test
+    void groupCommit_recordsKeyAndFailsOnlyTheDuplicate() throws Exception {
+        Entry claim = idempotency.claim("k-5", "group-commit|alice|bob|100|false");
+        idempotency.call(claim, () -> groupCommitTransferService.submit("alice", "bob", BigDecimal.ONE)).get(30, TimeUnit.SECONDS);
+        assertNotNull(claim.getTransferId());
+
+        Entry again = idempotency.claim("k-5", "group-commit|alice|bob|100|false");
+        ExecutionException ex = assertThrows(ExecutionException.class, () ->
+                idempotency.call(again, () -> groupCommitTransferService.submit("alice", "bob", BigDecimal.ONE)).get(30, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof DuplicateKeyException);
+        groupCommitTransferService.submit("alice", "bob", BigDecimal.ONE).get(30, TimeUnit.SECONDS);
+
+        assertEquals(new BigDecimal("98.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(claim.getTransferId(), idempotency.load(again).getTransferId());
+    }
+
+    @Test
+    void sweep_deletesExpiredKeysInBatches() {
+        Timestamp old = Timestamp.from(Instant.now().minus(Duration.ofDays(2)));
+        for (int i = 0; i < 25; i++) {
+            jdbcTemplate.update(IdempotencyStore.INSERT_SQL, "old-" + i, "h", "t", old);
+        }
+        jdbcTemplate.update(IdempotencyStore.INSERT_SQL, "fresh", "h", "t", Timestamp.from(Instant.now()));
+
+        assertEquals(25, idempotency.sweep(Instant.now().minus(Duration.ofDays(1))));
+        assertEquals(3L, idempotency.stats().get("sweepBatches"));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_keys", Integer.class));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.transactional.ledger;
+
+import com.example.transactional.account.AccountIdCache;
+import com.example.transactional.service.JdbcTransferService;
+import com.example.transactional.service.JpaTransferService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A tiny page size makes every stream below cross several keyset pages
+@SpringBootTest(properties = "ledger.history.page-size=2")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class LedgerHistoryIT {
+
+    @Autowired
+    LedgerHistory ledgerHistory;
+
+    @Autowired
+    AccountIdCache accountIds;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Autowired
+    JpaTransferService jpaTransferService;
+
+    @Test
+    void everyPathWritesOneEntryPerLeg() {
+        jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("1.00"), false);
+        jdbcTransferService.transferConditional("alice", "bob", new BigDecimal("2.00"), false);
+        jdbcTransferService.transferManualConnection("alice", "bob", new BigDecimal("3.00"), false);
+        jdbcTransferService.transferWithoutTransaction("alice", "bob", new BigDecimal("4.00"), false);
+        jpaTransferService.transfer("bob", "alice", new BigDecimal("5.00"), false);
+
+        List<LedgerHistory.Entry> alice = history("alice");
+        List<LedgerHistory.Entry> bob = history("bob");
+
+        assertEquals(5, alice.size());
+        assertEquals(5, bob.size());
+        assertEquals(new BigDecimal("-1.00"), alice.get(0).amount.toBigDecimal());
+        assertEquals(new BigDecimal("5.00"), alice.get(4).amount.toBigDecimal());
+        assertEquals(alice.get(0).transferId, bob.get(0).transferId);
+    }
+
+    @Test
+    void rolledBackTransfersLeaveNoEntries() {
+        assertThrows(RuntimeException.class, () ->
+                jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("1.00"), true));
+        assertThrows(RuntimeException.class, () ->
+                jdbcTransferService.transferManualConnection("alice", "bob", new BigDecimal("1.00"), true));
+        assertThrows(RuntimeException.class, () ->
+                jpaTransferService.transfer("alice", "bob", new BigDecimal("1.00"), true));
+
+        assertTrue(history("alice").isEmpty());
+    }
+
+    @Test
+    void limitStopsStreamingEarly() {
+        for (int i = 0; i < 5; i++) {
+            jdbcTransferService.transferWithTxManager("alice", "bob", BigDecimal.ONE, false);
+        }
+        List<LedgerHistory.Entry> entries = new ArrayList<>();
+        assertEquals(3, ledgerHistory.stream(accountIds.findId("bob"), 3, entries::add));
+        assertEquals(3, entries.size());
+    }
+
+    private List<LedgerHistory.Entry> history(String owner) {
+        List<LedgerHistory.Entry> entries = new ArrayList<>();
+        ledgerHistory.stream(accountIds.findId(owner), 0, entries::add);
+        return entries;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.transactional.limit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Overload against a simulated database that serves {@link #CAPACITY} calls of {@link #SERVICE_MILLIS}
+ * at a time, queuing the rest in order. Closed-loop clients give up on calls slower than
+ * {@link #DEADLINE_MILLIS}, so a call that completes later is wasted work. Doubling the clients should
+ * leave goodput roughly flat behind the limit, and collapse it without.
+ */
+@SpringBootTest
+class TransferConcurrencyLimitsIT {
+
+    private static final int CAPACITY = 4;
+    private static final long SERVICE_MILLIS = 5;
+    private static final long DEADLINE_MILLIS = 150;
+    private static final long PHASE_MILLIS = 2_000;
+
+    @Autowired
+    TransferConcurrencyLimits limits;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void goodputHoldsWhenLoadDoubles() throws Exception {
+        Semaphore database = new Semaphore(CAPACITY, true);
+        Runnable work = () -> {
+            database.acquireUninterruptibly();
+            try {
+                Thread.sleep(SERVICE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                database.release();
+            }
+        };
+        AtomicLong rejected = new AtomicLong();
+
+        run(64, () -> limits.run("overload", work), rejected); // warm-up: probe and settle the limit
+        double limitedAtBase = run(64, () -> limits.run("overload", work), rejected);
+        double limitedAtDouble = run(128, () -> limits.run("overload", work), rejected);
+        double unlimitedAtBase = run(64, work, rejected);
+        double unlimitedAtDouble = run(128, work, rejected);
+
+        Map<String, Object> stats = (Map<String, Object>) ((Map<String, Object>) limits.stats().get("strategies")).get("overload");
+        int limit = (Integer) stats.get("limit");
+        assertTrue(limit >= CAPACITY && limit <= 4 * CAPACITY, "limit did not settle near capacity: " + limit);
+        assertTrue(rejected.get() > 0);
+        assertTrue(limitedAtBase >= 0.5 * CAPACITY * 1000 / SERVICE_MILLIS, "limited goodput too low: " + limitedAtBase);
+        assertTrue(limitedAtDouble >= 0.8 * limitedAtBase,
+                "goodput collapsed behind the limit: " + limitedAtBase + " -> " + limitedAtDouble + " calls/s");
+        assertTrue(unlimitedAtBase >= 0.5 * CAPACITY * 1000 / SERVICE_MILLIS, "unlimited goodput too low: " + unlimitedAtBase);
+        // Without the limit every call queues past the deadline, which is what the limit is there to prevent
+        assertTrue(unlimitedAtDouble < 0.5 * unlimitedAtBase,
+                "scenario did not overload: " + unlimitedAtBase + " -> " + unlimitedAtDouble + " calls/s");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void overLimitCallsFailFastPerStrategy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            // The first window only admits min-limit calls while it probes the no-load latency
+            int minLimit = (Integer) limits.stats().get("minLimit");
+            List<Future<?>> held = new ArrayList<>();
+            for (int i = 0; i < minLimit; i++) {
+                held.add(pool.submit(() -> limits.run("held", () -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                })));
+            }
+            Map<String, Object> strategies = (Map<String, Object>) limits.stats().get("strategies");
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (strategies.get("held") == null || (Integer) ((Map<String, Object>) strategies.get("held")).get("inFlight") < minLimit) {
+                assertTrue(System.currentTimeMillis() < deadline, "held calls did not start");
+                Thread.sleep(5);
+                strategies = (Map<String, Object>) limits.stats().get("strategies");
+            }
+
+            ConcurrencyLimitExceededException ex = assertThrows(ConcurrencyLimitExceededException.class,
+                    () -> limits.run("held", () -> fail("over the limit")));
+            assertTrue(ex.getMessage().contains("held"));
+            // Other strategies keep their own slots
+            assertEquals("ok", limits.call("other", () -> "ok"));
+
+            release.countDown();
+            for (Future<?> f : held) f.get(5, TimeUnit.SECONDS);
+            Map<String, Object> stats = (Map<String, Object>) ((Map<String, Object>) limits.stats().get("strategies")).get("held");
+            assertEquals(0, stats.get("inFlight"));
+            assertEquals((long) minLimit, stats.get("accepted"));
+            assertEquals(1L, stats.get("rejected"));
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    // Calls per second that completed within the deadline
+    private double run(int threads, Runnable call, AtomicLong rejected) throws Exception {
+        AtomicLong good = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PHASE_MILLIS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        long start = System.nanoTime();
+                        try {
+                            call.run();
+                            if (System.nanoTime() - start <= TimeUnit.MILLISECONDS.toNanos(DEADLINE_MILLIS)) good.incrementAndGet();
+                        } catch (ConcurrencyLimitExceededException e) {
+                            rejected.incrementAndGet();
+                            try {
+                                Thread.sleep(1);
+                            } catch (InterruptedException ie) {
+                                return;
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        return good.get() * 1000.0 / PHASE_MILLIS;
+    }
+}
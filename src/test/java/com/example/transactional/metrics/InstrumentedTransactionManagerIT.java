@@ -0,0 +1,60 @@
+package com.example.transactional.metrics;
+
+import com.example.transactional.service.JdbcTransferService;
+import com.example.transactional.service.JpaTransferService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class InstrumentedTransactionManagerIT {
+
+    @Autowired
+    @Qualifier("jdbcTxManager")
+    InstrumentedTransactionManager jdbcTxManager;
+
+    @Autowired
+    @Qualifier("transactionManager")
+    InstrumentedTransactionManager jpaTxManager;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Autowired
+    JpaTransferService jpaTransferService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void jdbcCommitsAndRollbacksAreMeasured() {
+        jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("1.00"), false);
+        assertThrows(RuntimeException.class, () ->
+                jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("1.00"), true));
+
+        Map<String, Object> stats = jdbcTxManager.stats();
+        assertEquals(1L, stats.get("committed"));
+        assertEquals(1L, stats.get("rolledBack"));
+        assertEquals(Map.of("RuntimeException", 1L), stats.get("rollbacksByCause"));
+        assertEquals(2L, ((Map<String, Object>) stats.get("timeToFirstStatement")).get("count"));
+        assertEquals(2L, ((Map<String, Object>) stats.get("duration")).get("count"));
+        assertEquals(1L, ((Map<String, Object>) stats.get("commit")).get("count"));
+        assertTrue(((Map<String, Object>) stats.get("durationByIsolation")).containsKey("DEFAULT"));
+    }
+
+    @Test
+    void declarativeRollbackIsCountedByCause() {
+        assertThrows(RuntimeException.class, () ->
+                jpaTransferService.transfer("alice", "bob", new BigDecimal("1.00"), true));
+
+        Map<String, Object> stats = jpaTxManager.stats();
+        assertEquals(1L, stats.get("rolledBack"));
+        assertEquals(Map.of("RuntimeException", 1L), stats.get("rollbacksByCause"));
+    }
+}
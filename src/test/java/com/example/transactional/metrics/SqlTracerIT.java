@@ -0,0 +1,96 @@
+package com.example.transactional.metrics;
+
+import com.example.transactional.service.JdbcTransferService;
+import com.example.transactional.service.JpaTransferService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.sql.DataSource;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Every statement sampled, flushed only on demand
+@SpringBootTest(properties = {
+        "sql.trace.enabled=true",
+        "sql.trace.sample-rate=1",
+        "sql.trace.slow-threshold-ms=60000",
+        "sql.trace.flush-interval-ms=0"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class SqlTracerIT {
+
+    @Autowired
+    SqlTracer tracer;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Autowired
+    JpaTransferService jpaTransferService;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Test
+    void statementsOnBothPathsAreTracedAndFlushed() {
+        long before = (Long) tracer.stats().get("statements");
+        jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("1.00"), false);
+        jpaTransferService.transfer("alice", "bob", new BigDecimal("1.00"), false);
+
+        Map<String, Object> stats = tracer.stats();
+        long statements = (Long) stats.get("statements") - before;
+        assertTrue(statements >= 6, "debit, credit and ledger insert per transfer: " + statements);
+        assertEquals(0L, stats.get("slow"));
+        assertTrue(tracer.flush() > 0);
+        assertEquals(0, tracer.stats().get("buffered"));
+    }
+
+    @Test
+    void tracedStatements_reportTheConnectionTheyCameFrom() throws Exception {
+        long before = (Long) tracer.stats().get("statements");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             PreparedStatement prepared = connection.prepareStatement("SELECT balance FROM accounts WHERE owner = ?")) {
+            assertSame(connection, statement.getConnection());
+            assertSame(connection, prepared.getConnection());
+
+            statement.execute("SELECT 1");
+            prepared.setString(1, "alice");
+            try (ResultSet rs = prepared.executeQuery()) {
+                assertTrue(rs.next());
+            }
+        }
+        assertEquals(2L, (Long) tracer.stats().get("statements") - before);
+    }
+
+    @Test
+    void sampling_keepsOneInNAndAllSlowOrFailedStatements() {
+        SqlTracer sampled = new SqlTracer(true, 1_000_000, 50, 16, 0);
+        for (int i = 0; i < 100; i++) sampled.record("SELECT 1", 1_000, false);
+        sampled.record("SELECT slow", 60_000_000, false);
+        sampled.record("SELECT broken", 1_000, true);
+
+        Map<String, Object> stats = sampled.stats();
+        assertEquals(102L, stats.get("statements"));
+        assertEquals(1L, stats.get("slow"));
+        assertTrue((Long) stats.get("sampled") >= 1);
+        assertTrue(sampled.flush() >= 2);
+    }
+
+    @Test
+    void fullBuffer_dropsInsteadOfBlocking() {
+        SqlTracer small = new SqlTracer(true, 1, 50, 2, 0);
+        for (int i = 0; i < 5; i++) small.record("SELECT " + i, 1_000, false);
+
+        assertEquals(3L, small.stats().get("dropped"));
+        assertEquals(2, small.flush());
+    }
+}
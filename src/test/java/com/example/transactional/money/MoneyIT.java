@@ -0,0 +1,42 @@
+package com.example.transactional.money;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyIT {
+
+    @Test
+    void parsesDecimalStringsIntoMinorUnits() {
+        assertEquals(1234, Money.parseMinor("12.34"));
+        assertEquals(1230, Money.parseMinor("12.3"));
+        assertEquals(1200, Money.parseMinor("12"));
+        assertEquals(1200, Money.parseMinor("12."));
+        assertEquals(50, Money.parseMinor(".5"));
+        assertEquals(-1, Money.parseMinor("-0.01"));
+        assertEquals(100, Money.parseMinor("1.000"));
+    }
+
+    @Test
+    void rejectsMalformedAndOutOfRangeAmounts() {
+        assertThrows(IllegalArgumentException.class, () -> Money.parseMinor("1.001"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parseMinor("1e3"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parseMinor(""));
+        assertThrows(IllegalArgumentException.class, () -> Money.parseMinor("-"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parseMinor("92233720368547758.08"));
+        assertEquals(Long.MAX_VALUE, Money.parseMinor("92233720368547758.07"));
+        assertThrows(IllegalArgumentException.class, () -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)));
+        assertThrows(IllegalArgumentException.class, () -> Money.ofMinor(Long.MIN_VALUE).negate());
+    }
+
+    @Test
+    void convertsExactlyToAndFromBigDecimal() {
+        assertEquals(new BigDecimal("12.30"), Money.parse("12.3").toBigDecimal());
+        assertEquals(Money.ofMinor(1230), Money.of(new BigDecimal("12.3")));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("0.001")));
+        assertEquals("-0.05", Money.ofMinor(-5).toString());
+        assertEquals("-92233720368547758.08", Money.ofMinor(Long.MIN_VALUE).toString());
+    }
+}
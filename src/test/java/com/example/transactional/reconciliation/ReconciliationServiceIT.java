@@ -0,0 +1,143 @@
+package com.example.transactional.reconciliation;
+
+import com.example.transactional.reconciliation.ReconciliationService.Drift;
+import com.example.transactional.reconciliation.ReconciliationService.Report;
+import com.example.transactional.service.IsolationDemoService;
+import com.example.transactional.service.IsolationDemoService.Isolation;
+import com.example.transactional.service.JdbcTransferService;
+import com.example.transactional.service.JpaTransferService;
+import com.example.transactional.service.ShardedTransferService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Two accounts per range, so even the seed data spans several chunks
+@SpringBootTest(properties = {"reconciliation.enabled=false", "reconciliation.chunk-size=2"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class ReconciliationServiceIT {
+
+    @Autowired
+    ReconciliationService reconciliation;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Autowired
+    JpaTransferService jpaTransferService;
+
+    @Autowired
+    ShardedTransferService shardedTransferService;
+
+    @Autowired
+    IsolationDemoService isolationDemoService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void firstRunIsBaseline_thenUnchangedTableCostsNoAccountReads() {
+        createAccounts(6);
+        Report baseline = reconciliation.reconcile();
+        assertTrue(baseline.baseline);
+        assertEquals(8, baseline.accountsChecked);
+        assertEquals(4, baseline.chunksScanned);
+
+        Report next = reconciliation.reconcile();
+        assertFalse(next.baseline);
+        assertEquals(4, next.chunksScanned);
+        assertEquals(0, next.chunksChanged);
+        assertEquals(0, next.accountsChecked);
+        assertTrue(next.drifts.isEmpty());
+    }
+
+    @Test
+    void transactionalTransfers_areExplainedByTheLedger() {
+        createAccounts(6);
+        reconciliation.reconcile();
+        jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), false);
+        jpaTransferService.transfer("bob", "alice", new BigDecimal("2.50"), false);
+
+        Report report = reconciliation.reconcile();
+
+        assertTrue(report.drifts.isEmpty());
+        assertEquals(2, report.accountsChecked);
+    }
+
+    @Test
+    void isolationDemoWrites_areNotDrift() {
+        reconciliation.reconcile();
+        isolationDemoService.demoNonRepeatableRead("alice", new BigDecimal("5.00"), Isolation.READ_COMMITTED);
+        isolationDemoService.demoPhantomRead(new BigDecimal("50.00"), Isolation.READ_COMMITTED);
+
+        Report report = reconciliation.reconcile();
+
+        assertTrue(report.drifts.isEmpty());
+    }
+
+    @Test
+    void partialUpdateWithoutTransaction_isReportedOnce() {
+        reconciliation.reconcile();
+        assertThrows(RuntimeException.class, () ->
+                jdbcTransferService.transferWithoutTransaction("alice", "bob", new BigDecimal("10.00"), true));
+
+        Report report = reconciliation.reconcile();
+
+        assertEquals(1, report.drifts.size());
+        Drift drift = report.drifts.get(0);
+        assertEquals(idOf("alice"), drift.accountId);
+        assertEquals(-1000, drift.balanceDelta);
+        assertEquals(0, drift.ledgerDelta);
+        assertEquals(-1000, drift.drift);
+        assertEquals(1, reconciliation.recentDrifts(10).size());
+        assertEquals("alice", reconciliation.recentDrifts(10).get(0).get("owner"));
+        assertTrue(reconciliation.reconcile().drifts.isEmpty());
+    }
+
+    @Test
+    void shardedCredits_areFoundThroughTheLedger() {
+        shardedTransferService.shard("bob", 4);
+        reconciliation.reconcile();
+        shardedTransferService.transfer("alice", "bob", new BigDecimal("5.00"), false);
+
+        Report report = reconciliation.reconcile();
+
+        assertTrue(report.drifts.isEmpty());
+        assertEquals(2, report.accountsChecked);
+    }
+
+    @Test
+    void newAccounts_getBaselinedAndTheLastRangeIsRecut() {
+        reconciliation.reconcile();
+        long chunksBefore = chunkCount();
+        createAccounts(10);
+
+        Report report = reconciliation.reconcile();
+
+        assertTrue(report.drifts.isEmpty());
+        assertEquals(10, report.accountsChecked);
+        assertTrue(chunkCount() > chunksBefore);
+        assertEquals(0, reconciliation.reconcile().accountsChecked);
+    }
+
+    private void createAccounts(int n) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < n; i++) rows.add(new Object[]{"recon-" + i, 10_000L});
+        jdbcTemplate.batchUpdate("INSERT INTO accounts(owner, balance) VALUES (?, ?)", rows);
+    }
+
+    private long idOf(String owner) {
+        return jdbcTemplate.queryForObject("SELECT id FROM accounts WHERE owner = ?", Long.class, owner);
+    }
+
+    private long chunkCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM snapshot_chunks", Long.class);
+    }
+}
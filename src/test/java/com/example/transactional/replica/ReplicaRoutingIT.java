@@ -0,0 +1,101 @@
+package com.example.transactional.replica;
+
+import com.example.transactional.account.BalanceCache;
+import com.example.transactional.money.Money;
+import com.example.transactional.service.JdbcTransferService;
+import com.example.transactional.service.JpaTransferService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Heartbeat and sync are driven by the tests: the scheduled runs only fire once, at startup
+@SpringBootTest(properties = {
+        "datasource.replicas.enabled=true",
+        "datasource.replicas.urls=jdbc:h2:mem:replica-it;MODE=PostgreSQL",
+        "datasource.replicas.max-lag-ms=120000",
+        "datasource.replicas.heartbeat-interval-ms=60000",
+        "datasource.replicas.h2-sync.enabled=true",
+        "datasource.replicas.h2-sync.interval-ms=60000"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class ReplicaRoutingIT {
+
+    @Autowired
+    ReplicaRouter router;
+
+    @Autowired
+    H2ReplicaSync sync;
+
+    @Autowired
+    JpaTransferService jpaTransferService;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Autowired
+    BalanceCache balanceCache;
+
+    @Test
+    void readOnlyTransactionsReadFromReplica() throws InterruptedException {
+        replicate();
+        JdbcTemplate replica = new JdbcTemplate(router.replicaPools().get(0));
+        replica.update("UPDATE accounts SET balance = 12345 WHERE owner = 'alice'");
+
+        assertEquals(new BigDecimal("123.45"), jpaTransferService.balanceOf("alice"));
+        // Not read-only: primary
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(1L, replicaStats().get("reads"));
+    }
+
+    @Test
+    void laggingReplicaFallsBackToPrimary() throws InterruptedException {
+        replicate();
+        JdbcTemplate replica = new JdbcTemplate(router.replicaPools().get(0));
+        replica.update("UPDATE accounts SET balance = 12345 WHERE owner = 'alice'");
+        replica.update("UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1", System.currentTimeMillis() - 600_000);
+        router.heartbeat();
+
+        assertEquals(new BigDecimal("100.00"), jpaTransferService.balanceOf("alice"));
+        assertEquals(1L, fallbacks().get("lagging"));
+        assertEquals(0L, replicaStats().get("reads"));
+    }
+
+    @Test
+    void readsAfterATransferSeeTheWrite() throws InterruptedException {
+        replicate();
+        jpaTransferService.transfer("alice", "bob", Money.parse("10.00"), false);
+
+        // The replica has not caught up: the read goes to the primary, and only that value is cached
+        assertEquals(new BigDecimal("90.00"), balanceCache.get("alice", jpaTransferService::balanceOf));
+        assertEquals(1L, fallbacks().get("readYourWrites"));
+
+        replicate();
+        assertEquals(new BigDecimal("60.00"), balanceCache.get("bob", jpaTransferService::balanceOf));
+        assertEquals(1L, replicaStats().get("reads"));
+    }
+
+    // Heartbeat on the primary, copy it over with the data, read it back
+    private void replicate() throws InterruptedException {
+        Thread.sleep(2);
+        router.heartbeat();
+        sync.sync();
+        router.heartbeat();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> replicaStats() {
+        return (Map<String, Object>) ((Map<String, Object>) router.stats().get("replicas")).get("replica-1");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> fallbacks() {
+        return (Map<String, Object>) router.stats().get("primaryFallbacks");
+    }
+}
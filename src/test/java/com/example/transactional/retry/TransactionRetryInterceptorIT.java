@@ -0,0 +1,130 @@
+package com.example.transactional.retry;
+
+import com.example.transactional.retry.RetryableSqlFailures.Reason;
+import com.example.transactional.service.JdbcTransferService;
+import com.example.transactional.service.JpaTransferService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Short H2 lock timeout, so a held row lock fails the first attempts quickly
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:retrytest;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;LOCK_TIMEOUT=200",
+        "transfer.retry.max-attempts=20",
+        "transfer.retry.budget-ms=10000"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class TransactionRetryInterceptorIT {
+
+    @Autowired
+    TransactionRetryInterceptor interceptor;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Autowired
+    JpaTransferService jpaTransferService;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    @Qualifier("jdbcTxManager")
+    PlatformTransactionManager jdbcTxManager;
+
+    @Test
+    void programmaticTransaction_retriesLockTimeoutUntilLockIsReleased() throws Exception {
+        holdRowLock("bob", 800, () -> jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), false));
+
+        assertEquals(new BigDecimal("90.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("60.00"), jdbcTransferService.balanceOf("bob"));
+        Map<String, Object> stats = interceptor.stats();
+        assertEquals(1L, stats.get("recovered"));
+        assertTrue((Long) stats.get("retries") >= 1);
+        assertTrue((Long) failures(stats).get("LOCK_TIMEOUT") >= 1);
+        assertTrue(((Map<?, ?>) stats.get("retriesByMethod")).containsKey("JdbcTransferService.transferWithTxManager"));
+    }
+
+    @Test
+    void transactionalMethod_retriesLockTimeoutUntilLockIsReleased() throws Exception {
+        holdRowLock("bob", 800, () -> jpaTransferService.transfer("alice", "bob", new BigDecimal("10.00"), false));
+
+        assertEquals(new BigDecimal("90.00"), jpaTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("60.00"), jpaTransferService.balanceOf("bob"));
+        assertEquals(1L, interceptor.stats().get("recovered"));
+    }
+
+    @Test
+    void nonRetryableFailure_isThrownAtOnce() {
+        assertThrows(IllegalArgumentException.class, () ->
+                jdbcTransferService.transferConditional("bob", "alice", new BigDecimal("50.01"), false));
+
+        Map<String, Object> stats = interceptor.stats();
+        assertEquals(1L, stats.get("calls"));
+        assertEquals(0L, stats.get("retries"));
+    }
+
+    @Test
+    void callInsideOuterTransaction_isNotRetried() throws Exception {
+        TransactionTemplate outer = new TransactionTemplate(jdbcTxManager);
+        assertThrows(RuntimeException.class, () -> holdRowLock("bob", 800, () -> outer.executeWithoutResult(s ->
+                jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), false))));
+
+        Map<String, Object> stats = interceptor.stats();
+        assertEquals(1L, stats.get("joinedOuterTransaction"));
+        assertEquals(0L, stats.get("retries"));
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+    }
+
+    @Test
+    void classify_bySqlStateAndVendorCode() {
+        assertEquals(Reason.DEADLOCK, RetryableSqlFailures.classify(new SQLException("deadlock", "40P01")));
+        assertEquals(Reason.DEADLOCK, RetryableSqlFailures.classify(new SQLException("deadlock", "40001", 40001)));
+        assertEquals(Reason.SERIALIZATION_FAILURE, RetryableSqlFailures.classify(new SQLException("serialize", "40001")));
+        assertEquals(Reason.SERIALIZATION_FAILURE, RetryableSqlFailures.classify(
+                new RuntimeException(new SQLException("concurrent update", "90131", 90131))));
+        assertEquals(Reason.LOCK_TIMEOUT, RetryableSqlFailures.classify(new SQLException("timeout", "HYT00", 50200)));
+        assertEquals(Reason.LOCK_TIMEOUT, RetryableSqlFailures.classify(new SQLException("lock", "55P03")));
+        assertNull(RetryableSqlFailures.classify(new SQLException("duplicate", "23505")));
+        assertNull(RetryableSqlFailures.classify(new IllegalArgumentException("Insufficient funds")));
+    }
+
+    // Locks the owner's row on a separate connection, runs the call and releases the lock after holdMillis
+    private void holdRowLock(String owner, long holdMillis, Runnable call) throws Exception {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE accounts SET version = version WHERE owner = ?")) {
+                ps.setString(1, owner);
+                ps.executeUpdate();
+            }
+            CompletableFuture<Void> result = CompletableFuture.runAsync(call);
+            Thread.sleep(holdMillis);
+            conn.rollback();
+            conn.setAutoCommit(true);
+            try {
+                result.get(30, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                throw (RuntimeException) e.getCause();
+            }
+        }
+    }
+
+    private static Map<?, ?> failures(Map<String, Object> stats) {
+        return (Map<?, ?>) stats.get("failures");
+    }
+}
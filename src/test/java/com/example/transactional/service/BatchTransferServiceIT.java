@@ -0,0 +1,62 @@
+package com.example.transactional.service;
+
+import com.example.transactional.service.BatchTransferService.BatchResult;
+import com.example.transactional.service.BatchTransferService.TransferItem;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class BatchTransferServiceIT {
+
+    @Autowired
+    BatchTransferService batchTransferService;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Test
+    void batch_commitsEveryChunk() {
+        List<TransferItem> items = List.of(
+                new TransferItem("alice", "bob", new BigDecimal("10.00")),
+                new TransferItem("bob", "alice", new BigDecimal("5.00")),
+                new TransferItem("alice", "bob", new BigDecimal("1.00")));
+
+        BatchResult result = batchTransferService.transferBatch(items.iterator(), 2);
+
+        assertEquals(3, result.committed);
+        assertEquals(0, result.failed);
+        assertEquals(2, result.chunks.size());
+        assertEquals(new BigDecimal("94.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("56.00"), jdbcTransferService.balanceOf("bob"));
+    }
+
+    @Test
+    void batch_badRowDoesNotRollBackItsChunk() {
+        List<TransferItem> items = List.of(
+                new TransferItem("alice", "bob", new BigDecimal("10.00")),
+                new TransferItem("alice", "nobody", new BigDecimal("10.00")),
+                new TransferItem("alice", "bob", new BigDecimal("-1.00")),
+                new TransferItem("bob", "alice", new BigDecimal("20.00")));
+
+        BatchResult result = batchTransferService.transferBatch(items.iterator(), 10);
+
+        assertEquals(2, result.committed);
+        assertEquals(2, result.failed);
+        assertEquals("ok", result.items.get(0).status);
+        assertEquals("failed", result.items.get(1).status);
+        assertTrue(result.items.get(1).error.contains("nobody"));
+        assertEquals("failed", result.items.get(2).status);
+        assertEquals("ok", result.items.get(3).status);
+        assertEquals(1, result.chunks.get(0).attempts);
+        assertEquals(new BigDecimal("110.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("40.00"), jdbcTransferService.balanceOf("bob"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.transactional.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "transfer.async.threads=2",
+        "transfer.async.queue-capacity=2",
+        "transfer.async.max-queue-wait-ms=200"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class BoundedTransferExecutorIT {
+
+    @Autowired
+    BoundedTransferExecutor executor;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Test
+    void executor_runsTransfersOffTheCallerThread() throws Exception {
+        String thread = executor.submit(() -> {
+            jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), false);
+            return Thread.currentThread().getName();
+        }).get(30, TimeUnit.SECONDS);
+
+        assertTrue(thread.startsWith("transfer-async-"));
+        assertEquals(new BigDecimal("90.00"), jdbcTransferService.balanceOf("alice"));
+    }
+
+    @Test
+    void executor_rejectsAtOnceWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Boolean>> accepted = new ArrayList<>();
+        try {
+            // two running, two queued
+            for (int i = 0; i < 4; i++) accepted.add(executor.submit(() -> await(release)));
+            long start = System.nanoTime();
+            assertThrows(RejectedExecutionException.class, () -> executor.submit(() -> true));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+        } finally {
+            release.countDown();
+        }
+        for (CompletableFuture<Boolean> f : accepted) assertTrue(f.get(30, TimeUnit.SECONDS));
+        assertEquals(1L, executor.stats().get("rejectedQueueFull"));
+    }
+
+    @Test
+    void executor_shedsTasksThatWaitedTooLong() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> first = executor.submit(() -> await(release));
+        CompletableFuture<Boolean> second = executor.submit(() -> await(release));
+        CompletableFuture<Boolean> queued = executor.submit(() -> true);
+        Thread.sleep(400);
+        release.countDown();
+
+        assertTrue(first.get(30, TimeUnit.SECONDS));
+        assertTrue(second.get(30, TimeUnit.SECONDS));
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> queued.get(30, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof RejectedExecutionException);
+        assertEquals(1L, executor.stats().get("shedQueueWait"));
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.transactional.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class GroupCommitTransferServiceIT {
+
+    @Autowired
+    GroupCommitTransferService groupCommitTransferService;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void groupCommit_appliesAllAndWritesLedger() throws Exception {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(groupCommitTransferService.submit("alice", "bob", BigDecimal.ONE));
+            futures.add(groupCommitTransferService.submit("bob", "alice", new BigDecimal("0.50")));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        assertEquals(new BigDecimal("90.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("60.00"), jdbcTransferService.balanceOf("bob"));
+        assertEquals(80, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transfers", Integer.class));
+        assertEquals(0, BigDecimal.ZERO.compareTo(
+                jdbcTemplate.queryForObject("SELECT SUM(amount) FROM transfers", BigDecimal.class)));
+    }
+
+    @Test
+    void groupCommit_rejectsOverdraftWithoutFailingOthers() throws Exception {
+        CompletableFuture<Void> ok = groupCommitTransferService.submit("bob", "alice", new BigDecimal("50.00"));
+        CompletableFuture<Void> overdraft = groupCommitTransferService.submit("bob", "alice", new BigDecimal("0.01"));
+
+        ok.get(30, TimeUnit.SECONDS);
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> overdraft.get(30, TimeUnit.SECONDS));
+        assertEquals("Insufficient funds", ex.getCause().getMessage());
+        assertEquals(new BigDecimal("0.00"), jdbcTransferService.balanceOf("bob"));
+        assertEquals(new BigDecimal("150.00"), jdbcTransferService.balanceOf("alice"));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.transactional.service;
+
+import com.example.transactional.service.IsolationDemoService.Isolation;
+import com.example.transactional.service.IsolationDemoService.NonRepeatableReadResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class IsolationDemoServiceIT {
+
+    @Autowired
+    IsolationDemoService demoService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void nonRepeatableRead_appliesTheWriteOnce() {
+        jdbcTemplate.update("INSERT INTO accounts(owner, balance) VALUES ('iso-demo-nrr', 1000)");
+        try {
+            NonRepeatableReadResult result = demoService.demoNonRepeatableRead("iso-demo-nrr", new BigDecimal("5.00"), Isolation.READ_COMMITTED);
+
+            assertTrue(result.anomaly);
+            assertEquals(0, new BigDecimal("10.00").compareTo(result.firstRead));
+            assertEquals(0, new BigDecimal("15.00").compareTo(result.secondRead));
+            assertEquals(1500L, jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE owner = 'iso-demo-nrr'", Long.class));
+            assertEquals(500L, jdbcTemplate.queryForObject(
+                    "SELECT SUM(amount) FROM transfers WHERE account_id = (SELECT id FROM accounts WHERE owner = 'iso-demo-nrr')", Long.class));
+        } finally {
+            jdbcTemplate.update("DELETE FROM transfers WHERE account_id = (SELECT id FROM accounts WHERE owner = 'iso-demo-nrr')");
+            jdbcTemplate.update("DELETE FROM accounts WHERE owner = 'iso-demo-nrr'");
+        }
+    }
+
+    @Test
+    void unknownOwner_failsInsteadOfReportingNoAnomaly() {
+        assertThrows(EmptyResultDataAccessException.class, () ->
+                demoService.demoNonRepeatableRead("iso-demo-missing", new BigDecimal("5.00"), Isolation.READ_COMMITTED));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.transactional.service;
+
+import com.example.transactional.service.IsolationDemoService.Isolation;
+import com.example.transactional.service.IsolationLoadService.LevelResult;
+import com.example.transactional.service.IsolationLoadService.LoadSpec;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class IsolationLoadServiceIT {
+
+    @Autowired
+    IsolationLoadService loadService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void run_reportsPerLevelAndSerializableLosesNoUpdates() {
+        LoadSpec spec = new LoadSpec();
+        spec.readers = 2;
+        spec.writers = 4;
+        spec.isolations = List.of(Isolation.READ_COMMITTED, Isolation.SERIALIZABLE);
+        spec.durationMillis = 500;
+        spec.pairs = 4;
+        spec.skew = 1.0;
+
+        List<LevelResult> results = loadService.run(spec);
+
+        assertEquals(2, results.size());
+        assertEquals(Isolation.READ_COMMITTED, results.get(0).isolation);
+        assertEquals(Isolation.SERIALIZABLE, results.get(1).isolation);
+        for (LevelResult r : results) {
+            assertTrue(r.readerTransactions > 0);
+            assertTrue(r.writerCommits > 0);
+            assertEquals(0, r.errors);
+            assertEquals(r.serializationFailures, r.retries + r.exhaustedRetries);
+        }
+        assertEquals(0, results.get(1).lostUpdatePairs);
+        assertEquals(0, results.get(1).totalDrift);
+        // Run accounts are dropped afterwards
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accounts WHERE owner LIKE 'iso-load-%'", Long.class));
+    }
+
+    @Test
+    void run_rejectsInvalidSpecs() {
+        LoadSpec none = new LoadSpec();
+        none.readers = 0;
+        none.writers = 0;
+        assertThrows(IllegalArgumentException.class, () -> loadService.run(none));
+
+        LoadSpec tooLong = new LoadSpec();
+        tooLong.durationMillis = 3_600_000;
+        assertThrows(IllegalArgumentException.class, () -> loadService.run(tooLong));
+
+        LoadSpec negativeSkew = new LoadSpec();
+        negativeSkew.skew = -1;
+        assertThrows(IllegalArgumentException.class, () -> loadService.run(negativeSkew));
+    }
+}
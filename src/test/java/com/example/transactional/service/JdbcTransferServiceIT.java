@@ -1,11 +1,15 @@
 package com.example.transactional.service;
 
+import com.example.transactional.money.Money;
+import com.example.transactional.service.JdbcTransferService.Leg;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -16,6 +20,9 @@ class JdbcTransferServiceIT {
     @Autowired
     JdbcTransferService jdbcTransferService;
 
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
     @Test
     void txManager_commitsOnSuccess() {
         jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), false);
@@ -33,6 +40,23 @@ class JdbcTransferServiceIT {
         assertEquals(new BigDecimal("50.00"), jdbcTransferService.balanceOf("bob"));
     }
 
+    @Test
+    void conditional_commitsOnSuccess() {
+        jdbcTransferService.transferConditional("alice", "bob", new BigDecimal("100.00"), false);
+        assertEquals(new BigDecimal("0.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("150.00"), jdbcTransferService.balanceOf("bob"));
+    }
+
+    @Test
+    void conditional_rejectsOverdraft() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                jdbcTransferService.transferConditional("bob", "alice", new BigDecimal("50.01"), false)
+        );
+        assertEquals("Insufficient funds", ex.getMessage());
+        assertEquals(new BigDecimal("50.00"), jdbcTransferService.balanceOf("bob"));
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+    }
+
     @Test
     void manualConnection_commitsOnSuccess() {
         jdbcTransferService.transferManualConnection("alice", "bob", new BigDecimal("25.00"), false);
@@ -60,5 +84,41 @@ class JdbcTransferServiceIT {
         assertEquals(new BigDecimal("90.00"), jdbcTransferService.balanceOf("alice"));
         assertEquals(new BigDecimal("50.00"), jdbcTransferService.balanceOf("bob"));
     }
-}
 
+    @Test
+    void multiLeg_appliesEveryLegAtomically() {
+        jdbcTemplate.update("INSERT INTO accounts(owner, balance) VALUES ('platform', 0)");
+
+        String transferId = jdbcTransferService.transferMultiLeg(
+                List.of(new Leg("alice", Money.parse("10.00"))),
+                List.of(new Leg("bob", Money.parse("9.50")), new Leg("platform", Money.parse("0.50"))));
+
+        assertEquals(new BigDecimal("90.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("59.50"), jdbcTransferService.balanceOf("bob"));
+        assertEquals(new BigDecimal("0.50"), jdbcTransferService.balanceOf("platform"));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transfers WHERE transfer_id = ?", Integer.class, transferId));
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT SUM(amount) FROM transfers WHERE transfer_id = ?", Long.class, transferId));
+    }
+
+    @Test
+    void multiLeg_rejectsLegsThatDoNotNetToZero() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                jdbcTransferService.transferMultiLeg(
+                        List.of(new Leg("alice", Money.parse("10.00"))),
+                        List.of(new Leg("bob", Money.parse("9.99")))));
+        assertTrue(ex.getMessage().contains("net to zero"));
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+    }
+
+    @Test
+    void multiLeg_oneShortDebitRollsBackAllLegs() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                jdbcTransferService.transferMultiLeg(
+                        List.of(new Leg("alice", Money.parse("10.00")), new Leg("bob", Money.parse("50.01"))),
+                        List.of(new Leg("alice", Money.parse("60.01")))));
+        assertEquals("Insufficient funds: bob", ex.getMessage());
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("50.00"), jdbcTransferService.balanceOf("bob"));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transfers", Integer.class));
+    }
+}
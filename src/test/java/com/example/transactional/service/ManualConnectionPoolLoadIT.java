@@ -0,0 +1,97 @@
+package com.example.transactional.service;
+
+import com.example.transactional.metrics.ConnectionPoolStats;
+import com.example.transactional.money.Money;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Manual-connection transfers at 1x, 2x and 4x the pool size. Once callers outnumber connections they
+ * queue in the pool: no acquire times out and the pool neither grows nor leaks. Throughput at each
+ * load is measured by {@code ConnectionPoolBenchmark} in the benchmark profile, not here.
+ */
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class ManualConnectionPoolLoadIT {
+
+    private static final int ACCOUNTS = 256;
+    private static final int TRANSFERS = 4_000;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    ConnectionPoolStats poolStats;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void manualPathQueuesForConnectionsBeyondPoolSize() throws Exception {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            jdbcTemplate.update("INSERT INTO accounts(owner, balance) VALUES (?, ?)", "pool-" + i, Money.parse("100000.00").minor());
+        }
+        int poolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+
+        run(poolSize);
+        run(2 * poolSize);
+        run(4 * poolSize);
+
+        Map<String, Object> stats = poolStats.stats();
+        assertEquals(0L, stats.get("timeouts"));
+        assertEquals(0, stats.get("pending"));
+        assertEquals(poolSize, stats.get("total"));
+        // About one borrow per transfer (three runs) plus one per seeded row
+        long acquired = (Long) ((Map<String, Object>) stats.get("acquire")).get("count");
+        assertTrue(acquired >= 2L * TRANSFERS && acquired <= 4L * TRANSFERS, "connections acquired: " + acquired);
+    }
+
+    private void run(int threads) throws Exception {
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int share = TRANSFERS / threads;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < share; i++) {
+                        int from = ThreadLocalRandom.current().nextInt(ACCOUNTS);
+                        int to = (from + 1 + ThreadLocalRandom.current().nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                        try {
+                            jdbcTransferService.transferManualConnection("pool-" + from, "pool-" + to, BigDecimal.ONE, false);
+                        } catch (RuntimeException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get(120, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        // Opposite-direction transfers on the same pair can still hit H2's row lock timeout; that is not a pool problem
+        assertTrue(failures.get() <= TRANSFERS / 100, "too many failed transfers: " + failures.get());
+    }
+}
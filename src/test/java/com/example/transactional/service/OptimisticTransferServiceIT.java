@@ -0,0 +1,74 @@
+package com.example.transactional.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class OptimisticTransferServiceIT {
+
+    @Autowired
+    OptimisticTransferService optimisticTransferService;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Test
+    void optimistic_commitsOnSuccess() {
+        optimisticTransferService.transfer("alice", "bob", new BigDecimal("10.00"), false);
+        assertEquals(new BigDecimal("90.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("60.00"), jdbcTransferService.balanceOf("bob"));
+    }
+
+    @Test
+    void optimistic_rollsBackOnFailure() {
+        assertThrows(RuntimeException.class, () ->
+                optimisticTransferService.transfer("alice", "bob", new BigDecimal("10.00"), true)
+        );
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("50.00"), jdbcTransferService.balanceOf("bob"));
+    }
+
+    @Test
+    void optimistic_concurrentWritersConserveTotal() throws Exception {
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean aliceToBob = t % 2 == 0;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        try {
+                            if (aliceToBob) optimisticTransferService.transfer("alice", "bob", BigDecimal.ONE, false);
+                            else optimisticTransferService.transfer("bob", "alice", BigDecimal.ONE, false);
+                        } catch (RuntimeException exhaustedOrInsufficient) {
+                            // counted in stats; the invariant below is what matters
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        BigDecimal total = jdbcTransferService.balanceOf("alice").add(jdbcTransferService.balanceOf("bob"));
+        assertEquals(0, new BigDecimal("150.00").compareTo(total));
+        Map<String, Object> stats = optimisticTransferService.stats();
+        assertEquals((long) stats.get("conflicts"), (long) stats.get("retries") + (long) stats.get("exhausted"));
+    }
+}
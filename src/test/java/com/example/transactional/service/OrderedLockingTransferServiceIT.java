@@ -0,0 +1,83 @@
+package com.example.transactional.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class OrderedLockingTransferServiceIT {
+
+    @Autowired
+    OrderedLockingTransferService lockingTransferService;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Test
+    void locking_rejectsOverdraft() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                lockingTransferService.transfer("bob", "alice", new BigDecimal("50.01"), false)
+        );
+        assertEquals("Insufficient funds", ex.getMessage());
+        assertEquals(new BigDecimal("50.00"), jdbcTransferService.balanceOf("bob"));
+    }
+
+    @Test
+    void locking_rollsBackOnFailure() {
+        assertThrows(RuntimeException.class, () ->
+                lockingTransferService.transfer("alice", "bob", new BigDecimal("10.00"), true)
+        );
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("50.00"), jdbcTransferService.balanceOf("bob"));
+    }
+
+    @Test
+    void locking_oppositeDirectionsConserveTotalWithoutDeadlock() throws Exception {
+        int threads = 16;
+        int transfersPerThread = 50;
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean aliceToBob = t % 2 == 0;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < transfersPerThread; i++) {
+                        long start = System.nanoTime();
+                        try {
+                            if (aliceToBob) lockingTransferService.transfer("alice", "bob", BigDecimal.ONE, false);
+                            else lockingTransferService.transfer("bob", "alice", BigDecimal.ONE, false);
+                        } catch (IllegalArgumentException insufficientFunds) {
+                            // a drained side is a legal outcome, a deadlock or lock timeout is not
+                        }
+                        latencies.add(System.nanoTime() - start);
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        BigDecimal total = jdbcTransferService.balanceOf("alice").add(jdbcTransferService.balanceOf("bob"));
+        assertEquals(0, new BigDecimal("150.00").compareTo(total));
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99Millis = TimeUnit.NANOSECONDS.toMillis(sorted.get((int) (sorted.size() * 0.99) - 1));
+        assertTrue(p99Millis < 1000, "p99 latency too high: " + p99Millis + " ms");
+    }
+}
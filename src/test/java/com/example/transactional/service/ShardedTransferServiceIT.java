@@ -0,0 +1,141 @@
+package com.example.transactional.service;
+
+import com.example.transactional.service.BatchTransferService.BatchResult;
+import com.example.transactional.service.BatchTransferService.TransferItem;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class ShardedTransferServiceIT {
+
+    @Autowired
+    ShardedTransferService shardedTransferService;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Autowired
+    JpaTransferService jpaTransferService;
+
+    @Autowired
+    BatchTransferService batchTransferService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shard_splitsBalanceAndKeepsTotal() {
+        shardedTransferService.shard("alice", 4);
+
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("100.00"), jpaTransferService.balanceOf("alice"));
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE owner = 'alice'", Long.class));
+        assertEquals(List.of(2500L, 2500L, 2500L, 2500L), bucketBalances("alice"));
+        assertThrows(IllegalArgumentException.class, () -> shardedTransferService.shard("alice", 4));
+    }
+
+    @Test
+    void concurrentCredits_landInBucketsAndConserveTotal() throws Exception {
+        shardedTransferService.shard("bob", 8);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(pool.submit(() -> shardedTransferService.transfer("alice", "bob", new BigDecimal("0.10"), false)));
+            }
+            for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(new BigDecimal("80.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("70.00"), jdbcTransferService.balanceOf("bob"));
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE owner = 'bob'", Long.class));
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT SUM(amount) FROM transfers", Long.class));
+    }
+
+    @Test
+    void debit_consolidatesWhenNoBucketCovers() {
+        shardedTransferService.shard("alice", 4);
+
+        shardedTransferService.transfer("alice", "bob", new BigDecimal("60.00"), false);
+
+        assertEquals(new BigDecimal("40.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("110.00"), jdbcTransferService.balanceOf("bob"));
+        assertEquals(List.of(1000L, 1000L, 1000L, 1000L), bucketBalances("alice"));
+        assertEquals(1L, shardedTransferService.stats().get("consolidations"));
+    }
+
+    @Test
+    void debit_rejectsOverdraftAndRollsBack() {
+        shardedTransferService.shard("alice", 4);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                shardedTransferService.transfer("alice", "bob", new BigDecimal("100.01"), false));
+        assertEquals("Insufficient funds", ex.getMessage());
+        assertThrows(RuntimeException.class, () ->
+                shardedTransferService.transfer("bob", "alice", new BigDecimal("10.00"), true));
+
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("50.00"), jdbcTransferService.balanceOf("bob"));
+    }
+
+    @Test
+    void rebalance_movesAccountRowCreditsIntoBuckets() {
+        shardedTransferService.shard("bob", 4);
+        // Other paths credit the account row
+        jdbcTransferService.transferWithTxManager("alice", "bob", new BigDecimal("10.00"), false);
+        assertEquals(new BigDecimal("60.00"), jdbcTransferService.balanceOf("bob"));
+
+        shardedTransferService.rebalanceSkewed();
+
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE owner = 'bob'", Long.class));
+        assertEquals(List.of(1500L, 1500L, 1500L, 1500L), bucketBalances("bob"));
+        assertEquals(new BigDecimal("60.00"), jdbcTransferService.balanceOf("bob"));
+    }
+
+    @Test
+    void otherPaths_rejectDebitsOfShardedAccount() {
+        shardedTransferService.shard("alice", 4);
+        BigDecimal ten = new BigDecimal("10.00");
+
+        for (Runnable debit : List.<Runnable>of(
+                () -> jdbcTransferService.transferWithTxManager("alice", "bob", ten, false),
+                () -> jdbcTransferService.transferConditional("alice", "bob", ten, false),
+                () -> jdbcTransferService.transferManualConnection("alice", "bob", ten, false),
+                () -> jdbcTransferService.transferWithoutTransaction("alice", "bob", ten, false),
+                () -> jpaTransferService.transfer("alice", "bob", ten, false))) {
+            IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, debit::run);
+            assertEquals("Account is sharded, debit it through jdbc-sharded: alice", ex.getMessage());
+        }
+        BatchResult batch = batchTransferService.transferBatch(List.of(new TransferItem("alice", "bob", ten)).iterator(), 10);
+        assertEquals(1, batch.failed);
+
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE owner = 'alice'", Long.class));
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("50.00"), jdbcTransferService.balanceOf("bob"));
+        // Crediting it on another path is still fine
+        jdbcTransferService.transferWithTxManager("bob", "alice", ten, false);
+        assertEquals(new BigDecimal("110.00"), jdbcTransferService.balanceOf("alice"));
+    }
+
+    private List<Long> bucketBalances(String owner) {
+        return jdbcTemplate.queryForList(
+                "SELECT b.balance FROM account_buckets b JOIN accounts a ON a.id = b.account_id WHERE a.owner = ? ORDER BY b.bucket",
+                Long.class, owner);
+    }
+}
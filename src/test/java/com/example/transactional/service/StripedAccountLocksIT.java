@@ -0,0 +1,100 @@
+package com.example.transactional.service;
+
+import com.example.transactional.limit.TransferConcurrencyLimits;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"transfer.striped-locks.enabled=true", "transfer.striped-locks.wait-timeout-ms=500"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class StripedAccountLocksIT {
+
+    @Autowired
+    StripedAccountLocks stripedLocks;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Autowired
+    TransferConcurrencyLimits limits;
+
+    @Test
+    void hotPairIsSerializedInTheJvm() throws Exception {
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean aliceToBob = t % 2 == 0;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        if (aliceToBob) {
+                            jdbcTransferService.transferConditional("alice", "bob", new BigDecimal("0.10"), false);
+                        } else {
+                            jdbcTransferService.transferConditional("bob", "alice", new BigDecimal("0.10"), false);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(new BigDecimal("50.00"), jdbcTransferService.balanceOf("bob"));
+        assertTrue((long) stripedLocks.stats().get("contended") > 0);
+    }
+
+    @Test
+    void unknownAccountsAreLeftToTheTransfer() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                jdbcTransferService.transferWithTxManager("alice", "nobody", BigDecimal.ONE, false));
+        assertTrue(ex.getMessage().contains("nobody"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void lockWaitTimesOutAsOverload() throws Exception {
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holder = pool.submit(() -> stripedLocks.run("bob", "alice", () -> {
+                held.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(held.await(10, TimeUnit.SECONDS));
+
+            assertThrows(StripeLockTimeoutException.class, () -> limits.run("jdbc-conditional", () ->
+                    jdbcTransferService.transferConditional("alice", "bob", new BigDecimal("1.00"), false)));
+
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+        assertEquals(1L, stripedLocks.stats().get("timeouts"));
+        Map<String, Object> strategies = (Map<String, Object>) limits.stats().get("strategies");
+        assertEquals(1L, ((Map<String, Object>) strategies.get("jdbc-conditional")).get("overloadFailures"));
+    }
+}
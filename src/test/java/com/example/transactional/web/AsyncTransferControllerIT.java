@@ -0,0 +1,88 @@
+package com.example.transactional.web;
+
+import com.example.transactional.service.BoundedTransferExecutor;
+import com.example.transactional.service.JdbcTransferService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "transfer.async.threads=1",
+        "transfer.async.queue-capacity=1",
+        "transfer.async.max-queue-wait-ms=200",
+        "transfer.async.retry-after-seconds=3"})
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class AsyncTransferControllerIT {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    BoundedTransferExecutor executor;
+
+    @Autowired
+    JdbcTransferService jdbcTransferService;
+
+    @Test
+    void fullExecutor_answers503WithRetryAfter() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // one running, one queued
+            executor.submit(() -> await(release));
+            executor.submit(() -> await(release));
+
+            mvc.perform(post("/api/async/transfer/jdbc-txmgr")
+                            .param("from", "alice").param("to", "bob").param("amount", "10.00"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"))
+                    .andExpect(jsonPath("$.error").value("Transfer executor queue is full"));
+        } finally {
+            release.countDown();
+        }
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+    }
+
+    @Test
+    void requestThatWaitedTooLong_answers503WithRetryAfter() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = executor.submit(() -> await(release));
+        MvcResult queued = mvc.perform(post("/api/async/transfer/jdbc-txmgr")
+                        .param("from", "alice").param("to", "bob").param("amount", "10.00"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        Thread.sleep(400);
+        release.countDown();
+        assertTrue(running.get(30, TimeUnit.SECONDS));
+
+        mvc.perform(asyncDispatch(queued))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"))
+                .andExpect(jsonPath("$.error").value("Transfer waited too long in queue"));
+        assertEquals(new BigDecimal("100.00"), jdbcTransferService.balanceOf("alice"));
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}